@@ -1,8 +1,16 @@
 package realtimepaymentarchitectureorchestration.app;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.*;
 import java.util.*;
 
+import realtimepaymentarchitectureorchestration.config.PipelineConfigWatcher;
+import realtimepaymentarchitectureorchestration.orchestration.OrchestrationResult;
+import realtimepaymentarchitectureorchestration.orchestration.PaymentLifecycleManager;
+import realtimepaymentarchitectureorchestration.orchestration.PaymentOrchestrator;
+import realtimepaymentarchitectureorchestration.repository.InMemoryPaymentRepository;
+
 
 /**
  * Bootstrapper wires together the core objects of the demo system.
@@ -12,6 +20,11 @@ import java.util.*;
 public class Bootstrapper {
 
     private final ApplicationConfig config;
+    private final PaymentOrchestrator orchestrator = new PaymentOrchestrator();
+    private final InMemoryPaymentRepository paymentRepository = new InMemoryPaymentRepository();
+    private final PaymentLifecycleManager lifecycle =
+            new PaymentLifecycleManager(paymentRepository, orchestrator.getMetrics());
+    private PipelineConfigWatcher flowWatcher;
 
     public Bootstrapper(ApplicationConfig config) {
         this.config = Objects.requireNonNull(config, "config");
@@ -19,6 +32,34 @@ public class Bootstrapper {
 
     public void start() {
         System.out.println("Bootstrapper starting with config: " + config);
+        orchestrator.setLifecycleManager(lifecycle);
+        lifecycle.start();
+        String flowFile = config.getProperty("pipeline.flows.file", "");
+        if (!flowFile.isBlank()) {
+            watchFlows(Path.of(flowFile));
+        }
+    }
+
+    /**
+     * Loads flow definitions from the given file and reloads them whenever it changes.
+     */
+    private void watchFlows(Path flowFile) {
+        try {
+            flowWatcher = new PipelineConfigWatcher(flowFile, orchestrator::reloadFlows);
+            flowWatcher.reloadNow();
+            flowWatcher.start();
+            System.out.println("Watching flow definitions in " + flowWatcher.getFile());
+        } catch (IOException ex) {
+            System.out.println("Could not watch flow definitions in " + flowFile + ": " + ex.getMessage());
+        }
+    }
+
+    public PaymentOrchestrator getOrchestrator() {
+        return orchestrator;
+    }
+
+    public InMemoryPaymentRepository getPaymentRepository() {
+        return paymentRepository;
     }
 
     /**
@@ -33,13 +74,10 @@ public class Bootstrapper {
         paymentData.put("amount", "42.50");
         paymentData.put("currency", config.getProperty("payments.currency.default", "USD"));
 
-        realtimepaymentarchitectureorchestration.orchestration.PaymentOrchestrator orchestrator =
-                new realtimepaymentarchitectureorchestration.orchestration.PaymentOrchestrator();
-
-        realtimepaymentarchitectureorchestration.orchestration.OrchestrationResult result =
-                orchestrator.orchestrateSimple(paymentData);
+        OrchestrationResult result = orchestrator.orchestrateSimple(paymentData);
 
-        System.out.println("Demo payment result: " + result.getStatus());
+        System.out.println("Demo payment result: " + result.getStatus() + " (" + result.getOutcome()
+                + ", " + result.getDurationNanos() / 1000L + "us)");
         System.out.println("Messages:");
         for (String msg : result.getMessages()) {
             System.out.println("  - " + msg);
@@ -9,6 +9,8 @@ import realtimepaymentarchitectureorchestration.orchestration.OrchestrationResul
 /**
  * Simple in-process implementation of PaymentChannelAdapter that behaves like a REST endpoint.
  * It receives a request map, delegates to PaymentOrchestrator, and prints the result.
+ * Successful payments print a single summary line; the full message trail is
+ * only rendered for failures.
  */
 public class RestPaymentChannelAdapter implements PaymentChannelAdapter {
 
@@ -22,9 +24,16 @@ public class RestPaymentChannelAdapter implements PaymentChannelAdapter {
     public void submitPayment(Map<String, Object> paymentRequest) {
         Map<String, Object> safeCopy = new LinkedHashMap<>(paymentRequest);
         OrchestrationResult result = orchestrator.orchestrateSimple(safeCopy);
-        System.out.println("REST-like channel received result: " + result.getStatus());
-        for (String msg : result.getMessages()) {
-            System.out.println("  " + msg);
+        if (result.getStatus() == OrchestrationResult.Status.REJECTED) {
+            System.out.println("REST-like channel rejected payment: 429 Too Many Requests");
+            return;
+        }
+        System.out.println("REST-like channel received result: " + result.getStatus()
+                + " (" + result.getOutcome() + ", " + result.getDurationNanos() / 1000L + "us)");
+        if (result.getStatus() != OrchestrationResult.Status.SUCCESS) {
+            for (String msg : result.getMessages()) {
+                System.out.println("  " + msg);
+            }
         }
     }
 }
@@ -1,18 +1,33 @@
 package realtimepaymentarchitectureorchestration.config;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
 
 /**
  * Very small, in-memory configuration loader for flow definitions.
  * In a real deployment this information might come from YAML, JSON,
  * a database, or a configuration service. The goal here is to show
  * how flows can be driven by configuration instead of hard-coded logic.
+ * <p>
+ * Flows can also be read from a properties file, one flow per key:
+ * <pre>
+ * flow.domestic-rtp=VALIDATE,ENRICH,TRANSFORM_TO_ISO20022,FRAUD_CHECK,ROUTE,POST,NOTIFY
+ * </pre>
  */
 public class PipelineConfigLoader {
 
+    public static final String FLOW_KEY_PREFIX = "flow.";
+
     private final Map<String, FlowDefinition> flows = new LinkedHashMap<>();
 
     public PipelineConfigLoader() {
@@ -31,6 +46,38 @@ public class PipelineConfigLoader {
         ));
     }
 
+    private PipelineConfigLoader(Properties properties) {
+        for (String key : new TreeSet<>(properties.stringPropertyNames())) {
+            if (!key.startsWith(FLOW_KEY_PREFIX)) {
+                continue;
+            }
+            String id = key.substring(FLOW_KEY_PREFIX.length()).trim();
+            List<String> stepNames = new ArrayList<>();
+            for (String name : properties.getProperty(key).split(",")) {
+                if (!name.isBlank()) {
+                    stepNames.add(name.trim());
+                }
+            }
+            if (id.isEmpty() || stepNames.isEmpty()) {
+                throw new IllegalArgumentException("Flow entry " + key + " has no id or no steps");
+            }
+            register(id, stepNames);
+        }
+    }
+
+    /**
+     * Reads flow definitions from a properties file. Only keys starting with
+     * {@value #FLOW_KEY_PREFIX} are considered; the built-in example flows are
+     * not registered.
+     */
+    public static PipelineConfigLoader fromFile(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return new PipelineConfigLoader(properties);
+    }
+
     private void register(String id, List<String> stepNames) {
         FlowDefinition def = new FlowDefinition(id);
         for (String name : stepNames) {
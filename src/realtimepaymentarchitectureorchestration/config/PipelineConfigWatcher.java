@@ -0,0 +1,160 @@
+package realtimepaymentarchitectureorchestration.config;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Watches a flow definition file and hands a freshly parsed loader to a
+ * listener whenever the file is created or modified.
+ * <p>
+ * The watch runs on its own daemon thread. A change is reloaded only after
+ * the file has been quiet for the debounce period, so an editor or copy that
+ * writes the file in several steps is not parsed half-written. Files that
+ * still fail to parse are skipped and counted, and the last failure is kept,
+ * so the listener only ever sees complete configurations.
+ */
+public class PipelineConfigWatcher implements AutoCloseable {
+
+    private final Path file;
+    private final Consumer<PipelineConfigLoader> listener;
+    private final WatchService watchService;
+    private final long debounceMillis;
+    private final Thread thread;
+    private final AtomicLong failedReloads = new AtomicLong();
+    private volatile Exception lastFailure;
+
+    public PipelineConfigWatcher(Path file, Consumer<PipelineConfigLoader> listener) throws IOException {
+        this(file, listener, 200L);
+    }
+
+    /**
+     * @param debounceMillis  how long the file must stay unchanged before it is reloaded
+     */
+    public PipelineConfigWatcher(Path file, Consumer<PipelineConfigLoader> listener, long debounceMillis)
+            throws IOException {
+        if (debounceMillis < 0) {
+            throw new IllegalArgumentException("debounceMillis must not be negative");
+        }
+        this.debounceMillis = debounceMillis;
+        this.file = Objects.requireNonNull(file, "file").toAbsolutePath();
+        this.listener = Objects.requireNonNull(listener, "listener");
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.file.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(this::watchLoop, "pipeline-config-watcher");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Parses the file immediately and notifies the listener.
+     * Returns false if the file could not be read or parsed; the failure is
+     * then available from {@link #getLastFailure()}.
+     */
+    public boolean reloadNow() {
+        PipelineConfigLoader loader;
+        try {
+            loader = PipelineConfigLoader.fromFile(file);
+        } catch (IOException | IllegalArgumentException ex) {
+            failedReloads.incrementAndGet();
+            lastFailure = ex;
+            return false;
+        }
+        listener.accept(loader);
+        return true;
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = touchesFile(key);
+                if (!key.reset()) {
+                    return;
+                }
+                if (changed) {
+                    awaitQuiet();
+                    reloadNow();
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ex) {
+            // closed by close(); nothing left to do
+        }
+    }
+
+    /**
+     * Waits until no change to the file has been seen for the debounce period.
+     * Events for other files in the directory, such as an editor's temp or
+     * swap file, neither end nor restart the wait.
+     */
+    private void awaitQuiet() throws InterruptedException {
+        long quietUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+        while (true) {
+            long remaining = quietUntil - System.nanoTime();
+            if (remaining <= 0L) {
+                return;
+            }
+            WatchKey key = watchService.poll(remaining, TimeUnit.NANOSECONDS);
+            if (key == null) {
+                return;
+            }
+            boolean changed = touchesFile(key);
+            if (!key.reset()) {
+                return;
+            }
+            if (changed) {
+                quietUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+            }
+        }
+    }
+
+    private boolean touchesFile(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            Object context = event.context();
+            if (context instanceof Path && file.getFileName().equals(context)) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Number of reloads skipped because the file could not be read or parsed.
+     */
+    public long getFailedReloads() {
+        return failedReloads.get();
+    }
+
+    /**
+     * Why the most recent failed reload failed, or null if none has failed.
+     */
+    public Exception getLastFailure() {
+        return lastFailure;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
@@ -3,17 +3,33 @@ package realtimepaymentarchitectureorchestration.observability;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Very small in-memory metrics registry.
+ * Counters, gauges and histograms are safe to update from any thread.
  */
 public class MetricsRegistry {
 
-    private final Map<String, AtomicLong> counters = new LinkedHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
 
     public void increment(String name) {
-        counters.computeIfAbsent(name, n -> new AtomicLong()).incrementAndGet();
+        counter(name).incrementAndGet();
+    }
+
+    public void add(String name, long delta) {
+        counter(name).addAndGet(delta);
+    }
+
+    /**
+     * Sets a gauge to an absolute value, replacing whatever was recorded before.
+     */
+    public void setGauge(String name, long value) {
+        counter(name).set(value);
     }
 
     public long get(String name) {
@@ -21,11 +37,39 @@ public class MetricsRegistry {
         return counter != null ? counter.get() : 0L;
     }
 
+    /**
+     * Returns the named histogram, creating it on first use. Hot paths should
+     * keep the returned instance rather than look it up for every value.
+     */
+    public Histogram histogram(String name) {
+        Histogram histogram = histograms.get(name);
+        return histogram != null ? histogram : histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    public void record(String name, long value) {
+        histogram(name).record(value);
+    }
+
+    /**
+     * Counters and gauges by name, plus count, p50, p99 and max entries for each histogram.
+     */
     public Map<String, Long> snapshot() {
-        Map<String, Long> result = new LinkedHashMap<>();
+        Map<String, Long> sorted = new TreeMap<>();
         for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
-            result.put(entry.getKey(), entry.getValue().get());
+            sorted.put(entry.getKey(), entry.getValue().get());
+        }
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            Histogram histogram = entry.getValue();
+            sorted.put(entry.getKey() + ".count", histogram.getCount());
+            sorted.put(entry.getKey() + ".p50", histogram.getPercentile(50d));
+            sorted.put(entry.getKey() + ".p99", histogram.getPercentile(99d));
+            sorted.put(entry.getKey() + ".max", histogram.getMax());
         }
-        return Collections.unmodifiableMap(result);
+        return Collections.unmodifiableMap(new LinkedHashMap<>(sorted));
+    }
+
+    private AtomicLong counter(String name) {
+        AtomicLong counter = counters.get(name);
+        return counter != null ? counter : counters.computeIfAbsent(name, n -> new AtomicLong());
     }
 }
@@ -0,0 +1,193 @@
+package realtimepaymentarchitectureorchestration.orchestration;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import realtimepaymentarchitectureorchestration.observability.MetricsRegistry;
+
+
+/**
+ * Decides whether a new payment may start orchestration.
+ * <p>
+ * Two limits apply. {@code maxInFlight} is a hard ceiling. Below it, an
+ * adaptive limit follows observed latency with AIMD (additive increase,
+ * multiplicative decrease). A payment that completes within the latency target
+ * while the limit is in use raises the limit by 1/limit, so the limit grows by
+ * about one per round trip. A payment that is slower than the target, or
+ * that failed because an executor was overloaded, cuts the limit by 10%. Cuts
+ * happen at most once per target interval, so one slow burst does not
+ * collapse the limit.
+ * <p>
+ * A payment that ends without a result is released with {@link #abandon()},
+ * which frees its slot without counting as a latency sample.
+ * <p>
+ * {@link #tryAcquire()} never blocks; callers turn a refusal into an
+ * immediate REJECTED result. {@link #acquire()} waits for capacity and is
+ * meant for bulk callers that prefer backpressure to rejection. Rejections,
+ * the current limit and the in-flight count are published under
+ * {@code admission.*}.
+ */
+public class AdmissionController {
+
+    private static final long SCALE = 1000L;
+
+    private final int maxInFlight;
+    private final int minLimit;
+    private final long latencyTargetNanos;
+    private final MetricsRegistry metrics;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong scaledLimit;
+    private final AtomicLong lastDecreaseNanos;
+    private final AtomicLong rejected = new AtomicLong();
+    private final Object waitLock = new Object();
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    public AdmissionController(int maxInFlight, int initialLimit, int minLimit,
+                               long latencyTargetMillis, MetricsRegistry metrics) {
+        if (maxInFlight <= 0 || initialLimit <= 0 || minLimit <= 0 || latencyTargetMillis <= 0) {
+            throw new IllegalArgumentException("admission limits and latency target must be positive");
+        }
+        this.maxInFlight = maxInFlight;
+        this.minLimit = Math.min(minLimit, maxInFlight);
+        this.latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(latencyTargetMillis);
+        this.lastDecreaseNanos = new AtomicLong(System.nanoTime() - latencyTargetNanos);
+        this.metrics = Objects.requireNonNull(metrics, "metrics");
+        int initial = Math.max(this.minLimit, Math.min(initialLimit, maxInFlight));
+        this.scaledLimit = new AtomicLong(initial * SCALE);
+        metrics.setGauge("admission.limit", initial);
+    }
+
+    /**
+     * Admits a payment if both limits allow it. Never blocks.
+     */
+    public boolean tryAcquire() {
+        if (admit()) {
+            return true;
+        }
+        rejected.incrementAndGet();
+        metrics.increment("admission.rejected");
+        return false;
+    }
+
+    /**
+     * Waits until a payment can be admitted.
+     */
+    public void acquire() throws InterruptedException {
+        while (!admit()) {
+            waiters.incrementAndGet();
+            try {
+                synchronized (waitLock) {
+                    if (!hasCapacity()) {
+                        waitLock.wait(10L);
+                    }
+                }
+            } finally {
+                waiters.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Reports that an admitted payment finished, and adjusts the limit.
+     *
+     * @param latencyNanos time from admission to result
+     * @param overloaded   whether the payment failed because the system was overloaded
+     */
+    public void release(long latencyNanos, boolean overloaded) {
+        int before = free();
+        if (overloaded || latencyNanos > latencyTargetNanos) {
+            decrease();
+        } else if (before * SCALE * 2 >= scaledLimit.get()) {
+            increase();
+        }
+        wakeWaiters();
+    }
+
+    /**
+     * Frees the slot of an admitted payment that ended without a result, for
+     * example because orchestration threw, and leaves the limit unchanged.
+     */
+    public void abandon() {
+        free();
+        metrics.increment("admission.abandoned");
+        wakeWaiters();
+    }
+
+    public int getLimit() {
+        return (int) (scaledLimit.get() / SCALE);
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    private boolean admit() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= maxInFlight || current >= getLimit()) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        metrics.setGauge("admission.inFlight", current + 1);
+        return true;
+    }
+
+    private int free() {
+        int before = inFlight.getAndDecrement();
+        metrics.setGauge("admission.inFlight", before - 1);
+        return before;
+    }
+
+    private void wakeWaiters() {
+        if (waiters.get() > 0) {
+            synchronized (waitLock) {
+                waitLock.notifyAll();
+            }
+        }
+    }
+
+    private boolean hasCapacity() {
+        int current = inFlight.get();
+        return current < maxInFlight && current < getLimit();
+    }
+
+    private void increase() {
+        long current;
+        long next;
+        do {
+            current = scaledLimit.get();
+            next = Math.min(maxInFlight * SCALE, current + Math.max(1L, SCALE * SCALE / current));
+            if (next == current) {
+                return;
+            }
+        } while (!scaledLimit.compareAndSet(current, next));
+        metrics.setGauge("admission.limit", next / SCALE);
+    }
+
+    private void decrease() {
+        long now = System.nanoTime();
+        long last = lastDecreaseNanos.get();
+        if (now - last < latencyTargetNanos || !lastDecreaseNanos.compareAndSet(last, now)) {
+            return;
+        }
+        long current;
+        long next;
+        do {
+            current = scaledLimit.get();
+            next = Math.max(minLimit * SCALE, current * 9 / 10);
+        } while (!scaledLimit.compareAndSet(current, next));
+        metrics.increment("admission.limit.decreases");
+        metrics.setGauge("admission.limit", next / SCALE);
+    }
+}
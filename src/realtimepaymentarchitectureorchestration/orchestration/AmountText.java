@@ -0,0 +1,129 @@
+package realtimepaymentarchitectureorchestration.orchestration;
+
+
+/**
+ * Exception-free checks on amounts as they arrive in payment requests.
+ */
+final class AmountText {
+
+    /**
+     * Returned by {@link #canonical} for text that is not a plain decimal or
+     * does not fit.
+     */
+    static final long INVALID = Long.MIN_VALUE;
+
+    private static final int SCALE_BITS = 5;
+    private static final long SCALE_MASK = (1L << SCALE_BITS) - 1;
+    private static final int MAX_DIGITS = 17;
+    private static final int MAX_SCALE = 18;
+    private static final double[] POWERS_OF_TEN = new double[MAX_SCALE + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1d;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10d;
+        }
+    }
+
+    private AmountText() {}
+
+    /**
+     * True for plain decimals such as "10", "-3.5" or "42.50": an optional sign,
+     * at least one digit and at most one decimal point. Exponents, NaN and
+     * Infinity are not accepted. Leading and trailing whitespace is ignored,
+     * as it is by {@link Double#parseDouble}.
+     */
+    static boolean isDecimal(String text) {
+        int length = text.length();
+        int i = 0;
+        while (i < length && text.charAt(i) <= ' ') {
+            i++;
+        }
+        while (length > i && text.charAt(length - 1) <= ' ') {
+            length--;
+        }
+        if (i < length && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            i++;
+        }
+        boolean digits = false;
+        boolean point = false;
+        for (; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits = true;
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                return false;
+            }
+        }
+        return digits;
+    }
+
+    /**
+     * Parses a plain decimal into one long that is equal for equal values, so
+     * "10", "10.0" and "10.00" give the same result. Trailing fractional zeros
+     * are dropped; the high 59 bits hold the unscaled value and the low 5 bits
+     * the remaining decimal places, the same layout as the RTP side's
+     * RtpAmount. Returns {@link #INVALID} for text {@link #isDecimal} rejects
+     * and for values with more than 17 significant digits or 18 decimal places.
+     */
+    static long canonical(String text) {
+        int length = text.length();
+        int i = 0;
+        while (i < length && text.charAt(i) <= ' ') {
+            i++;
+        }
+        while (length > i && text.charAt(length - 1) <= ' ') {
+            length--;
+        }
+        boolean negative = false;
+        if (i < length && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+        long unscaled = 0L;
+        boolean anyDigit = false;
+        int digits = 0;
+        int scale = -1;
+        int pendingZeros = 0;
+        for (; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '.' && scale < 0) {
+                scale = 0;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                return INVALID;
+            }
+            anyDigit = true;
+            if (c == '0' && scale >= 0) {
+                // Only significant if a non-zero digit follows.
+                pendingZeros++;
+                continue;
+            }
+            for (int z = 0; z <= pendingZeros; z++) {
+                int digit = z < pendingZeros ? 0 : c - '0';
+                if ((unscaled != 0L || digit != 0) && ++digits > MAX_DIGITS) {
+                    return INVALID;
+                }
+                unscaled = unscaled * 10L + digit;
+            }
+            if (scale >= 0) {
+                scale += pendingZeros + 1;
+            }
+            pendingZeros = 0;
+        }
+        if (!anyDigit || scale > MAX_SCALE) {
+            return INVALID;
+        }
+        return ((negative ? -unscaled : unscaled) << SCALE_BITS) | Math.max(scale, 0);
+    }
+
+    /**
+     * The value of a {@link #canonical} amount as a double.
+     */
+    static double toDouble(long canonical) {
+        return (canonical >> SCALE_BITS) / POWERS_OF_TEN[(int) (canonical & SCALE_MASK)];
+    }
+}
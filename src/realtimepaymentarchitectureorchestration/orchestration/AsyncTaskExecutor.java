@@ -1,37 +1,159 @@
 package realtimepaymentarchitectureorchestration.orchestration;
 
-import java.time.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import realtimepaymentarchitectureorchestration.observability.MetricsRegistry;
 
 
 /**
- * AsyncTaskExecutor is a supporting type in the orchestration layer.
+ * Scheduling core for asynchronous orchestration.
+ * <p>
+ * CPU-bound stages (validation, transformation, sanctions and fraud scoring)
+ * and IO-bound stages (enrichment lookups, routing, posting, notification)
+ * run on separate bounded pools. A slow ledger can then only fill the IO pool
+ * and its queue; validation of new payments keeps its own threads. When a
+ * pool's queue is full, further tasks are rejected instead of piling up.
+ * <p>
+ * Each pool publishes queue depth, active count, rejected count, completed
+ * count and queue wait time to the MetricsRegistry under
+ * {@code executor.cpu.*} and {@code executor.io.*}.
  */
-public class AsyncTaskExecutor {
+public class AsyncTaskExecutor implements AutoCloseable {
+
+    /**
+     * The kind of work a stage does, which decides the pool it runs on.
+     */
+    public enum StageClass {
+        CPU,
+        IO
+    }
+
+    private static final StageClass[] STAGE_CLASSES = new StageClass[OrchestrationStep.values().length];
+
+    static {
+        Arrays.fill(STAGE_CLASSES, StageClass.CPU);
+        STAGE_CLASSES[OrchestrationStep.ENRICH.ordinal()] = StageClass.IO;
+        STAGE_CLASSES[OrchestrationStep.ROUTE.ordinal()] = StageClass.IO;
+        STAGE_CLASSES[OrchestrationStep.POST.ordinal()] = StageClass.IO;
+        STAGE_CLASSES[OrchestrationStep.NOTIFY.ordinal()] = StageClass.IO;
+    }
+
+    private final StagePool cpu;
+    private final StagePool io;
+
+    public AsyncTaskExecutor(int cpuThreads, int cpuQueueCapacity,
+                             int ioThreads, int ioQueueCapacity,
+                             MetricsRegistry metrics) {
+        Objects.requireNonNull(metrics, "metrics");
+        this.cpu = new StagePool("cpu", cpuThreads, cpuQueueCapacity, metrics);
+        this.io = new StagePool("io", ioThreads, ioQueueCapacity, metrics);
+    }
+
+    public static StageClass classify(OrchestrationStep step) {
+        return STAGE_CLASSES[step.ordinal()];
+    }
 
-    private final Map<String, Object> metadata = new LinkedHashMap<>();
+    public Executor executorFor(StageClass stageClass) {
+        return stageClass == StageClass.CPU ? cpu : io;
+    }
+
+    public Executor executorFor(OrchestrationStep step) {
+        return executorFor(classify(step));
+    }
 
-    public AsyncTaskExecutor() {
-        metadata.put("createdAt", Instant.now());
-        metadata.put("createdBy", "AsyncTaskExecutor");
+    public <T> CompletableFuture<T> submit(StageClass stageClass, Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, executorFor(stageClass));
     }
 
-    public void put(String key, Object value) {
-        metadata.put(key, value);
+    public int getQueueDepth(StageClass stageClass) {
+        return (stageClass == StageClass.CPU ? cpu : io).queued.get();
     }
 
-    public Optional<Object> get(String key) {
-        return Optional.ofNullable(metadata.get(key));
+    public int getActiveCount(StageClass stageClass) {
+        return (stageClass == StageClass.CPU ? cpu : io).active.get();
     }
 
-    public Map<String, Object> getAll() {
-        return Collections.unmodifiableMap(metadata);
+    public long getRejectedCount(StageClass stageClass) {
+        return (stageClass == StageClass.CPU ? cpu : io).rejected.get();
     }
 
-    public void logState() {
-        System.out.println("AsyncTaskExecutor state:");
-        for (Map.Entry<String, Object> entry : metadata.entrySet()) {
-            System.out.println("  " + entry.getKey() + " = " + entry.getValue());
+    @Override
+    public void close() {
+        cpu.pool.shutdown();
+        io.pool.shutdown();
+    }
+
+    /**
+     * One bounded pool plus the bookkeeping behind its metrics.
+     */
+    private static final class StagePool implements Executor {
+
+        private final ThreadPoolExecutor pool;
+        private final MetricsRegistry metrics;
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicLong rejected = new AtomicLong();
+        private final String queueDepthGauge;
+        private final String activeGauge;
+        private final String rejectedCounter;
+        private final String completedCounter;
+        private final String waitTotalCounter;
+        private final String waitLastGauge;
+
+        StagePool(String name, int threads, int queueCapacity, MetricsRegistry metrics) {
+            if (threads <= 0 || queueCapacity <= 0) {
+                throw new IllegalArgumentException(name + " pool needs positive threads and queue capacity");
+            }
+            this.metrics = metrics;
+            String prefix = "executor." + name + ".";
+            this.queueDepthGauge = prefix + "queueDepth";
+            this.activeGauge = prefix + "active";
+            this.rejectedCounter = prefix + "rejected";
+            this.completedCounter = prefix + "completed";
+            this.waitTotalCounter = prefix + "waitMicros.total";
+            this.waitLastGauge = prefix + "waitMicros.last";
+            AtomicInteger sequence = new AtomicInteger();
+            this.pool = new ThreadPoolExecutor(threads, threads, 30L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    task -> {
+                        Thread thread = new Thread(task, "orchestration-" + name + "-" + sequence.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    new ThreadPoolExecutor.AbortPolicy());
+            this.pool.allowCoreThreadTimeOut(true);
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            long enqueuedAt = System.nanoTime();
+            metrics.setGauge(queueDepthGauge, queued.incrementAndGet());
+            try {
+                pool.execute(() -> run(task, enqueuedAt));
+            } catch (RejectedExecutionException ex) {
+                metrics.setGauge(queueDepthGauge, queued.decrementAndGet());
+                rejected.incrementAndGet();
+                metrics.increment(rejectedCounter);
+                throw ex;
+            }
+        }
+
+        private void run(Runnable task, long enqueuedAt) {
+            long waitMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - enqueuedAt);
+            metrics.setGauge(queueDepthGauge, queued.decrementAndGet());
+            metrics.setGauge(activeGauge, active.incrementAndGet());
+            metrics.add(waitTotalCounter, waitMicros);
+            metrics.setGauge(waitLastGauge, waitMicros);
+            try {
+                task.run();
+            } finally {
+                metrics.setGauge(activeGauge, active.decrementAndGet());
+                metrics.increment(completedCounter);
+            }
         }
     }
 }
@@ -0,0 +1,164 @@
+package realtimepaymentarchitectureorchestration.orchestration;
+
+import java.time.*;
+import java.util.*;
+
+
+/**
+ * Fixed-size ring of structured audit events for one payment.
+ * <p>
+ * Each event is a packed int (event code plus step ordinals), a
+ * {@link System#nanoTime()} stamp and references to objects that already
+ * exist (attribute keys and values, or note text). Nothing is formatted when
+ * an event is recorded; {@link #render()} turns the events into text only when
+ * someone asks for it. Once the ring is full the oldest events are overwritten.
+ * <p>
+ * Recording and rendering are synchronized, because the parallel stage
+ * branches of one payment may record into the same log at the same time.
+ */
+public final class AuditLog {
+
+    /**
+     * How much of the audit trail is captured.
+     */
+    public enum Mode {
+        /** Step transitions, attribute changes and free-text notes. */
+        FULL,
+        /** Context creation and step transitions only. */
+        STEPS_ONLY,
+        /** Nothing is recorded. */
+        OFF
+    }
+
+    public static final int DEFAULT_CAPACITY = 32;
+
+    static final int CONTEXT_CREATED = 1;
+    static final int STEP_ADVANCED = 2;
+    static final int ATTRIBUTE_SET = 3;
+    static final int NOTE = 4;
+
+    private static final OrchestrationStep[] STEPS = OrchestrationStep.values();
+
+    private final Mode mode;
+    private final int[] events;
+    private final long[] nanos;
+    private final Object[] subjects;
+    private final Object[] values;
+    private final long anchorNanos;
+    private final long anchorEpochMillis;
+    private int count;
+
+    public AuditLog(Mode mode) {
+        this(mode, DEFAULT_CAPACITY);
+    }
+
+    public AuditLog(Mode mode, int capacity) {
+        this.mode = Objects.requireNonNull(mode, "mode");
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        int size = mode == Mode.OFF ? 0 : capacity;
+        this.events = new int[size];
+        this.nanos = new long[size];
+        this.subjects = new Object[size];
+        this.values = new Object[size];
+        this.anchorNanos = System.nanoTime();
+        this.anchorEpochMillis = mode == Mode.OFF ? 0L : System.currentTimeMillis();
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    void contextCreated(OrchestrationStep step) {
+        if (mode != Mode.OFF) {
+            append(pack(CONTEXT_CREATED, step, step), null, null);
+        }
+    }
+
+    void stepAdvanced(OrchestrationStep from, OrchestrationStep to) {
+        if (mode != Mode.OFF) {
+            append(pack(STEP_ADVANCED, from, to), null, null);
+        }
+    }
+
+    void attributeSet(OrchestrationStep step, String key, Object value) {
+        if (mode == Mode.FULL) {
+            append(pack(ATTRIBUTE_SET, step, step), key, value);
+        }
+    }
+
+    void note(OrchestrationStep step, String message) {
+        if (mode == Mode.FULL) {
+            append(pack(NOTE, step, step), message, null);
+        }
+    }
+
+    private static int pack(int code, OrchestrationStep from, OrchestrationStep to) {
+        return (from.ordinal() << 16) | (to.ordinal() << 8) | code;
+    }
+
+    private synchronized void append(int event, Object subject, Object value) {
+        int slot = count % events.length;
+        events[slot] = event;
+        nanos[slot] = System.nanoTime();
+        subjects[slot] = subject;
+        values[slot] = value;
+        count++;
+    }
+
+    /**
+     * Total number of events recorded, including any that were overwritten.
+     */
+    public synchronized int getRecordedCount() {
+        return count;
+    }
+
+    /**
+     * Number of events currently held in the ring.
+     */
+    public synchronized int size() {
+        return Math.min(count, events.length);
+    }
+
+    /**
+     * Renders the retained events, oldest first, in the
+     * "timestamp - message" form used by the audit trail.
+     */
+    public synchronized List<String> render() {
+        int size = size();
+        if (size == 0) {
+            return List.of();
+        }
+        List<String> lines = new ArrayList<>(size + 1);
+        int dropped = count - size;
+        if (dropped > 0) {
+            lines.add(dropped + " earlier audit events overwritten");
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        int first = count - size;
+        for (int i = first; i < count; i++) {
+            int slot = i % events.length;
+            long epochNanos = anchorEpochMillis * 1_000_000L + (nanos[slot] - anchorNanos);
+            OffsetDateTime at = OffsetDateTime.ofInstant(
+                    Instant.ofEpochSecond(0L, epochNanos), zone);
+            lines.add(at + " - " + describe(events[slot], subjects[slot], values[slot]));
+        }
+        return lines;
+    }
+
+    private static String describe(int event, Object subject, Object value) {
+        switch (event & 0xFF) {
+            case CONTEXT_CREATED:
+                return "Context created";
+            case STEP_ADVANCED:
+                return "Advancing from " + STEPS[event >>> 16] + " to " + STEPS[(event >>> 8) & 0xFF];
+            case ATTRIBUTE_SET:
+                return "Attribute set: " + subject + "=" + value;
+            case NOTE:
+                return String.valueOf(subject);
+            default:
+                return "Unknown audit event " + event;
+        }
+    }
+}
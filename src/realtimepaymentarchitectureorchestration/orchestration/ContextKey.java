@@ -0,0 +1,93 @@
+package realtimepaymentarchitectureorchestration.orchestration;
+
+import java.time.*;
+import java.util.*;
+
+
+/**
+ * Typed identifier for a well-known PaymentOrchestrationContext attribute.
+ * <p>
+ * Each key owns a fixed slot index, so reading or writing a well-known
+ * attribute is a single array access. Attributes that are not listed here
+ * are stored by name as ad-hoc extension attributes.
+ */
+public final class ContextKey<T> {
+
+    public static final ContextKey<Map<String, Object>> RAW_REQUEST = new ContextKey<>(0, "rawRequest", mapType());
+    public static final ContextKey<String> FLOW_ID = new ContextKey<>(1, "flowId", String.class);
+    public static final ContextKey<Boolean> VALIDATED = new ContextKey<>(2, "validated", Boolean.class);
+    public static final ContextKey<String> CHANNEL = new ContextKey<>(3, "channel", String.class);
+    public static final ContextKey<Instant> RECEIVED_AT = new ContextKey<>(4, "receivedAt", Instant.class);
+    public static final ContextKey<Map<String, Object>> ISO20022_MESSAGE =
+            new ContextKey<>(5, "iso20022Message", mapType());
+    public static final ContextKey<String> FRAUD_DECISION = new ContextKey<>(6, "fraudDecision", String.class);
+    public static final ContextKey<String> ROUTE = new ContextKey<>(7, "route", String.class);
+    public static final ContextKey<String> LEDGER_ID = new ContextKey<>(8, "ledgerId", String.class);
+
+    private static final ContextKey<?>[] ALL = {
+            RAW_REQUEST, FLOW_ID, VALIDATED, CHANNEL, RECEIVED_AT,
+            ISO20022_MESSAGE, FRAUD_DECISION, ROUTE, LEDGER_ID
+    };
+
+    private static final Map<String, ContextKey<?>> BY_NAME = new HashMap<>();
+
+    static {
+        for (int i = 0; i < ALL.length; i++) {
+            if (ALL[i].index != i) {
+                throw new IllegalStateException("ContextKey " + ALL[i].name + " has index " + ALL[i].index);
+            }
+            BY_NAME.put(ALL[i].name, ALL[i]);
+        }
+    }
+
+    private final int index;
+    private final String name;
+    private final Class<T> type;
+
+    private ContextKey(int index, String name, Class<T> type) {
+        this.index = index;
+        this.name = name;
+        this.type = type;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<Map<String, Object>> mapType() {
+        return (Class<Map<String, Object>>) (Class<?>) Map.class;
+    }
+
+    /**
+     * Number of well-known keys, which is also the size of a context's slot array.
+     */
+    static int count() {
+        return ALL.length;
+    }
+
+    static ContextKey<?> at(int index) {
+        return ALL[index];
+    }
+
+    /**
+     * Returns the well-known key with the given attribute name, or null if the
+     * name denotes an extension attribute.
+     */
+    public static ContextKey<?> forName(String name) {
+        return BY_NAME.get(name);
+    }
+
+    int index() {
+        return index;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,189 @@
+package realtimepaymentarchitectureorchestration.orchestration;
+
+import java.util.*;
+
+import realtimepaymentarchitectureorchestration.config.FlowDefinition;
+import realtimepaymentarchitectureorchestration.config.FlowStep;
+import realtimepaymentarchitectureorchestration.config.PipelineConfigLoader;
+
+
+/**
+ * Immutable set of compiled flow plans, one OrchestrationPipeline per configured flow.
+ * <p>
+ * Flow step names are resolved to OrchestrationStep handlers once, when the
+ * registry is compiled. Workflow selection is compiled too: every cell of the
+ * WorkflowRegistry's decision index is bound to its pipeline up front, so
+ * selecting a plan for a payment is an index computation and one array load.
+ * Each flow is compiled against a StageGraph. The default graph is
+ * sequential; compiling against StageGraph.standard() runs independent steps
+ * as parallel groups.
+ * <p>
+ * Registries never change after construction. A configuration reload compiles a
+ * new registry with the next version number and publishes it as a whole.
+ */
+public final class FlowPlanRegistry {
+
+    public static final String DOMESTIC_FLOW = "domestic-rtp";
+    public static final String HIGH_VALUE_FLOW = "high-value-review";
+    public static final String CROSS_BORDER_FLOW = "cross-border-sample";
+
+    private final long version;
+    private final Map<OrchestrationStep, OrchestrationStepHandler> handlers;
+    private final Map<String, OrchestrationPipeline> plans;
+    private final WorkflowRegistry workflows;
+    private final StageGraph graph;
+    private final WorkflowRegistry.DecisionIndex index;
+    private final OrchestrationPipeline[] planByCell;
+
+    private FlowPlanRegistry(long version,
+                             Map<OrchestrationStep, OrchestrationStepHandler> handlers,
+                             Map<String, OrchestrationPipeline> plans,
+                             OrchestrationPipeline fallback,
+                             WorkflowRegistry workflows,
+                             StageGraph graph) {
+        this.version = version;
+        this.handlers = handlers;
+        this.plans = Collections.unmodifiableMap(plans);
+        this.workflows = workflows;
+        this.graph = graph;
+        this.index = workflows.getIndex();
+        OrchestrationPipeline domestic = plans.getOrDefault(DOMESTIC_FLOW, fallback);
+        this.planByCell = new OrchestrationPipeline[index.size()];
+        for (int cell = 0; cell < planByCell.length; cell++) {
+            WorkflowDefinition definition = index.definitionAt(cell);
+            OrchestrationPipeline plan = definition != null ? plans.get(definition.getFlowId()) : null;
+            planByCell[cell] = plan != null ? plan : domestic;
+        }
+    }
+
+    /**
+     * Compiles every flow known to the loader using the standard step handlers
+     * and workflows, running every flow strictly in order.
+     */
+    public static FlowPlanRegistry compile(PipelineConfigLoader loader) {
+        return compile(loader, StageGraph.sequential());
+    }
+
+    /**
+     * Compiles every flow known to the loader using the standard step handlers
+     * and workflows and the given stage graph.
+     */
+    public static FlowPlanRegistry compile(PipelineConfigLoader loader, StageGraph graph) {
+        return compile(loader, StandardStepHandlers.registry(), WorkflowRegistry.standard(), graph);
+    }
+
+    /**
+     * Compiles every flow known to the loader, running every flow strictly in
+     * order. Workflows whose flow id is not configured, and payments no
+     * workflow matches, run the domestic flow.
+     */
+    public static FlowPlanRegistry compile(PipelineConfigLoader loader,
+                                           Map<OrchestrationStep, OrchestrationStepHandler> handlers,
+                                           WorkflowRegistry workflows) {
+        return compile(loader, handlers, workflows, StageGraph.sequential());
+    }
+
+    /**
+     * Compiles every flow known to the loader, running steps the graph marks as
+     * independent concurrently. Pass {@link StageGraph#standard()} to fan out
+     * enrichment, transformation, sanctions and fraud checks.
+     */
+    public static FlowPlanRegistry compile(PipelineConfigLoader loader,
+                                           Map<OrchestrationStep, OrchestrationStepHandler> handlers,
+                                           WorkflowRegistry workflows,
+                                           StageGraph graph) {
+        Objects.requireNonNull(handlers, "handlers");
+        Objects.requireNonNull(workflows, "workflows");
+        Objects.requireNonNull(graph, "graph");
+        Map<OrchestrationStep, OrchestrationStepHandler> frozen =
+                Collections.unmodifiableMap(new EnumMap<>(handlers));
+        return compile(1L, loader, frozen, workflows, graph);
+    }
+
+    private static FlowPlanRegistry compile(long version,
+                                            PipelineConfigLoader loader,
+                                            Map<OrchestrationStep, OrchestrationStepHandler> handlers,
+                                            WorkflowRegistry workflows,
+                                            StageGraph graph) {
+        Objects.requireNonNull(loader, "loader");
+        Map<String, OrchestrationPipeline> plans = new LinkedHashMap<>();
+        for (FlowDefinition flow : loader.getAllFlows().values()) {
+            plans.put(flow.getId(), compileFlow(flow, handlers, graph));
+        }
+        return new FlowPlanRegistry(version, handlers, plans,
+                new OrchestrationPipeline("standard", OrchestrationPipeline.standardOrder(), handlers, graph),
+                workflows, graph);
+    }
+
+    /**
+     * Compiles a new registry from the given flows, reusing this registry's
+     * handlers, workflows and stage graph and carrying the next version number. Rules added
+     * to the WorkflowRegistry since the last compile take effect here.
+     * This registry is left untouched.
+     */
+    public FlowPlanRegistry recompile(PipelineConfigLoader loader) {
+        return compile(version + 1, loader, handlers, workflows, graph);
+    }
+
+    /**
+     * Wraps a single pipeline so that every payment runs through it.
+     */
+    public static FlowPlanRegistry single(OrchestrationPipeline pipeline) {
+        Objects.requireNonNull(pipeline, "pipeline");
+        Map<String, OrchestrationPipeline> plans = new LinkedHashMap<>();
+        plans.put(pipeline.getId(), pipeline);
+        return new FlowPlanRegistry(1L, StandardStepHandlers.registry(), plans, pipeline,
+                WorkflowRegistry.catchAll(new WorkflowDefinition(pipeline.getId(), pipeline.getId())),
+                StageGraph.sequential());
+    }
+
+    private static OrchestrationPipeline compileFlow(FlowDefinition flow,
+                                                     Map<OrchestrationStep, OrchestrationStepHandler> handlers,
+                                                     StageGraph graph) {
+        List<OrchestrationStep> order = new ArrayList<>(flow.getSteps().size());
+        for (FlowStep step : flow.getSteps()) {
+            try {
+                order.add(OrchestrationStep.valueOf(step.getName()));
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException(
+                        "Flow " + flow.getId() + " references unknown step " + step.getName(), ex);
+            }
+        }
+        return new OrchestrationPipeline(flow.getId(), order, handlers, graph);
+    }
+
+    /**
+     * Chooses the plan for a payment from the precomputed workflow index. With the
+     * standard workflows, non-USD payments take the cross-border flow, USD payments
+     * above 50,000 take the high-value flow, and everything else takes the domestic
+     * flow. Payments whose amount cannot be read fall into the lowest amount band.
+     */
+    public OrchestrationPipeline select(Map<String, Object> paymentData) {
+        return planByCell[index.cell(paymentData)];
+    }
+
+    public WorkflowDefinition selectWorkflow(Map<String, Object> paymentData) {
+        return index.definitionAt(index.cell(paymentData));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public OrchestrationPipeline getPlan(String flowId) {
+        return plans.get(flowId);
+    }
+
+    public Map<String, OrchestrationPipeline> getPlans() {
+        return plans;
+    }
+
+    @Override
+    public String toString() {
+        return "FlowPlanRegistry{" +
+                "version=" + version +
+                ", plans=" + plans.keySet() +
+                ", workflowCells=" + planByCell.length +
+                '}';
+    }
+}
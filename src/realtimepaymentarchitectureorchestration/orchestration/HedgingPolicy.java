@@ -0,0 +1,405 @@
+package realtimepaymentarchitectureorchestration.orchestration;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import realtimepaymentarchitectureorchestration.observability.Histogram;
+
+
+/**
+ * Sends a speculative duplicate of a slow downstream call to an alternate
+ * route and takes whichever answers first.
+ * <p>
+ * Every call's latency is recorded against its route in a windowed histogram.
+ * Once a route has enough samples, its hedge delay is the configured
+ * percentile of recent latency, for example p95. A call that has not answered
+ * by then is sent again on the alternate route, and the first successful
+ * answer wins. At p95 about one call in twenty is hedged, so hedges add little
+ * load while cutting the tail.
+ * <p>
+ * The primary call always runs on the caller's thread, so the policy adds no
+ * thread per call; only hedges are handed to the hedge executor. The shared
+ * policy uses a pool of at most {@value #MAX_HEDGE_THREADS} threads with no
+ * queue, and a hedge the executor rejects is simply not sent. Because the
+ * caller runs the primary, it gets control back when the primary returns; a
+ * hedge that succeeded in the meantime makes that outcome a success even if
+ * the primary failed, so a slow failure does not cost a retry.
+ * <p>
+ * Both copies of a call carry the same idempotency key, so the clearing side
+ * can apply at most one of them. Locally, a second call with a key that is
+ * still in flight joins the first call instead of issuing new requests.
+ * <p>
+ * Callers with a deadline pass their remaining budget, and no hedge is sent
+ * once the deadline has passed.
+ */
+public class HedgingPolicy {
+
+    /**
+     * One downstream call on a route. Returns whether the call succeeded.
+     */
+    @FunctionalInterface
+    public interface Call {
+        boolean run(String route, String idempotencyKey);
+    }
+
+    /**
+     * Most hedges the shared policy runs at once.
+     */
+    public static final int MAX_HEDGE_THREADS = 16;
+
+    private static final HedgingPolicy DOWNSTREAM_DEFAULT =
+            new HedgingPolicy(95d, 50, 1L, 10_000L, SharedPools.SCHEDULER, SharedPools.HEDGES);
+
+    private final double percentile;
+    private final int minSamples;
+    private final long minDelayNanos;
+    private final long windowNanos;
+    private final ScheduledExecutorService scheduler;
+    private final Executor hedgeExecutor;
+    private final ConcurrentMap<String, RouteLatency> latencies = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong hedgesSent = new AtomicLong();
+    private final AtomicLong hedgesWon = new AtomicLong();
+    private final AtomicLong hedgesPastDeadline = new AtomicLong();
+    private final AtomicLong hedgesRejected = new AtomicLong();
+    private volatile boolean enabled = true;
+
+    /**
+     * @param percentile      latency percentile (0-100) that triggers a hedge
+     * @param minSamples      samples a route needs in its window before it is hedged
+     * @param minDelayMillis  lower bound on the hedge delay
+     * @param windowMillis    how long latency samples stay in the current window
+     * @param scheduler       fires hedge timers
+     * @param hedgeExecutor   runs hedges; a hedge it rejects is not sent
+     */
+    public HedgingPolicy(double percentile, int minSamples, long minDelayMillis, long windowMillis,
+                         ScheduledExecutorService scheduler, Executor hedgeExecutor) {
+        if (percentile <= 0d || percentile >= 100d) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        if (minSamples <= 0 || minDelayMillis < 0 || windowMillis <= 0) {
+            throw new IllegalArgumentException("minSamples and windowMillis must be positive, minDelayMillis not negative");
+        }
+        this.percentile = percentile;
+        this.minSamples = minSamples;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.scheduler = Objects.requireNonNull(scheduler, "scheduler");
+        this.hedgeExecutor = Objects.requireNonNull(hedgeExecutor, "hedgeExecutor");
+    }
+
+    /**
+     * Shared policy for simulated downstream calls: hedge at p95 once a route
+     * has 50 samples in its 10 second window.
+     */
+    public static HedgingPolicy downstreamDefault() {
+        return DOWNSTREAM_DEFAULT;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns hedging on or off. Latency is tracked either way.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Runs the call on {@code route} on the caller's thread, hedging to
+     * {@code alternateRoute} if the route is slow. With no alternate, hedging
+     * disabled or too few samples, no hedge is armed. The returned future may
+     * still be pending if the primary failed while a hedge is running.
+     */
+    public CompletableFuture<Boolean> executeAsync(String idempotencyKey, String route,
+                                                   String alternateRoute, Call call) {
+        return executeAsync(idempotencyKey, route, alternateRoute, call, Long.MAX_VALUE);
+    }
+
+    /**
+     * Like {@link #executeAsync(String, String, String, Call)}, but never sends
+     * a hedge after {@code remainingNanos} have passed. A route whose hedge
+     * delay is not shorter than the remaining time runs unhedged.
+     * Long.MAX_VALUE means no deadline.
+     */
+    public CompletableFuture<Boolean> executeAsync(String idempotencyKey, String route,
+                                                   String alternateRoute, Call call,
+                                                   long remainingNanos) {
+        Objects.requireNonNull(idempotencyKey, "idempotencyKey");
+        Objects.requireNonNull(route, "route");
+        Objects.requireNonNull(call, "call");
+        CompletableFuture<Boolean> outcome = new CompletableFuture<>();
+        CompletableFuture<Boolean> existing = inFlight.putIfAbsent(idempotencyKey, outcome);
+        if (existing != null) {
+            return existing;
+        }
+        outcome.whenComplete((ignored, ex) -> inFlight.remove(idempotencyKey, outcome));
+        long delayNanos = enabled && alternateRoute != null ? getHedgeDelayNanos(route) : -1L;
+        if (delayNanos >= 0 && delayNanos >= remainingNanos) {
+            hedgesPastDeadline.incrementAndGet();
+            delayNanos = -1L;
+        }
+        if (delayNanos < 0) {
+            try {
+                outcome.complete(timed(route, idempotencyKey, call));
+            } catch (RuntimeException ex) {
+                outcome.completeExceptionally(ex);
+            }
+            return outcome;
+        }
+        long deadlineNanos = remainingNanos == Long.MAX_VALUE ? 0L : System.nanoTime() + remainingNanos;
+        new Race(idempotencyKey, outcome, call, remainingNanos != Long.MAX_VALUE, deadlineNanos)
+                .start(route, alternateRoute, delayNanos);
+        return outcome;
+    }
+
+    /**
+     * Convenience for synchronous callers: runs {@link #executeAsync} and waits
+     * for the first answer.
+     */
+    public boolean execute(String idempotencyKey, String route, String alternateRoute, Call call) {
+        try {
+            return executeAsync(idempotencyKey, route, alternateRoute, call).join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Records one call's latency against a route.
+     */
+    public void recordLatency(String route, long nanos) {
+        latencyOf(route).record(nanos);
+    }
+
+    /**
+     * Current hedge delay for a route, or -1 while it has too few samples.
+     */
+    public long getHedgeDelayNanos(String route) {
+        RouteLatency latency = latencies.get(route);
+        return latency == null ? -1L : latency.hedgeDelayNanos;
+    }
+
+    /**
+     * Number of duplicate requests sent to an alternate route.
+     */
+    public long getHedgesSent() {
+        return hedgesSent.get();
+    }
+
+    /**
+     * Number of hedged calls whose alternate answered first.
+     */
+    public long getHedgesWon() {
+        return hedgesWon.get();
+    }
+
+    /**
+     * Number of hedges not sent because they were due at or after the caller's deadline.
+     */
+    public long getHedgesPastDeadline() {
+        return hedgesPastDeadline.get();
+    }
+
+    /**
+     * Number of hedges not sent because the hedge executor rejected them.
+     */
+    public long getHedgesRejected() {
+        return hedgesRejected.get();
+    }
+
+    private boolean timed(String route, String idempotencyKey, Call call) {
+        long startNanos = System.nanoTime();
+        try {
+            return call.run(route, idempotencyKey);
+        } finally {
+            recordLatency(route, System.nanoTime() - startNanos);
+        }
+    }
+
+    private RouteLatency latencyOf(String route) {
+        RouteLatency latency = latencies.get(route);
+        return latency != null ? latency : latencies.computeIfAbsent(route, r -> new RouteLatency());
+    }
+
+    /**
+     * A primary call and, if it is slow, one hedge racing it. The race has two
+     * slots, primary and hedge, and settles once both are accounted for: a
+     * hedge that is never sent settles its slot when that is decided.
+     */
+    private final class Race {
+
+        private final String idempotencyKey;
+        private final CompletableFuture<Boolean> outcome;
+        private final Call call;
+        private final boolean bounded;
+        private final long deadlineNanos;
+        private final AtomicInteger unsettled = new AtomicInteger(2);
+        private final AtomicBoolean hedgeClaimed = new AtomicBoolean();
+        private final AtomicBoolean won = new AtomicBoolean();
+        private final AtomicReference<RuntimeException> error = new AtomicReference<>();
+        private volatile ScheduledFuture<?> timer;
+
+        Race(String idempotencyKey, CompletableFuture<Boolean> outcome, Call call,
+             boolean bounded, long deadlineNanos) {
+            this.idempotencyKey = idempotencyKey;
+            this.outcome = outcome;
+            this.call = call;
+            this.bounded = bounded;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Arms the hedge timer, then runs the primary on the calling thread.
+         */
+        void start(String route, String alternateRoute, long delayNanos) {
+            try {
+                timer = scheduler.schedule(() -> hedge(alternateRoute), delayNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException ex) {
+                if (hedgeClaimed.compareAndSet(false, true)) {
+                    settle();
+                }
+            }
+            attempt(route, false);
+        }
+
+        private void hedge(String alternateRoute) {
+            if (!hedgeClaimed.compareAndSet(false, true)) {
+                return;
+            }
+            if (outcome.isDone()) {
+                settle();
+                return;
+            }
+            if (bounded && System.nanoTime() - deadlineNanos >= 0) {
+                hedgesPastDeadline.incrementAndGet();
+                settle();
+                return;
+            }
+            hedgesSent.incrementAndGet();
+            try {
+                hedgeExecutor.execute(() -> attempt(alternateRoute, true));
+            } catch (RejectedExecutionException ex) {
+                // Every hedge thread is busy: count it as not sent and let the primary decide.
+                hedgesSent.decrementAndGet();
+                hedgesRejected.incrementAndGet();
+                settle();
+            }
+        }
+
+        private void attempt(String route, boolean isHedge) {
+            boolean success = false;
+            if (!outcome.isDone()) {
+                try {
+                    success = timed(route, idempotencyKey, call);
+                } catch (RuntimeException ex) {
+                    error.compareAndSet(null, ex);
+                }
+            }
+            if (success && won.compareAndSet(false, true)) {
+                if (isHedge) {
+                    hedgesWon.incrementAndGet();
+                }
+                cancelTimer();
+                outcome.complete(Boolean.TRUE);
+            }
+            if (!isHedge && !success && hedgeClaimed.compareAndSet(false, true)) {
+                // The primary failed before the hedge was due; leave retrying to the caller.
+                cancelTimer();
+                settle();
+            }
+            settle();
+        }
+
+        private void cancelTimer() {
+            ScheduledFuture<?> pending = timer;
+            if (pending != null) {
+                pending.cancel(false);
+            }
+        }
+
+        private void settle() {
+            if (unsettled.decrementAndGet() == 0) {
+                RuntimeException ex = error.get();
+                if (ex != null) {
+                    outcome.completeExceptionally(ex);
+                } else {
+                    outcome.complete(Boolean.FALSE);
+                }
+            }
+        }
+    }
+
+    /**
+     * Recent latency of one route: the current window and the one before it.
+     * The hedge delay is refreshed every few samples rather than on every read.
+     */
+    private final class RouteLatency {
+
+        private volatile Histogram current = new Histogram();
+        private volatile Histogram previous;
+        private volatile long windowStartNanos = System.nanoTime();
+        private final AtomicInteger sinceRefresh = new AtomicInteger();
+        volatile long hedgeDelayNanos = -1L;
+
+        void record(long nanos) {
+            long now = System.nanoTime();
+            if (now - windowStartNanos >= windowNanos) {
+                rotate(now);
+            }
+            current.record(nanos);
+            if ((sinceRefresh.incrementAndGet() & 15) == 0) {
+                refresh();
+            }
+        }
+
+        private synchronized void rotate(long now) {
+            if (now - windowStartNanos < windowNanos) {
+                return;
+            }
+            previous = current;
+            current = new Histogram();
+            windowStartNanos = now;
+            refresh();
+        }
+
+        private void refresh() {
+            Histogram source = current;
+            if (source.getCount() < minSamples) {
+                source = previous;
+            }
+            if (source == null || source.getCount() < minSamples) {
+                hedgeDelayNanos = -1L;
+                return;
+            }
+            hedgeDelayNanos = Math.max(minDelayNanos, source.getPercentile(percentile));
+        }
+    }
+
+    private static final class SharedPools {
+
+        private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+        static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+                task -> daemon(task, "hedge-timer-" + SEQUENCE.incrementAndGet()));
+
+        static final ExecutorService HEDGES = new ThreadPoolExecutor(0, MAX_HEDGE_THREADS,
+                60L, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                task -> daemon(task, "hedge-call-" + SEQUENCE.incrementAndGet()));
+
+        private static Thread daemon(Runnable task, String name) {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package realtimepaymentarchitectureorchestration.orchestration;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * Unbounded lock-free queue for many producers and a single consumer.
+ * <p>
+ * Producers swap themselves onto the tail with one atomic exchange and then
+ * link the previous node, so offering never retries or blocks. Only the owning
+ * consumer thread may call {@link #poll()} and {@link #isEmpty()}. A node that
+ * has been swapped in but not yet linked is briefly invisible to the
+ * consumer; it shows up once its producer finishes {@link #offer}.
+ */
+final class MpscInbox<T> {
+
+    private final AtomicReference<Node<T>> tail;
+    private Node<T> head;
+
+    MpscInbox() {
+        Node<T> stub = new Node<>(null);
+        this.head = stub;
+        this.tail = new AtomicReference<>(stub);
+    }
+
+    void offer(T value) {
+        Node<T> node = new Node<>(value);
+        Node<T> previous = tail.getAndSet(node);
+        previous.next = node;
+    }
+
+    T poll() {
+        Node<T> next = head.next;
+        if (next == null) {
+            return null;
+        }
+        T value = next.value;
+        next.value = null;
+        head = next;
+        return value;
+    }
+
+    boolean isEmpty() {
+        return head.next == null;
+    }
+
+    private static final class Node<T> {
+
+        T value;
+        volatile Node<T> next;
+
+        Node(T value) {
+            this.value = value;
+        }
+    }
+}
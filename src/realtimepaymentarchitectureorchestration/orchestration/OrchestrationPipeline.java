@@ -1,37 +1,537 @@
 package realtimepaymentarchitectureorchestration.orchestration;
 
-import java.time.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 /**
- * OrchestrationPipeline is a supporting type in the orchestration layer.
+ * An ordered sequence of orchestration steps compiled into flat arrays.
+ * <p>
+ * Step handlers are resolved once when the pipeline is built, so running a
+ * payment is a plain indexed loop with no map lookups or reflection. To add
+ * or reorder stages, build a new pipeline from a different step order.
+ * <p>
+ * A StageGraph decides which consecutive steps may run concurrently. Such a
+ * parallel group fans out across the executor pools and joins before the next
+ * step starts. Each branch collects its messages separately and they are
+ * appended in step order after the join, so output does not depend on
+ * scheduling. Once a branch fails or rejects the payment, branches that have
+ * not started are skipped. Branches already running are not interrupted and
+ * finish their handler; the first failure is reported after the join.
+ * <p>
+ * Before each step the context's deadline is checked. A payment that is out
+ * of time is rejected with OutcomeCode.TIMEOUT instead of starting the step,
+ * and optional steps are skipped with a message when the remaining budget is
+ * below the context's reserve.
  */
-public class OrchestrationPipeline {
+public final class OrchestrationPipeline {
 
-    private final Map<String, Object> metadata = new LinkedHashMap<>();
+    private static final List<OrchestrationStep> STANDARD_ORDER = List.of(
+            OrchestrationStep.VALIDATE,
+            OrchestrationStep.ENRICH,
+            OrchestrationStep.TRANSFORM_TO_ISO20022,
+            OrchestrationStep.FRAUD_CHECK,
+            OrchestrationStep.ROUTE,
+            OrchestrationStep.POST,
+            OrchestrationStep.NOTIFY
+    );
 
-    public OrchestrationPipeline() {
-        metadata.put("createdAt", Instant.now());
-        metadata.put("createdBy", "OrchestrationPipeline");
+    private final String id;
+    private final OrchestrationStep[] steps;
+    private final OrchestrationStepHandler[] handlers;
+    private final int[] segmentEnds;
+    private final AsyncTaskExecutor.StageClass[] segmentClasses;
+    private final boolean[] segmentParallel;
+
+    /**
+     * Builds a pipeline whose steps run strictly in the given order.
+     */
+    public OrchestrationPipeline(String id,
+                                 List<OrchestrationStep> order,
+                                 Map<OrchestrationStep, OrchestrationStepHandler> registry) {
+        this(id, order, registry, StageGraph.sequential());
+    }
+
+    /**
+     * Builds a pipeline that runs consecutive steps concurrently wherever the
+     * graph says they are independent.
+     */
+    public OrchestrationPipeline(String id,
+                                 List<OrchestrationStep> order,
+                                 Map<OrchestrationStep, OrchestrationStepHandler> registry,
+                                 StageGraph graph) {
+        this.id = Objects.requireNonNull(id, "id");
+        Objects.requireNonNull(graph, "graph");
+        Objects.requireNonNull(order, "order");
+        Objects.requireNonNull(registry, "registry");
+
+        this.steps = new OrchestrationStep[order.size()];
+        this.handlers = new OrchestrationStepHandler[order.size()];
+        EnumSet<OrchestrationStep> seen = EnumSet.noneOf(OrchestrationStep.class);
+        for (int i = 0; i < order.size(); i++) {
+            OrchestrationStep step = Objects.requireNonNull(order.get(i), "step");
+            if (step.isTerminal()) {
+                throw new IllegalArgumentException("Terminal step " + step + " cannot be part of a pipeline");
+            }
+            if (!seen.add(step)) {
+                throw new IllegalArgumentException("Duplicate step " + step + " in pipeline " + id);
+            }
+            OrchestrationStepHandler handler = registry.get(step);
+            if (handler == null) {
+                throw new IllegalArgumentException("No handler registered for step " + step);
+            }
+            steps[i] = step;
+            handlers[i] = handler;
+        }
+
+        int[] groupEnds = graph.groupEnds(steps);
+        int[] ends = new int[groupEnds.length];
+        AsyncTaskExecutor.StageClass[] classes = new AsyncTaskExecutor.StageClass[groupEnds.length];
+        boolean[] parallel = new boolean[groupEnds.length];
+        int segments = 0;
+        int start = 0;
+        for (int end : groupEnds) {
+            if (end - start > 1) {
+                ends[segments] = end;
+                classes[segments] = AsyncTaskExecutor.StageClass.CPU;
+                parallel[segments] = true;
+                segments++;
+            } else {
+                AsyncTaskExecutor.StageClass stageClass = AsyncTaskExecutor.classify(steps[start]);
+                if (segments > 0 && !parallel[segments - 1] && classes[segments - 1] == stageClass) {
+                    ends[segments - 1] = end;
+                } else {
+                    ends[segments] = end;
+                    classes[segments] = stageClass;
+                    segments++;
+                }
+            }
+            start = end;
+        }
+        this.segmentEnds = Arrays.copyOf(ends, segments);
+        this.segmentClasses = Arrays.copyOf(classes, segments);
+        this.segmentParallel = Arrays.copyOf(parallel, segments);
+    }
+
+    /**
+     * The default VALIDATE through NOTIFY pipeline using the standard handlers.
+     */
+    public static OrchestrationPipeline standard() {
+        return new OrchestrationPipeline("standard", STANDARD_ORDER, StandardStepHandlers.registry());
+    }
+
+    public static List<OrchestrationStep> standardOrder() {
+        return STANDARD_ORDER;
+    }
+
+    /**
+     * Runs every compiled step in order, advancing the context before each one.
+     * Each step that completes is logged to the saga so it can be compensated
+     * if a later step fails. The time spent in each step, including one that
+     * fails, is recorded on the context. Execution stops quietly after a step
+     * that rejects the payment through its context. Parallel groups run one
+     * step after another on the caller's thread.
+     */
+    public void execute(Map<String, Object> paymentData,
+                        PaymentOrchestrationContext context,
+                        List<String> messages,
+                        SagaCoordinator.Saga saga) {
+        execute(paymentData, context, messages, saga, null);
+    }
+
+    /**
+     * Same as {@link #execute(Map, PaymentOrchestrationContext, List, SagaCoordinator.Saga)},
+     * but parallel groups fan out to the executor's pools. The caller runs the
+     * first branch itself and waits for the others.
+     */
+    public void execute(Map<String, Object> paymentData,
+                        PaymentOrchestrationContext context,
+                        List<String> messages,
+                        SagaCoordinator.Saga saga,
+                        AsyncTaskExecutor executor) {
+        int from = 0;
+        for (int segment = 0; segment < segmentEnds.length; segment++) {
+            int to = segmentEnds[segment];
+            boolean proceed;
+            if (segmentParallel[segment] && executor != null) {
+                ParallelGroup group = new ParallelGroup(from, to, paymentData, context, messages, saga);
+                group.start(executor, true).join();
+                proceed = group.finish();
+            } else {
+                proceed = executeRange(from, to, paymentData, context, messages, saga);
+            }
+            if (!proceed) {
+                return;
+            }
+            from = to;
+        }
+    }
+
+    /**
+     * Runs a whole batch through the pipeline, one step at a time, in
+     * configured order (parallel groups are not fanned out in batch mode): every live
+     * payment is validated, then every live payment is enriched, and so on.
+     * A payment that fails is recorded on the batch and skipped by later steps.
+     * If a handler's batch call itself throws, every payment still live in the
+     * batch fails with that exception. The time a step takes for the batch is
+     * split evenly across the payments it ran for. Payments past their
+     * deadline are rejected with TIMEOUT before a step; an optional step runs
+     * one payment at a time when some payments lack the budget for it.
+     */
+    public void executeBatch(PaymentBatch batch) {
+        int size = batch.size();
+        for (int s = 0; s < steps.length && batch.liveCount() > 0; s++) {
+            OrchestrationStep step = steps[s];
+            int ran = 0;
+            boolean skipping = false;
+            for (int i = 0; i < size; i++) {
+                if (batch.isLive(i)) {
+                    PaymentOrchestrationContext context = batch.context(i);
+                    if (timedOut(context)) {
+                        batch.checkRejected(i);
+                        continue;
+                    }
+                    context.advanceTo(step);
+                    skipping |= handlers[s].isOptional() && !context.hasBudgetForOptionalStep();
+                    ran++;
+                }
+            }
+            if (ran == 0) {
+                continue;
+            }
+            long startNanos = System.nanoTime();
+            if (skipping) {
+                executeOptionalEach(s, batch);
+            } else {
+                try {
+                    handlers[s].executeBatch(batch);
+                } catch (RuntimeException ex) {
+                    for (int i = 0; i < size; i++) {
+                        batch.fail(i, ex);
+                    }
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                batch.checkRejected(i);
+            }
+            long share = (System.nanoTime() - startNanos) / ran;
+            for (int i = 0; i < size; i++) {
+                if (batch.context(i).getCurrentStep() == step) {
+                    batch.context(i).recordStepNanos(step, share);
+                    if (batch.isLive(i)) {
+                        batch.saga(i).stepCompleted(step);
+                    }
+                }
+            }
+        }
+    }
+
+    private void executeOptionalEach(int s, PaymentBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.isLive(i) && !skipOptional(s, batch.context(i), batch.messages(i))) {
+                try {
+                    handlers[s].execute(batch.paymentData(i), batch.context(i), batch.messages(i));
+                } catch (RuntimeException ex) {
+                    batch.fail(i, ex);
+                }
+            }
+        }
     }
 
-    public void put(String key, Object value) {
-        metadata.put(key, value);
+    /**
+     * Runs the pipeline asynchronously. Consecutive steps of the same stage
+     * class were grouped into segments at compile time; each segment runs as one
+     * task on the matching executor pool, so a payment only changes threads when
+     * it moves between CPU-bound and IO-bound work. A parallel group sends each
+     * of its steps to the pool for that step's class. The returned future fails if
+     * a step throws or a pool rejects the next segment, and completes normally
+     * once a step rejects the payment through its context.
+     */
+    public CompletableFuture<Void> executeAsync(Map<String, Object> paymentData,
+                                                PaymentOrchestrationContext context,
+                                                List<String> messages,
+                                                SagaCoordinator.Saga saga,
+                                                AsyncTaskExecutor executor) {
+        AsyncRun run = new AsyncRun(paymentData, context, messages, saga, executor);
+        run.schedule();
+        return run.done;
     }
 
-    public Optional<Object> get(String key) {
-        return Optional.ofNullable(metadata.get(key));
+    /**
+     * Returns false if a step rejected the payment.
+     */
+    private boolean executeRange(int from, int to,
+                              Map<String, Object> paymentData,
+                              PaymentOrchestrationContext context,
+                              List<String> messages,
+                              SagaCoordinator.Saga saga) {
+        for (int i = from; i < to; i++) {
+            if (timedOut(context)) {
+                return false;
+            }
+            OrchestrationStep step = steps[i];
+            context.advanceTo(step);
+            if (skipOptional(i, context, messages)) {
+                continue;
+            }
+            long startNanos = System.nanoTime();
+            try {
+                handlers[i].execute(paymentData, context, messages);
+            } finally {
+                context.recordStepNanos(step, System.nanoTime() - startNanos);
+            }
+            if (context.getRejection() != null) {
+                return false;
+            }
+            saga.stepCompleted(step);
+        }
+        return true;
     }
 
-    public Map<String, Object> getAll() {
-        return Collections.unmodifiableMap(metadata);
+    /**
+     * Rejects the payment with TIMEOUT if its deadline has passed.
+     */
+    private static boolean timedOut(PaymentOrchestrationContext context) {
+        if (!context.isPastDeadline()) {
+            return false;
+        }
+        context.reject(OutcomeCode.TIMEOUT);
+        return true;
     }
 
-    public void logState() {
-        System.out.println("OrchestrationPipeline state:");
-        for (Map.Entry<String, Object> entry : metadata.entrySet()) {
-            System.out.println("  " + entry.getKey() + " = " + entry.getValue());
+    private boolean skipOptional(int i, PaymentOrchestrationContext context, List<String> messages) {
+        if (!handlers[i].isOptional() || context.hasBudgetForOptionalStep()) {
+            return false;
+        }
+        messages.add("Skipped optional step " + steps[i] + ": deadline budget too low");
+        return true;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public List<OrchestrationStep> getSteps() {
+        return List.of(steps);
+    }
+
+    public int size() {
+        return steps.length;
+    }
+
+    /**
+     * Whether any consecutive steps were compiled into a parallel group.
+     */
+    public boolean hasParallelGroups() {
+        for (boolean parallel : segmentParallel) {
+            if (parallel) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "OrchestrationPipeline{" +
+                "id='" + id + '\'' +
+                ", steps=" + Arrays.toString(steps) +
+                ", parallelSegments=" + Arrays.toString(segmentParallel) +
+                '}';
+    }
+
+    /**
+     * Walks one payment through the segments, resubmitting itself to the
+     * pool of each following segment.
+     */
+    private final class AsyncRun implements Runnable {
+
+        private final Map<String, Object> paymentData;
+        private final PaymentOrchestrationContext context;
+        private final List<String> messages;
+        private final SagaCoordinator.Saga saga;
+        private final AsyncTaskExecutor executor;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private int segment;
+
+        AsyncRun(Map<String, Object> paymentData,
+                 PaymentOrchestrationContext context,
+                 List<String> messages,
+                 SagaCoordinator.Saga saga,
+                 AsyncTaskExecutor executor) {
+            this.paymentData = paymentData;
+            this.context = context;
+            this.messages = messages;
+            this.saga = saga;
+            this.executor = executor;
+        }
+
+        void schedule() {
+            if (segment == segmentEnds.length) {
+                done.complete(null);
+                return;
+            }
+            if (segmentParallel[segment]) {
+                int from = segment == 0 ? 0 : segmentEnds[segment - 1];
+                ParallelGroup group = new ParallelGroup(from, segmentEnds[segment],
+                        paymentData, context, messages, saga);
+                group.start(executor, false).whenComplete((ignored, unused) -> {
+                    try {
+                        if (!group.finish()) {
+                            done.complete(null);
+                            return;
+                        }
+                    } catch (Throwable ex) {
+                        done.completeExceptionally(ex);
+                        return;
+                    }
+                    segment++;
+                    schedule();
+                });
+                return;
+            }
+            try {
+                executor.executorFor(segmentClasses[segment]).execute(this);
+            } catch (RejectedExecutionException ex) {
+                done.completeExceptionally(ex);
+            }
+        }
+
+        @Override
+        public void run() {
+            int from = segment == 0 ? 0 : segmentEnds[segment - 1];
+            try {
+                if (!executeRange(from, segmentEnds[segment], paymentData, context, messages, saga)) {
+                    done.complete(null);
+                    return;
+                }
+            } catch (Throwable ex) {
+                done.completeExceptionally(ex);
+                return;
+            }
+            segment++;
+            schedule();
+        }
+    }
+
+    /**
+     * One run of a parallel group for one payment.
+     */
+    private final class ParallelGroup {
+
+        private final int from;
+        private final int to;
+        private final Map<String, Object> paymentData;
+        private final PaymentOrchestrationContext context;
+        private final List<String> messages;
+        private final SagaCoordinator.Saga saga;
+        private final List<String>[] branchMessages;
+        private final boolean[] completed;
+        private final AtomicBoolean stop = new AtomicBoolean();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        @SuppressWarnings("unchecked")
+        ParallelGroup(int from, int to,
+                      Map<String, Object> paymentData,
+                      PaymentOrchestrationContext context,
+                      List<String> messages,
+                      SagaCoordinator.Saga saga) {
+            this.from = from;
+            this.to = to;
+            this.paymentData = paymentData;
+            this.context = context;
+            this.messages = messages;
+            this.saga = saga;
+            this.branchMessages = (List<String>[]) new List<?>[to - from];
+            this.completed = new boolean[to - from];
+        }
+
+        /**
+         * Starts every branch and returns a future that completes once all of
+         * them have finished or been skipped. It never completes exceptionally.
+         */
+        CompletableFuture<Void> start(AsyncTaskExecutor executor, boolean runFirstInline) {
+            if (timedOut(context)) {
+                return CompletableFuture.completedFuture(null);
+            }
+            for (int i = from; i < to; i++) {
+                context.advanceTo(steps[i]);
+            }
+            CompletableFuture<?>[] branches = new CompletableFuture<?>[to - from];
+            for (int k = runFirstInline ? 1 : 0; k < branches.length; k++) {
+                int branch = k;
+                try {
+                    branches[k] = CompletableFuture.runAsync(() -> runBranch(branch),
+                            executor.executorFor(steps[from + k]));
+                } catch (RejectedExecutionException ex) {
+                    failure.compareAndSet(null, ex);
+                    stop.set(true);
+                    branches[k] = CompletableFuture.completedFuture(null);
+                }
+            }
+            if (runFirstInline) {
+                runBranch(0);
+                branches[0] = CompletableFuture.completedFuture(null);
+            }
+            return CompletableFuture.allOf(branches);
+        }
+
+        private void runBranch(int branch) {
+            if (stop.get()) {
+                return;
+            }
+            int i = from + branch;
+            List<String> out = new ArrayList<>(2);
+            branchMessages[branch] = out;
+            if (skipOptional(i, context, out)) {
+                return;
+            }
+            long startNanos = System.nanoTime();
+            try {
+                handlers[i].execute(paymentData, context, out);
+                if (context.getRejection() == null) {
+                    completed[branch] = true;
+                } else {
+                    stop.set(true);
+                }
+            } catch (Throwable ex) {
+                failure.compareAndSet(null, ex);
+                stop.set(true);
+            } finally {
+                context.recordStepNanos(steps[i], System.nanoTime() - startNanos);
+            }
+        }
+
+        /**
+         * Merges branch messages in step order and logs completed steps to the
+         * saga. Returns false if a branch rejected the payment and rethrows the
+         * first branch failure.
+         */
+        boolean finish() {
+            for (int k = 0; k < branchMessages.length; k++) {
+                if (branchMessages[k] != null) {
+                    messages.addAll(branchMessages[k]);
+                }
+            }
+            for (int k = 0; k < completed.length; k++) {
+                if (completed[k]) {
+                    saga.stepCompleted(steps[from + k]);
+                }
+            }
+            Throwable ex = failure.get();
+            if (ex instanceof RuntimeException) {
+                throw (RuntimeException) ex;
+            }
+            if (ex instanceof Error) {
+                throw (Error) ex;
+            }
+            if (ex != null) {
+                throw new IllegalStateException(ex);
+            }
+            return context.getRejection() == null;
         }
     }
 }
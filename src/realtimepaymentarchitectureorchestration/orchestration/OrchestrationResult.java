@@ -6,26 +6,68 @@ import java.util.*;
 
 /**
  * Represents the outcome of an orchestration run.
+ * <p>
+ * Results produced by PaymentOrchestrator hold the status, an OutcomeCode,
+ * nanosecond timings (overall and per step) and references to the payment's
+ * step messages and AuditLog. Nothing is copied or formatted when the result is created;
+ * {@link #getMessages()} renders the human-readable lines the first time it is
+ * called. Code on the hot path should look at {@link #getStatus()} and
+ * {@link #getOutcome()} instead.
  */
 public class OrchestrationResult {
 
     public enum Status {
         SUCCESS,
-        FAILURE
+        FAILURE,
+        /** Refused by admission control; nothing was executed. */
+        REJECTED
     }
 
     private final Status status;
-    private final List<String> messages = new ArrayList<>();
-    private final Instant startedAt;
-    private final Instant completedAt;
+    private final OutcomeCode outcome;
+    private final String internalId;
+    private final long startEpochMillis;
+    private final long startNanos;
+    private final long endNanos;
+    private final List<String> stepMessages;
+    private final String failureMessage;
+    private final List<OrchestrationStep> compensated;
+    private final AuditLog auditLog;
+    private final long[] stepNanos;
+    private volatile List<String> rendered;
 
     public OrchestrationResult(Status status, Instant startedAt, Instant completedAt, Collection<String> messages) {
         this.status = Objects.requireNonNull(status, "status");
-        this.startedAt = startedAt;
-        this.completedAt = completedAt;
-        if (messages != null) {
-            this.messages.addAll(messages);
-        }
+        this.outcome = status == Status.SUCCESS ? OutcomeCode.OK : OutcomeCode.FAILED;
+        this.internalId = null;
+        Instant start = startedAt != null ? startedAt : Instant.now();
+        this.startEpochMillis = start.toEpochMilli();
+        this.startNanos = 0L;
+        this.endNanos = completedAt != null ? Duration.between(start, completedAt).toNanos() : -1L;
+        this.stepMessages = messages != null ? List.copyOf(messages) : List.of();
+        this.failureMessage = null;
+        this.compensated = List.of();
+        this.auditLog = null;
+        this.stepNanos = null;
+        this.rendered = this.stepMessages;
+    }
+
+    OrchestrationResult(Status status, OutcomeCode outcome, String internalId,
+                        long startEpochMillis, long startNanos, long endNanos,
+                        List<String> stepMessages, String failureMessage,
+                        List<OrchestrationStep> compensated, AuditLog auditLog,
+                        long[] stepNanos) {
+        this.status = status;
+        this.outcome = outcome;
+        this.internalId = internalId;
+        this.startEpochMillis = startEpochMillis;
+        this.startNanos = startNanos;
+        this.endNanos = endNanos;
+        this.stepMessages = stepMessages;
+        this.failureMessage = failureMessage;
+        this.compensated = compensated;
+        this.auditLog = auditLog;
+        this.stepNanos = stepNanos;
     }
 
     public static OrchestrationResult success(Collection<String> messages) {
@@ -42,32 +84,103 @@ public class OrchestrationResult {
         return status;
     }
 
+    public OutcomeCode getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Internal id of the payment's context, or null for results built by hand.
+     */
+    public String getInternalId() {
+        return internalId;
+    }
+
+    /**
+     * Step messages, the completion or failure line, any compensations and the
+     * rendered audit trail. Rendered on first call and cached; threads that
+     * race on the first call each render an equal list and one of them is kept.
+     */
     public List<String> getMessages() {
-        return Collections.unmodifiableList(messages);
+        List<String> lines = rendered;
+        if (lines == null) {
+            lines = render();
+            rendered = lines;
+        }
+        return lines;
+    }
+
+    private List<String> render() {
+        List<String> audit = auditLog != null ? auditLog.render() : List.of();
+        List<String> lines = new ArrayList<>(stepMessages.size() + audit.size() + 2);
+        lines.addAll(stepMessages);
+        if (status == Status.SUCCESS) {
+            lines.add("Payment completed successfully with internalId=" + internalId);
+        } else if (status == Status.REJECTED) {
+            lines.add("Payment rejected: " + failureMessage);
+        } else {
+            lines.add("Payment orchestration failed: " + failureMessage);
+            if (!compensated.isEmpty()) {
+                lines.add("Compensated steps: " + compensated);
+            }
+        }
+        lines.addAll(audit);
+        return Collections.unmodifiableList(lines);
+    }
+
+    public List<OrchestrationStep> getCompensatedSteps() {
+        return compensated;
     }
 
     public Instant getStartedAt() {
-        return startedAt;
+        return Instant.ofEpochMilli(startEpochMillis);
     }
 
     public Instant getCompletedAt() {
-        return completedAt;
+        if (endNanos < startNanos) {
+            return null;
+        }
+        return getStartedAt().plusNanos(endNanos - startNanos);
     }
 
-    public long getDurationMillis() {
-        if (startedAt == null || completedAt == null) {
-            return -1;
+    public long getDurationNanos() {
+        return endNanos < startNanos ? -1L : endNanos - startNanos;
+    }
+
+    /**
+     * Nanoseconds the payment spent in the given step, or -1 if the step did
+     * not run or the result was built by hand.
+     */
+    public long getStepNanos(OrchestrationStep step) {
+        return stepNanos != null ? stepNanos[step.ordinal()] : -1L;
+    }
+
+    /**
+     * Time spent in every step that ran, in step order.
+     */
+    public Map<OrchestrationStep, Long> getStepTimings() {
+        Map<OrchestrationStep, Long> timings = new EnumMap<>(OrchestrationStep.class);
+        if (stepNanos != null) {
+            for (OrchestrationStep step : OrchestrationStep.values()) {
+                if (stepNanos[step.ordinal()] >= 0) {
+                    timings.put(step, stepNanos[step.ordinal()]);
+                }
+            }
         }
-        return Duration.between(startedAt, completedAt).toMillis();
+        return timings;
+    }
+
+    public long getDurationMillis() {
+        long nanos = getDurationNanos();
+        return nanos < 0 ? -1 : nanos / 1_000_000L;
     }
 
     @Override
     public String toString() {
         return "OrchestrationResult{" +
                 "status=" + status +
-                ", messages=" + messages +
-                ", startedAt=" + startedAt +
-                ", completedAt=" + completedAt +
+                ", outcome=" + outcome +
+                ", internalId=" + internalId +
+                ", durationNanos=" + getDurationNanos() +
                 '}';
     }
 }
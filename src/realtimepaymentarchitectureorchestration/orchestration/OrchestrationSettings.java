@@ -0,0 +1,287 @@
+package realtimepaymentarchitectureorchestration.orchestration;
+
+import java.util.Objects;
+
+
+/**
+ * Tunables for a PaymentOrchestrator instance.
+ * Defaults are sized for a single demo JVM; production deployments would
+ * typically populate these from ApplicationConfig properties.
+ */
+public class OrchestrationSettings {
+
+    private int cpuWorkerThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private int ioWorkerThreads = Math.max(4, Runtime.getRuntime().availableProcessors() * 4);
+    private int stageQueueCapacity = 4096;
+    private boolean parallelStages = false;
+    private int maxInFlight = 1024;
+    private int admissionInitialLimit = 1024;
+    private int admissionMinLimit = 16;
+    private long admissionLatencyTargetMillis = 500L;
+    private AuditLog.Mode auditMode = AuditLog.Mode.FULL;
+    private int batchMaxSize = 256;
+    private long batchMaxDelayMillis = 50L;
+    private long paymentDeadlineMillis = 5000L;
+    private long optionalStepReserveMillis = 250L;
+    private int shardCount = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private int accountMaxPaymentsPerWindow = 60;
+    private double accountMaxAmountPerWindow = 250_000d;
+    private long accountWindowMillis = 60_000L;
+
+    public int getCpuWorkerThreads() {
+        return cpuWorkerThreads;
+    }
+
+    /**
+     * Threads for CPU-bound stages such as validation, transformation and fraud scoring.
+     */
+    public void setCpuWorkerThreads(int cpuWorkerThreads) {
+        if (cpuWorkerThreads <= 0) {
+            throw new IllegalArgumentException("cpuWorkerThreads must be positive");
+        }
+        this.cpuWorkerThreads = cpuWorkerThreads;
+    }
+
+    public int getIoWorkerThreads() {
+        return ioWorkerThreads;
+    }
+
+    /**
+     * Threads for IO-bound stages such as enrichment, routing, posting and notification.
+     */
+    public void setIoWorkerThreads(int ioWorkerThreads) {
+        if (ioWorkerThreads <= 0) {
+            throw new IllegalArgumentException("ioWorkerThreads must be positive");
+        }
+        this.ioWorkerThreads = ioWorkerThreads;
+    }
+
+    public int getStageQueueCapacity() {
+        return stageQueueCapacity;
+    }
+
+    public void setStageQueueCapacity(int stageQueueCapacity) {
+        if (stageQueueCapacity <= 0) {
+            throw new IllegalArgumentException("stageQueueCapacity must be positive");
+        }
+        this.stageQueueCapacity = stageQueueCapacity;
+    }
+
+    public boolean isParallelStages() {
+        return parallelStages;
+    }
+
+    /**
+     * Whether the default flow plans run independent stages concurrently using
+     * StageGraph.standard(). Off by default: a fan-out costs a thread hop per
+     * branch, which only pays off when the stages wait on downstream calls.
+     */
+    public void setParallelStages(boolean parallelStages) {
+        this.parallelStages = parallelStages;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+        this.maxInFlight = maxInFlight;
+    }
+
+    public int getAdmissionInitialLimit() {
+        return admissionInitialLimit;
+    }
+
+    /**
+     * Starting value of the adaptive concurrency limit. It never exceeds maxInFlight.
+     */
+    public void setAdmissionInitialLimit(int admissionInitialLimit) {
+        if (admissionInitialLimit <= 0) {
+            throw new IllegalArgumentException("admissionInitialLimit must be positive");
+        }
+        this.admissionInitialLimit = admissionInitialLimit;
+    }
+
+    public int getAdmissionMinLimit() {
+        return admissionMinLimit;
+    }
+
+    /**
+     * Floor below which latency-driven decreases never push the adaptive limit.
+     */
+    public void setAdmissionMinLimit(int admissionMinLimit) {
+        if (admissionMinLimit <= 0) {
+            throw new IllegalArgumentException("admissionMinLimit must be positive");
+        }
+        this.admissionMinLimit = admissionMinLimit;
+    }
+
+    public long getAdmissionLatencyTargetMillis() {
+        return admissionLatencyTargetMillis;
+    }
+
+    /**
+     * Payments slower than this shrink the adaptive limit; faster ones grow it.
+     */
+    public void setAdmissionLatencyTargetMillis(long admissionLatencyTargetMillis) {
+        if (admissionLatencyTargetMillis <= 0) {
+            throw new IllegalArgumentException("admissionLatencyTargetMillis must be positive");
+        }
+        this.admissionLatencyTargetMillis = admissionLatencyTargetMillis;
+    }
+
+    public AuditLog.Mode getAuditMode() {
+        return auditMode;
+    }
+
+    /**
+     * Controls how much audit detail each payment captures. STEPS_ONLY or OFF
+     * are intended for throughput runs where the full trail is not needed.
+     */
+    public void setAuditMode(AuditLog.Mode auditMode) {
+        this.auditMode = Objects.requireNonNull(auditMode, "auditMode");
+    }
+
+    public int getBatchMaxSize() {
+        return batchMaxSize;
+    }
+
+    /**
+     * Number of buffered payments at which a PaymentBatcher flushes immediately.
+     */
+    public void setBatchMaxSize(int batchMaxSize) {
+        if (batchMaxSize <= 0) {
+            throw new IllegalArgumentException("batchMaxSize must be positive");
+        }
+        this.batchMaxSize = batchMaxSize;
+    }
+
+    public long getBatchMaxDelayMillis() {
+        return batchMaxDelayMillis;
+    }
+
+    /**
+     * Longest time a PaymentBatcher holds the first buffered payment before flushing.
+     */
+    public void setBatchMaxDelayMillis(long batchMaxDelayMillis) {
+        if (batchMaxDelayMillis <= 0) {
+            throw new IllegalArgumentException("batchMaxDelayMillis must be positive");
+        }
+        this.batchMaxDelayMillis = batchMaxDelayMillis;
+    }
+
+    public long getPaymentDeadlineMillis() {
+        return paymentDeadlineMillis;
+    }
+
+    /**
+     * Time budget for one payment, measured from admission. Steps that would
+     * start after it fail the payment with OutcomeCode.TIMEOUT. Zero disables
+     * the deadline.
+     */
+    public void setPaymentDeadlineMillis(long paymentDeadlineMillis) {
+        if (paymentDeadlineMillis < 0) {
+            throw new IllegalArgumentException("paymentDeadlineMillis must not be negative");
+        }
+        this.paymentDeadlineMillis = paymentDeadlineMillis;
+    }
+
+    public long getOptionalStepReserveMillis() {
+        return optionalStepReserveMillis;
+    }
+
+    /**
+     * Optional steps such as notification are skipped when less than this
+     * much of the payment deadline remains.
+     */
+    public void setOptionalStepReserveMillis(long optionalStepReserveMillis) {
+        if (optionalStepReserveMillis < 0) {
+            throw new IllegalArgumentException("optionalStepReserveMillis must not be negative");
+        }
+        this.optionalStepReserveMillis = optionalStepReserveMillis;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Number of single-threaded shards a ShardedOrchestrator spreads debtor accounts over.
+     */
+    public void setShardCount(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("shardCount must be positive");
+        }
+        this.shardCount = shardCount;
+    }
+
+    public int getAccountMaxPaymentsPerWindow() {
+        return accountMaxPaymentsPerWindow;
+    }
+
+    /**
+     * Velocity limit: payments one debtor account may make per account window.
+     */
+    public void setAccountMaxPaymentsPerWindow(int accountMaxPaymentsPerWindow) {
+        if (accountMaxPaymentsPerWindow <= 0) {
+            throw new IllegalArgumentException("accountMaxPaymentsPerWindow must be positive");
+        }
+        this.accountMaxPaymentsPerWindow = accountMaxPaymentsPerWindow;
+    }
+
+    public double getAccountMaxAmountPerWindow() {
+        return accountMaxAmountPerWindow;
+    }
+
+    /**
+     * Total amount one debtor account may send per account window.
+     */
+    public void setAccountMaxAmountPerWindow(double accountMaxAmountPerWindow) {
+        if (accountMaxAmountPerWindow <= 0d) {
+            throw new IllegalArgumentException("accountMaxAmountPerWindow must be positive");
+        }
+        this.accountMaxAmountPerWindow = accountMaxAmountPerWindow;
+    }
+
+    public long getAccountWindowMillis() {
+        return accountWindowMillis;
+    }
+
+    /**
+     * Length of the sliding window over which account velocity, amount and
+     * duplicates are tracked: a payment counts against its account until this
+     * long after it was accepted.
+     */
+    public void setAccountWindowMillis(long accountWindowMillis) {
+        if (accountWindowMillis <= 0) {
+            throw new IllegalArgumentException("accountWindowMillis must be positive");
+        }
+        this.accountWindowMillis = accountWindowMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "OrchestrationSettings{" +
+                "cpuWorkerThreads=" + cpuWorkerThreads +
+                ", ioWorkerThreads=" + ioWorkerThreads +
+                ", stageQueueCapacity=" + stageQueueCapacity +
+                ", parallelStages=" + parallelStages +
+                ", maxInFlight=" + maxInFlight +
+                ", admissionInitialLimit=" + admissionInitialLimit +
+                ", admissionMinLimit=" + admissionMinLimit +
+                ", admissionLatencyTargetMillis=" + admissionLatencyTargetMillis +
+                ", auditMode=" + auditMode +
+                ", batchMaxSize=" + batchMaxSize +
+                ", batchMaxDelayMillis=" + batchMaxDelayMillis +
+                ", paymentDeadlineMillis=" + paymentDeadlineMillis +
+                ", optionalStepReserveMillis=" + optionalStepReserveMillis +
+                ", shardCount=" + shardCount +
+                ", accountMaxPaymentsPerWindow=" + accountMaxPaymentsPerWindow +
+                ", accountMaxAmountPerWindow=" + accountMaxAmountPerWindow +
+                ", accountWindowMillis=" + accountWindowMillis +
+                '}';
+    }
+}
@@ -10,6 +10,7 @@ public enum OrchestrationStep {
     VALIDATE,
     ENRICH,
     TRANSFORM_TO_ISO20022,
+    SANCTIONS_CHECK,
     FRAUD_CHECK,
     ROUTE,
     POST,
@@ -0,0 +1,51 @@
+package realtimepaymentarchitectureorchestration.orchestration;
+
+import java.util.*;
+
+
+/**
+ * Executes the work of a single OrchestrationStep for one payment.
+ * Handlers are shared across payments and threads, so implementations
+ * must keep all per-payment state in the supplied context.
+ */
+public interface OrchestrationStepHandler {
+
+    /**
+     * Performs the step. Expected business failures should be reported with
+     * {@link PaymentOrchestrationContext#reject(OutcomeCode)}, which ends the
+     * payment without an exception. Throwing also fails the payment and is
+     * meant for unexpected errors.
+     */
+    void execute(Map<String, Object> paymentData,
+                 PaymentOrchestrationContext context,
+                 List<String> messages);
+
+    /**
+     * Whether the step may be skipped when the payment is short on time.
+     * Optional steps are skipped once less than the context's optional-step
+     * reserve of its deadline remains.
+     */
+    default boolean isOptional() {
+        return false;
+    }
+
+    /**
+     * Performs the step for every live payment in a batch. The default runs
+     * {@link #execute} for each one and fails only the payment that threw.
+     * Handlers that can amortize work across payments, such as one downstream
+     * round trip per batch, override this and call
+     * {@link PaymentBatch#fail(int, Throwable)} for individual failures.
+     */
+    default void executeBatch(PaymentBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.isLive(i)) {
+                try {
+                    execute(batch.paymentData(i), batch.context(i), batch.messages(i));
+                } catch (RuntimeException ex) {
+                    batch.fail(i, ex);
+                }
+                batch.checkRejected(i);
+            }
+        }
+    }
+}
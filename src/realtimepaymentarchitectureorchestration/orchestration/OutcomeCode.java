@@ -0,0 +1,59 @@
+package realtimepaymentarchitectureorchestration.orchestration;
+
+
+/**
+ * Machine-readable reason attached to every OrchestrationResult.
+ * <p>
+ * Business rejections such as a missing account are constants with a fixed
+ * description. A handler reports one through
+ * {@link PaymentOrchestrationContext#reject(OutcomeCode)}, so turning away a
+ * bad payment allocates nothing and never builds an exception.
+ */
+public enum OutcomeCode {
+    /** The payment ran through every step of its plan. */
+    OK("Completed"),
+    /** A step rejected the request by throwing IllegalArgumentException. */
+    INVALID_REQUEST("Invalid request"),
+    MISSING_DEBTOR_ACCOUNT("Debtor account is required"),
+    MISSING_CREDITOR_ACCOUNT("Creditor account is required"),
+    MISSING_AMOUNT("Amount is required"),
+    INVALID_AMOUNT("Amount must be numeric"),
+    SANCTIONS_HIT("Sanctions screening hit"),
+    VELOCITY_EXCEEDED("Too many payments from debtor account"),
+    LIMIT_EXCEEDED("Debtor account amount limit exceeded"),
+    DUPLICATE_PAYMENT("Duplicate payment"),
+    /** The payment deadline passed before the plan finished. */
+    TIMEOUT("Payment deadline exceeded"),
+    /** An executor queue was full and the payment could not be scheduled. */
+    OVERLOADED("Executor overloaded"),
+    /** Admission control turned the payment away before any work was done. */
+    REJECTED("Rejected by admission control"),
+    /** A step failed for any other reason. */
+    FAILED("Failed");
+
+    private final String description;
+
+    OutcomeCode(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Classifies the exception that ended an orchestration run.
+     */
+    public static OutcomeCode of(Throwable failure) {
+        if (failure instanceof IllegalArgumentException) {
+            return INVALID_REQUEST;
+        }
+        if (failure instanceof java.util.concurrent.RejectedExecutionException) {
+            return OVERLOADED;
+        }
+        if (failure instanceof java.util.concurrent.TimeoutException) {
+            return TIMEOUT;
+        }
+        return FAILED;
+    }
+}
@@ -0,0 +1,103 @@
+package realtimepaymentarchitectureorchestration.orchestration;
+
+import java.util.*;
+
+
+/**
+ * Payments that move through an OrchestrationPipeline together, one step at a
+ * time. Per-payment state is held in parallel arrays indexed by position in the
+ * batch. A payment that fails, or that a handler rejects through its context,
+ * is marked dead and skipped by later steps; the rest of the batch carries on.
+ * <p>
+ * Like a context, a batch is used by one thread at a time.
+ */
+public final class PaymentBatch {
+
+    private final Map<String, Object>[] paymentData;
+    private final PaymentOrchestrationContext[] contexts;
+    private final List<String>[] messages;
+    private final SagaCoordinator.Saga[] sagas;
+    private final Throwable[] failures;
+    private final boolean[] dead;
+    private int live;
+
+    @SuppressWarnings("unchecked")
+    PaymentBatch(int capacity) {
+        this.paymentData = (Map<String, Object>[]) new Map<?, ?>[capacity];
+        this.contexts = new PaymentOrchestrationContext[capacity];
+        this.messages = (List<String>[]) new List<?>[capacity];
+        this.sagas = new SagaCoordinator.Saga[capacity];
+        this.failures = new Throwable[capacity];
+        this.dead = new boolean[capacity];
+    }
+
+    void set(int i, Map<String, Object> data, PaymentOrchestrationContext context,
+             List<String> stepMessages, SagaCoordinator.Saga saga) {
+        paymentData[i] = data;
+        contexts[i] = context;
+        messages[i] = stepMessages;
+        sagas[i] = saga;
+        live++;
+    }
+
+    public int size() {
+        return contexts.length;
+    }
+
+    /**
+     * Number of payments that have not failed.
+     */
+    public int liveCount() {
+        return live;
+    }
+
+    public boolean isLive(int i) {
+        return !dead[i];
+    }
+
+    public Map<String, Object> paymentData(int i) {
+        return paymentData[i];
+    }
+
+    public PaymentOrchestrationContext context(int i) {
+        return contexts[i];
+    }
+
+    public List<String> messages(int i) {
+        return messages[i];
+    }
+
+    SagaCoordinator.Saga saga(int i) {
+        return sagas[i];
+    }
+
+    /**
+     * Fails one payment. Later steps skip it; the rest of the batch is unaffected.
+     */
+    public void fail(int i, Throwable failure) {
+        Objects.requireNonNull(failure, "failure");
+        if (!dead[i]) {
+            failures[i] = failure;
+            dead[i] = true;
+            live--;
+        }
+    }
+
+    /**
+     * Marks the payment dead if its handler rejected it through the context.
+     * Batch handlers that call {@code context.reject} should call this afterwards.
+     */
+    public void checkRejected(int i) {
+        if (!dead[i] && contexts[i].getRejection() != null) {
+            dead[i] = true;
+            live--;
+        }
+    }
+
+    /**
+     * The exception a payment failed with, or null if it succeeded or was rejected.
+     */
+    public Throwable failure(int i) {
+        return failures[i];
+    }
+}
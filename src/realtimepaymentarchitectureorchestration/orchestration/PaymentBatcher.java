@@ -0,0 +1,128 @@
+package realtimepaymentarchitectureorchestration.orchestration;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Collects individually submitted payments into micro-batches for
+ * {@link PaymentOrchestrator#orchestrateBatch(List)}.
+ * <p>
+ * A batch is flushed as soon as it holds {@code maxBatchSize} payments, or
+ * {@code maxDelayMillis} after its first payment arrived, whichever comes
+ * first. Batches run one after another on the batcher's own daemon thread, so
+ * submitters never wait for a batch to execute.
+ */
+public class PaymentBatcher implements AutoCloseable {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private final PaymentOrchestrator orchestrator;
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+    private final ScheduledExecutorService worker;
+    private List<Map<String, Object>> payments;
+    private List<CompletableFuture<OrchestrationResult>> futures;
+    private long generation;
+    private boolean closed;
+
+    public PaymentBatcher(PaymentOrchestrator orchestrator) {
+        this(orchestrator, orchestrator.getSettings().getBatchMaxSize(),
+                orchestrator.getSettings().getBatchMaxDelayMillis());
+    }
+
+    public PaymentBatcher(PaymentOrchestrator orchestrator, int maxBatchSize, long maxDelayMillis) {
+        if (maxBatchSize <= 0 || maxDelayMillis <= 0) {
+            throw new IllegalArgumentException("maxBatchSize and maxDelayMillis must be positive");
+        }
+        this.orchestrator = Objects.requireNonNull(orchestrator, "orchestrator");
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.worker = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "payment-batcher-" + SEQUENCE.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        reset();
+    }
+
+    /**
+     * Buffers a payment for the next batch. The request map is copied, so the
+     * caller may reuse it afterwards.
+     */
+    public synchronized CompletableFuture<OrchestrationResult> submit(Map<String, Object> paymentData) {
+        Objects.requireNonNull(paymentData, "paymentData");
+        if (closed) {
+            throw new IllegalStateException("PaymentBatcher is closed");
+        }
+        CompletableFuture<OrchestrationResult> future = new CompletableFuture<>();
+        payments.add(new LinkedHashMap<>(paymentData));
+        futures.add(future);
+        if (payments.size() >= maxBatchSize) {
+            flushLocked();
+        } else if (payments.size() == 1) {
+            long scheduledGeneration = generation;
+            worker.schedule(() -> flushIfStill(scheduledGeneration), maxDelayMillis, TimeUnit.MILLISECONDS);
+        }
+        return future;
+    }
+
+    /**
+     * Hands whatever is buffered to the worker without waiting for the size
+     * or time limit.
+     */
+    public synchronized void flush() {
+        if (!payments.isEmpty()) {
+            flushLocked();
+        }
+    }
+
+    /**
+     * Flushes the buffered payments and stops accepting new ones. Batches that
+     * were already handed to the worker still complete.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        flush();
+        closed = true;
+        worker.shutdown();
+    }
+
+    private synchronized void flushIfStill(long scheduledGeneration) {
+        if (generation == scheduledGeneration && !payments.isEmpty()) {
+            flushLocked();
+        }
+    }
+
+    private void flushLocked() {
+        List<Map<String, Object>> batch = payments;
+        List<CompletableFuture<OrchestrationResult>> pending = futures;
+        reset();
+        worker.execute(() -> run(batch, pending));
+    }
+
+    private void reset() {
+        payments = new ArrayList<>(maxBatchSize);
+        futures = new ArrayList<>(maxBatchSize);
+        generation++;
+    }
+
+    private void run(List<Map<String, Object>> batch, List<CompletableFuture<OrchestrationResult>> pending) {
+        List<OrchestrationResult> results;
+        try {
+            results = orchestrator.orchestrateBatch(batch);
+        } catch (RuntimeException ex) {
+            for (CompletableFuture<OrchestrationResult> future : pending) {
+                future.completeExceptionally(ex);
+            }
+            return;
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            pending.get(i).complete(results.get(i));
+        }
+    }
+}
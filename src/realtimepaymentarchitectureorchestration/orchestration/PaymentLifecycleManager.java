@@ -2,36 +2,262 @@ package realtimepaymentarchitectureorchestration.orchestration;
 
 import java.time.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.LongSupplier;
+
+import realtimepaymentarchitectureorchestration.observability.MetricsRegistry;
+import realtimepaymentarchitectureorchestration.repository.PaymentRecord;
+import realtimepaymentarchitectureorchestration.repository.PaymentRepository;
+import realtimepaymentarchitectureorchestration.repository.PaymentStatus;
 
 
 /**
- * PaymentLifecycleManager is a supporting type in the orchestration layer.
+ * Drives a payment's PaymentStatus through its legal lifecycle:
+ * RECEIVED, then IN_PROGRESS, then COMPLETED or FAILED. A payment may also
+ * fail straight from RECEIVED.
+ * <p>
+ * Legal moves are held in a transition table indexed by status ordinal, built
+ * once. Every accepted transition is written to the PaymentRepository.
+ * <p>
+ * Each non-terminal status can carry a deadline. Deadlines live on a
+ * hierarchical TimingWheel, so a pending payment costs one list node rather
+ * than a scheduled task, and a payment still in the same status when its
+ * deadline passes is moved to FAILED. Call {@link #start()} to advance the
+ * wheel from a background ticker, or {@link #expireOverdue()} to advance it
+ * by hand. Expiries are counted under {@code lifecycle.deadlines.expired} and,
+ * per status, {@code lifecycle.deadlines.expired.<STATUS>}.
  */
-public class PaymentLifecycleManager {
+public class PaymentLifecycleManager implements AutoCloseable {
+
+    public static final long DEFAULT_TICK_MILLIS = 10L;
+
+    private static final PaymentStatus[] STATUSES = PaymentStatus.values();
+    private static final boolean[][] TRANSITIONS = new boolean[STATUSES.length][STATUSES.length];
+
+    static {
+        allow(PaymentStatus.RECEIVED, PaymentStatus.IN_PROGRESS);
+        allow(PaymentStatus.RECEIVED, PaymentStatus.FAILED);
+        allow(PaymentStatus.IN_PROGRESS, PaymentStatus.COMPLETED);
+        allow(PaymentStatus.IN_PROGRESS, PaymentStatus.FAILED);
+    }
+
+    private final PaymentRepository repository;
+    private final MetricsRegistry metrics;
+    private final long tickMillis;
+    private final LongSupplier clockMillis;
+    private final TimingWheel wheel;
+    private final long[] deadlineMillis = new long[STATUSES.length];
+    private final ConcurrentMap<String, Tracked> active = new ConcurrentHashMap<>();
+    private ScheduledExecutorService ticker;
+
+    public PaymentLifecycleManager(PaymentRepository repository, MetricsRegistry metrics) {
+        this(repository, metrics, DEFAULT_TICK_MILLIS, System::currentTimeMillis);
+    }
 
-    private final Map<String, Object> metadata = new LinkedHashMap<>();
+    public PaymentLifecycleManager(PaymentRepository repository, MetricsRegistry metrics,
+                                   long tickMillis, LongSupplier clockMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive");
+        }
+        this.repository = Objects.requireNonNull(repository, "repository");
+        this.metrics = Objects.requireNonNull(metrics, "metrics");
+        this.tickMillis = tickMillis;
+        this.clockMillis = Objects.requireNonNull(clockMillis, "clockMillis");
+        this.wheel = new TimingWheel(clockMillis.getAsLong() / tickMillis);
+        setDeadline(PaymentStatus.RECEIVED, Duration.ofSeconds(5));
+        setDeadline(PaymentStatus.IN_PROGRESS, Duration.ofSeconds(15));
+    }
 
-    public PaymentLifecycleManager() {
-        metadata.put("createdAt", Instant.now());
-        metadata.put("createdBy", "PaymentLifecycleManager");
+    private static void allow(PaymentStatus from, PaymentStatus to) {
+        TRANSITIONS[from.ordinal()][to.ordinal()] = true;
     }
 
-    public void put(String key, Object value) {
-        metadata.put(key, value);
+    public static boolean isLegal(PaymentStatus from, PaymentStatus to) {
+        return TRANSITIONS[from.ordinal()][to.ordinal()];
     }
 
-    public Optional<Object> get(String key) {
-        return Optional.ofNullable(metadata.get(key));
+    public static boolean isTerminal(PaymentStatus status) {
+        for (boolean allowed : TRANSITIONS[status.ordinal()]) {
+            if (allowed) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    public Map<String, Object> getAll() {
-        return Collections.unmodifiableMap(metadata);
+    /**
+     * Sets how long a payment may stay in the given status. A zero duration
+     * disables the deadline. Applies to payments entering the status afterwards.
+     */
+    public void setDeadline(PaymentStatus status, Duration deadline) {
+        Objects.requireNonNull(status, "status");
+        if (deadline.isNegative()) {
+            throw new IllegalArgumentException("deadline must not be negative");
+        }
+        if (isTerminal(status) && !deadline.isZero()) {
+            throw new IllegalArgumentException("Terminal status " + status + " cannot have a deadline");
+        }
+        deadlineMillis[status.ordinal()] = deadline.toMillis();
+    }
+
+    public Duration getDeadline(PaymentStatus status) {
+        return Duration.ofMillis(deadlineMillis[status.ordinal()]);
+    }
+
+    /**
+     * Records a new payment as RECEIVED and arms its deadline.
+     */
+    public PaymentRecord register(String paymentId, Map<String, Object> payload) {
+        Objects.requireNonNull(paymentId, "paymentId");
+        OffsetDateTime now = OffsetDateTime.now();
+        PaymentRecord record = new PaymentRecord(paymentId, PaymentStatus.RECEIVED, now, now, payload);
+        Tracked tracked = new Tracked(record);
+        if (active.putIfAbsent(paymentId, tracked) != null) {
+            throw new IllegalStateException("Payment " + paymentId + " is already registered");
+        }
+        synchronized (tracked) {
+            repository.save(record);
+            arm(tracked, PaymentStatus.RECEIVED);
+        }
+        metrics.increment("lifecycle.registered");
+        return record;
+    }
+
+    /**
+     * Moves a payment to the given status.
+     *
+     * @throws IllegalArgumentException if the payment is not being tracked
+     * @throws IllegalStateException if the transition is not legal from the current status
+     */
+    public void transition(String paymentId, PaymentStatus to) {
+        Tracked tracked = active.get(paymentId);
+        if (tracked == null) {
+            throw new IllegalArgumentException("Unknown or finished payment " + paymentId);
+        }
+        synchronized (tracked) {
+            PaymentStatus from = tracked.record.getStatus();
+            if (!isLegal(from, to)) {
+                metrics.increment("lifecycle.transitions.rejected");
+                throw new IllegalStateException("Illegal transition " + from + " -> " + to
+                        + " for payment " + paymentId);
+            }
+            apply(tracked, to);
+        }
+    }
+
+    /**
+     * Like {@link #transition(String, PaymentStatus)}, but returns false instead
+     * of throwing when the payment is unknown or the move is not legal, for
+     * example because its deadline already failed it.
+     */
+    public boolean tryTransition(String paymentId, PaymentStatus to) {
+        Tracked tracked = active.get(paymentId);
+        if (tracked == null) {
+            return false;
+        }
+        synchronized (tracked) {
+            if (!isLegal(tracked.record.getStatus(), to)) {
+                return false;
+            }
+            apply(tracked, to);
+            return true;
+        }
     }
 
-    public void logState() {
-        System.out.println("PaymentLifecycleManager state:");
-        for (Map.Entry<String, Object> entry : metadata.entrySet()) {
-            System.out.println("  " + entry.getKey() + " = " + entry.getValue());
+    /**
+     * Current status of a payment, read from the repository.
+     */
+    public Optional<PaymentStatus> getStatus(String paymentId) {
+        return repository.findById(paymentId).map(PaymentRecord::getStatus);
+    }
+
+    /**
+     * Number of payments that have not reached a terminal status.
+     */
+    public int getActiveCount() {
+        return active.size();
+    }
+
+    public int getPendingDeadlineCount() {
+        return wheel.getPendingCount();
+    }
+
+    /**
+     * Fails every payment whose deadline has passed. Returns how many deadlines fired.
+     */
+    public int expireOverdue() {
+        return wheel.advanceTo(clockMillis.getAsLong() / tickMillis);
+    }
+
+    /**
+     * Starts a daemon ticker that calls {@link #expireOverdue()} once per tick.
+     */
+    public synchronized void start() {
+        if (ticker != null) {
+            return;
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "payment-lifecycle-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::expireOverdue, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            ticker = null;
+        }
+    }
+
+    private void apply(Tracked tracked, PaymentStatus to) {
+        if (tracked.deadline != null) {
+            tracked.deadline.cancel();
+            tracked.deadline = null;
+        }
+        tracked.record.setStatus(to);
+        repository.save(tracked.record);
+        metrics.increment("lifecycle.transitions." + to.name());
+        if (isTerminal(to)) {
+            active.remove(tracked.record.getId(), tracked);
+        } else {
+            arm(tracked, to);
+        }
+    }
+
+    private void arm(Tracked tracked, PaymentStatus status) {
+        long millis = deadlineMillis[status.ordinal()];
+        if (millis == 0L) {
+            return;
+        }
+        long expiryTick = (clockMillis.getAsLong() + millis + tickMillis - 1) / tickMillis;
+        tracked.deadline = wheel.schedule(expiryTick, () -> expire(tracked, status));
+    }
+
+    private void expire(Tracked tracked, PaymentStatus status) {
+        synchronized (tracked) {
+            if (tracked.record.getStatus() != status || !active.containsKey(tracked.record.getId())) {
+                return;
+            }
+            tracked.deadline = null;
+            metrics.increment("lifecycle.deadlines.expired");
+            metrics.increment("lifecycle.deadlines.expired." + status.name());
+            apply(tracked, PaymentStatus.FAILED);
+        }
+    }
+
+    /**
+     * Lifecycle state of one active payment. Guarded by its own monitor.
+     */
+    private static final class Tracked {
+
+        final PaymentRecord record;
+        TimingWheel.Timeout deadline;
+
+        Tracked(PaymentRecord record) {
+            this.record = record;
         }
     }
 }
@@ -1,23 +1,49 @@
 package realtimepaymentarchitectureorchestration.orchestration;
 
-import java.time.*;
 import java.util.*;
 
 
 /**
  * Holds the mutable state of a payment while it is being orchestrated.
+ * A context belongs to exactly one payment. It is handed from one stage
+ * thread to the next, and the steps of a parallel group use it at the same
+ * time. Those steps must write disjoint attributes; slot writes, extension
+ * attributes, rejection and audit appends are safe under that rule, while
+ * advancing the current step is left to the pipeline thread.
+ * <p>
+ * Well-known attributes live in fixed slots addressed by ContextKey; the
+ * name-keyed map is only allocated when an extension attribute is stored.
+ * Audit events are captured in a structured AuditLog and only turned into
+ * text when {@link #getAuditTrail()} is called. Time spent in each step is
+ * kept in a long array indexed by step ordinal.
+ * <p>
+ * A context may carry an absolute deadline in {@link System#nanoTime()} units.
+ * The pipeline checks it before every step, and handlers that wait on
+ * downstream calls should bound their waits by {@link #getRemainingNanos()}.
  */
 public class PaymentOrchestrationContext {
 
     private final String internalId;
     private OrchestrationStep currentStep;
-    private final Map<String, Object> attributes = new LinkedHashMap<>();
-    private final List<String> auditTrail = new ArrayList<>();
+    private final Object[] slots = new Object[ContextKey.count()];
+    private Map<String, Object> extensions;
+    private final AuditLog auditLog;
+    private final long[] stepNanos = new long[OrchestrationStep.values().length];
+    private volatile OutcomeCode rejection;
+    private boolean hasDeadline;
+    private long deadlineNanos;
+    private long optionalStepReserveNanos;
 
     public PaymentOrchestrationContext(String internalId) {
+        this(internalId, AuditLog.Mode.FULL);
+    }
+
+    public PaymentOrchestrationContext(String internalId, AuditLog.Mode auditMode) {
         this.internalId = Objects.requireNonNull(internalId, "internalId");
         this.currentStep = OrchestrationStep.RECEIVE_REQUEST;
-        addAudit("Context created");
+        this.auditLog = new AuditLog(auditMode);
+        auditLog.contextCreated(currentStep);
+        Arrays.fill(stepNanos, -1L);
     }
 
     public String getInternalId() {
@@ -30,18 +56,60 @@ public class PaymentOrchestrationContext {
 
     public void advanceTo(OrchestrationStep nextStep) {
         Objects.requireNonNull(nextStep, "nextStep");
-        addAudit("Advancing from " + currentStep + " to " + nextStep);
+        auditLog.stepAdvanced(currentStep, nextStep);
         this.currentStep = nextStep;
     }
 
+    /**
+     * Stores a well-known attribute in its fixed slot.
+     */
+    public <T> void put(ContextKey<T> key, T value) {
+        slots[key.index()] = value;
+        auditLog.attributeSet(currentStep, key.getName(), value);
+    }
+
+    /**
+     * Reads a well-known attribute from its fixed slot.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(ContextKey<T> key) {
+        return (T) slots[key.index()];
+    }
+
+    /**
+     * Stores an attribute by name. Names of well-known keys go to their slot
+     * after a type check; any other name is kept as an extension attribute.
+     */
     public void putAttribute(String key, Object value) {
-        attributes.put(key, value);
-        addAudit("Attribute set: " + key + "=" + value);
+        ContextKey<?> known = ContextKey.forName(key);
+        if (known != null) {
+            if (value != null && !known.getType().isInstance(value)) {
+                throw new IllegalArgumentException("Attribute " + key + " must be of type "
+                        + known.getType().getName());
+            }
+            slots[known.index()] = value;
+        } else {
+            synchronized (this) {
+                if (extensions == null) {
+                    extensions = new LinkedHashMap<>();
+                }
+                extensions.put(key, value);
+            }
+        }
+        auditLog.attributeSet(currentStep, key, value);
     }
 
     @SuppressWarnings("unchecked")
     public <T> T getAttribute(String key, Class<T> type) {
-        Object value = attributes.get(key);
+        ContextKey<?> known = ContextKey.forName(key);
+        Object value;
+        if (known != null) {
+            value = slots[known.index()];
+        } else {
+            synchronized (this) {
+                value = extensions != null ? extensions.get(key) : null;
+            }
+        }
         if (value == null) {
             return null;
         }
@@ -51,15 +119,120 @@ public class PaymentOrchestrationContext {
         return (T) value;
     }
 
+    /**
+     * Returns a snapshot of all attributes that have been set: well-known
+     * attributes first, in key order, followed by extension attributes.
+     */
     public Map<String, Object> getAttributes() {
-        return Collections.unmodifiableMap(attributes);
+        Map<String, Object> all = new LinkedHashMap<>();
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] != null) {
+                all.put(ContextKey.at(i).getName(), slots[i]);
+            }
+        }
+        synchronized (this) {
+            if (extensions != null) {
+                all.putAll(extensions);
+            }
+        }
+        return Collections.unmodifiableMap(all);
     }
 
+    /**
+     * Renders the audit trail. Each call formats the events afresh.
+     */
     public List<String> getAuditTrail() {
-        return Collections.unmodifiableList(auditTrail);
+        return Collections.unmodifiableList(auditLog.render());
+    }
+
+    /**
+     * Rejects the payment with a business outcome. The pipeline stops after the
+     * current step, which is not logged to the saga. Use this instead of
+     * throwing for expected failures such as invalid input.
+     */
+    public synchronized void reject(OutcomeCode code) {
+        Objects.requireNonNull(code, "code");
+        if (rejection == null) {
+            rejection = code;
+            auditLog.note(currentStep, code.getDescription());
+        }
+    }
+
+    /**
+     * The outcome the payment was rejected with, or null.
+     */
+    public OutcomeCode getRejection() {
+        return rejection;
+    }
+
+    /**
+     * Sets the absolute deadline, in {@link System#nanoTime()} units, and how
+     * much of it must remain for optional steps to run.
+     */
+    public void setDeadline(long deadlineNanos, long optionalStepReserveNanos) {
+        if (optionalStepReserveNanos < 0) {
+            throw new IllegalArgumentException("optionalStepReserveNanos must not be negative");
+        }
+        this.hasDeadline = true;
+        this.deadlineNanos = deadlineNanos;
+        this.optionalStepReserveNanos = optionalStepReserveNanos;
+    }
+
+    public boolean hasDeadline() {
+        return hasDeadline;
+    }
+
+    /**
+     * The absolute deadline in {@link System#nanoTime()} units. Only
+     * meaningful when {@link #hasDeadline()} is true.
+     */
+    public long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+
+    /**
+     * Time left before the deadline, negative once it has passed, or
+     * Long.MAX_VALUE when there is no deadline.
+     */
+    public long getRemainingNanos() {
+        return hasDeadline ? deadlineNanos - System.nanoTime() : Long.MAX_VALUE;
+    }
+
+    public boolean isPastDeadline() {
+        return getRemainingNanos() <= 0;
+    }
+
+    /**
+     * Whether enough of the deadline remains to run an optional step.
+     */
+    public boolean hasBudgetForOptionalStep() {
+        return getRemainingNanos() > optionalStepReserveNanos;
+    }
+
+    /**
+     * Adds time spent in a step, measured with {@link System#nanoTime()}.
+     */
+    public void recordStepNanos(OrchestrationStep step, long nanos) {
+        int i = step.ordinal();
+        stepNanos[i] = stepNanos[i] < 0 ? nanos : stepNanos[i] + nanos;
+    }
+
+    /**
+     * Nanoseconds spent in the step, or -1 if it did not run.
+     */
+    public long getStepNanos(OrchestrationStep step) {
+        return stepNanos[step.ordinal()];
+    }
+
+    long[] stepNanos() {
+        return stepNanos;
+    }
+
+    public AuditLog getAuditLog() {
+        return auditLog;
     }
 
     public void addAudit(String message) {
-        auditTrail.add(OffsetDateTime.now() + " - " + message);
+        auditLog.note(currentStep, message);
     }
 }
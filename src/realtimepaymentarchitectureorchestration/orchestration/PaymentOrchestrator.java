@@ -1,144 +1,424 @@
 package realtimepaymentarchitectureorchestration.orchestration;
 
-import java.time.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import realtimepaymentarchitectureorchestration.config.PipelineConfigLoader;
+import realtimepaymentarchitectureorchestration.observability.Histogram;
+import realtimepaymentarchitectureorchestration.observability.MetricsRegistry;
+import realtimepaymentarchitectureorchestration.repository.PaymentStatus;
 
 
 /**
  * Coordinates the high-level flow of a payment.
+ * <p>
+ * {@link #orchestrateSimple(Map)} runs one payment on the caller's thread.
+ * {@link #submit(Map)} and {@link #orchestrateAll(Collection)} run payments
+ * asynchronously on the AsyncTaskExecutor, hopping between its CPU and IO pools
+ * as the payment moves through its plan. Each payment gets its own
+ * PaymentOrchestrationContext, which is handed from stage to stage but never
+ * touched by two threads at once.
+ * <p>
+ * An AdmissionController guards the entry points. {@link #submit(Map)} and
+ * {@link #orchestrateSimple(Map)} return a REJECTED result straight away when
+ * the in-flight or adaptive limit is reached, so channels can answer at once
+ * instead of queueing work the JVM cannot absorb. {@link #orchestrateAll(Collection)}
+ * waits for capacity instead. Batches are bounded by their own size and are
+ * not subject to admission.
+ * <p>
+ * {@link #orchestrateBatch(List)} is meant for bulk and file submissions: it
+ * moves a whole batch through each step together on the caller's thread, so
+ * handlers can amortize work across the batch, while a failing payment only
+ * fails itself. PaymentBatcher feeds it from a stream of single submissions.
+ * <p>
+ * Each payment runs through the flow plan chosen by a FlowPlanRegistry, which by
+ * default is compiled from the flows registered in PipelineConfigLoader.
+ * {@link #reloadFlows(PipelineConfigLoader)} swaps in a newly compiled registry
+ * without locking: a payment reads the registry once when it starts, so in-flight
+ * payments finish on the plan they began with.
+ * <p>
+ * When a step fails, the SagaCoordinator reverses the steps the payment had
+ * already completed, such as a ledger posting, newest first.
+ * <p>
+ * Per-step and end-to-end latencies are recorded in nanoseconds into the
+ * {@code orchestrator.step.<STEP>.nanos} and {@code orchestrator.payment.nanos}
+ * histograms of the MetricsRegistry.
+ * <p>
+ * When a PaymentLifecycleManager is attached, each payment is registered with it
+ * under its internal id and moved through RECEIVED, IN_PROGRESS and COMPLETED or
+ * FAILED as it runs. A payment whose lifecycle deadline fails it before the
+ * plan finishes ends as a TIMEOUT failure and is compensated like any other.
  */
-public class PaymentOrchestrator {
+public class PaymentOrchestrator implements AutoCloseable {
 
-    public OrchestrationResult orchestrateSimple(Map<String, Object> paymentData) {
-        Objects.requireNonNull(paymentData, "paymentData");
-        Instant start = Instant.now();
-        List<String> messages = new ArrayList<>();
+    private final OrchestrationSettings settings;
+    private final AtomicReference<FlowPlanRegistry> flowPlans;
+    private final MetricsRegistry metrics;
+    private final SagaCoordinator sagas;
+    private final AsyncTaskExecutor executor;
+    private final AdmissionController admission;
+    private final Histogram[] stepLatency = new Histogram[OrchestrationStep.values().length];
+    private final Histogram paymentLatency;
+    private volatile PaymentLifecycleManager lifecycle;
 
-        PaymentOrchestrationContext context =
-                new PaymentOrchestrationContext(UUID.randomUUID().toString());
-        context.putAttribute("rawRequest", new LinkedHashMap<>(paymentData));
+    public PaymentOrchestrator() {
+        this(new OrchestrationSettings());
+    }
 
-        try {
-            context.advanceTo(OrchestrationStep.VALIDATE);
-            validate(paymentData, context, messages);
+    public PaymentOrchestrator(OrchestrationSettings settings) {
+        this(settings, FlowPlanRegistry.compile(new PipelineConfigLoader(),
+                settings.isParallelStages() ? StageGraph.standard() : StageGraph.sequential()));
+    }
 
-            context.advanceTo(OrchestrationStep.ENRICH);
-            enrich(paymentData, context, messages);
+    public PaymentOrchestrator(OrchestrationSettings settings, OrchestrationPipeline pipeline) {
+        this(settings, FlowPlanRegistry.single(pipeline));
+    }
 
-            context.advanceTo(OrchestrationStep.TRANSFORM_TO_ISO20022);
-            transformToIso20022(paymentData, context, messages);
+    public PaymentOrchestrator(OrchestrationSettings settings, FlowPlanRegistry flowPlans) {
+        this(settings, flowPlans, new MetricsRegistry());
+    }
 
-            context.advanceTo(OrchestrationStep.FRAUD_CHECK);
-            fraudCheck(paymentData, context, messages);
+    public PaymentOrchestrator(OrchestrationSettings settings,
+                               FlowPlanRegistry flowPlans,
+                               MetricsRegistry metrics) {
+        this(settings, flowPlans, metrics, SagaCoordinator.standard(metrics));
+    }
 
-            context.advanceTo(OrchestrationStep.ROUTE);
-            route(paymentData, context, messages);
+    public PaymentOrchestrator(OrchestrationSettings settings,
+                               FlowPlanRegistry flowPlans,
+                               MetricsRegistry metrics,
+                               SagaCoordinator sagas) {
+        this.settings = Objects.requireNonNull(settings, "settings");
+        this.flowPlans = new AtomicReference<>(Objects.requireNonNull(flowPlans, "flowPlans"));
+        this.metrics = Objects.requireNonNull(metrics, "metrics");
+        this.sagas = Objects.requireNonNull(sagas, "sagas");
+        metrics.setGauge("orchestrator.flows.planVersion", flowPlans.getVersion());
+        this.executor = new AsyncTaskExecutor(
+                settings.getCpuWorkerThreads(), settings.getStageQueueCapacity(),
+                settings.getIoWorkerThreads(), settings.getStageQueueCapacity(),
+                metrics);
+        this.admission = new AdmissionController(settings.getMaxInFlight(),
+                settings.getAdmissionInitialLimit(), settings.getAdmissionMinLimit(),
+                settings.getAdmissionLatencyTargetMillis(), metrics);
+        for (OrchestrationStep step : OrchestrationStep.values()) {
+            stepLatency[step.ordinal()] = metrics.histogram("orchestrator.step." + step + ".nanos");
+        }
+        this.paymentLatency = metrics.histogram("orchestrator.payment.nanos");
+    }
 
-            context.advanceTo(OrchestrationStep.POST);
-            post(paymentData, context, messages);
+    /**
+     * Submits a payment for asynchronous orchestration. The request map is copied
+     * before it is handed to a worker, so the caller may reuse it afterwards.
+     * Never blocks: if admission control refuses the payment, the returned future
+     * is already complete with a REJECTED result. A payment whose stage is
+     * rejected by a full executor queue completes with a FAILURE result.
+     */
+    public CompletableFuture<OrchestrationResult> submit(Map<String, Object> paymentData) {
+        Objects.requireNonNull(paymentData, "paymentData");
+        if (!admission.tryAcquire()) {
+            return CompletableFuture.completedFuture(rejected());
+        }
+        return runAdmitted(new LinkedHashMap<>(paymentData));
+    }
 
-            context.advanceTo(OrchestrationStep.NOTIFY);
-            notifyParties(paymentData, context, messages);
+    private CompletableFuture<OrchestrationResult> runAdmitted(Map<String, Object> snapshot) {
+        PaymentRun run;
+        try {
+            run = start(snapshot);
+        } catch (RuntimeException ex) {
+            admission.abandon();
+            throw ex;
+        }
+        return run.plan.executeAsync(snapshot, run.context, run.messages, run.saga, executor)
+                .handle((ignored, ex) -> finish(run, ex == null ? null : unwrap(ex)))
+                .whenComplete((result, ex) -> release(result));
+    }
 
-            context.advanceTo(OrchestrationStep.COMPLETE);
-            messages.add("Payment completed successfully with internalId=" + context.getInternalId());
-            messages.addAll(context.getAuditTrail());
-            Instant end = Instant.now();
-            return new OrchestrationResult(OrchestrationResult.Status.SUCCESS, start, end, messages);
-        } catch (Exception ex) {
-            context.advanceTo(OrchestrationStep.ERROR);
-            messages.add("Payment orchestration failed: " + ex.getMessage());
-            messages.addAll(context.getAuditTrail());
-            Instant end = Instant.now();
-            return new OrchestrationResult(OrchestrationResult.Status.FAILURE, start, end, messages);
+    /**
+     * Orchestrates a group of payments concurrently and returns their results
+     * in the iteration order of the input collection. Waits for admission
+     * instead of rejecting, so a large group is throttled to the current limit.
+     */
+    public List<OrchestrationResult> orchestrateAll(Collection<Map<String, Object>> payments) {
+        Objects.requireNonNull(payments, "payments");
+        List<CompletableFuture<OrchestrationResult>> futures = new ArrayList<>(payments.size());
+        for (Map<String, Object> payment : payments) {
+            Map<String, Object> snapshot = new LinkedHashMap<>(Objects.requireNonNull(payment, "payment"));
+            try {
+                admission.acquire();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                futures.add(CompletableFuture.failedFuture(ex));
+                continue;
+            }
+            futures.add(runAdmitted(snapshot));
         }
+        List<OrchestrationResult> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<OrchestrationResult> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+
+    /**
+     * Compiles the given flows and publishes them as the active plan set.
+     * If compilation fails the current plans stay active and false is returned.
+     */
+    public boolean reloadFlows(PipelineConfigLoader loader) {
+        long startNanos = System.nanoTime();
+        FlowPlanRegistry current;
+        FlowPlanRegistry next;
+        do {
+            current = flowPlans.get();
+            try {
+                next = current.recompile(loader);
+            } catch (IllegalArgumentException ex) {
+                metrics.increment("orchestrator.flows.reload.failures");
+                return false;
+            }
+        } while (!flowPlans.compareAndSet(current, next));
+        metrics.increment("orchestrator.flows.reload.count");
+        metrics.setGauge("orchestrator.flows.planVersion", next.getVersion());
+        metrics.setGauge("orchestrator.flows.reload.lastLatencyMicros",
+                TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+        return true;
+    }
+
+    public FlowPlanRegistry getFlowPlans() {
+        return flowPlans.get();
+    }
+
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    public SagaCoordinator getSagaCoordinator() {
+        return sagas;
     }
 
-    private void validate(Map<String, Object> paymentData,
-                          PaymentOrchestrationContext context,
-                          List<String> messages) {
-        String debtor = (String) paymentData.get("debtorAccount");
-        String creditor = (String) paymentData.get("creditorAccount");
-        String amountStr = (String) paymentData.get("amount");
+    public AsyncTaskExecutor getExecutor() {
+        return executor;
+    }
+
+    public PaymentLifecycleManager getLifecycleManager() {
+        return lifecycle;
+    }
+
+    /**
+     * Attaches a lifecycle manager that tracks the status of subsequent payments,
+     * or detaches it when null.
+     */
+    public void setLifecycleManager(PaymentLifecycleManager lifecycle) {
+        this.lifecycle = lifecycle;
+    }
+
+    public OrchestrationSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Number of submitted payments that have not completed yet.
+     */
+    public int getInFlightCount() {
+        return admission.getInFlight();
+    }
 
-        if (debtor == null || debtor.isBlank()) {
-            throw new IllegalArgumentException("Debtor account is required");
+    public AdmissionController getAdmissionController() {
+        return admission;
+    }
+
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+    /**
+     * Orchestrates a batch on the caller's thread, step by step across the whole
+     * batch. Payments are grouped by the plan selected for them and each group
+     * runs as one PaymentBatch. Results are returned in input order.
+     */
+    public List<OrchestrationResult> orchestrateBatch(List<Map<String, Object>> payments) {
+        Objects.requireNonNull(payments, "payments");
+        int size = payments.size();
+        PaymentRun[] runs = new PaymentRun[size];
+        Map<OrchestrationPipeline, List<Integer>> groups = new IdentityHashMap<>();
+        for (int i = 0; i < size; i++) {
+            runs[i] = start(Objects.requireNonNull(payments.get(i), "payment"));
+            groups.computeIfAbsent(runs[i].plan, plan -> new ArrayList<>()).add(i);
         }
-        if (creditor == null || creditor.isBlank()) {
-            throw new IllegalArgumentException("Creditor account is required");
+        OrchestrationResult[] results = new OrchestrationResult[size];
+        for (Map.Entry<OrchestrationPipeline, List<Integer>> group : groups.entrySet()) {
+            List<Integer> members = group.getValue();
+            PaymentBatch batch = new PaymentBatch(members.size());
+            for (int j = 0; j < members.size(); j++) {
+                int i = members.get(j);
+                PaymentRun run = runs[i];
+                batch.set(j, payments.get(i), run.context, run.messages, run.saga);
+            }
+            group.getKey().executeBatch(batch);
+            for (int j = 0; j < members.size(); j++) {
+                int i = members.get(j);
+                results[i] = finish(runs[i], batch.failure(j));
+            }
         }
-        if (amountStr == null || amountStr.isBlank()) {
-            throw new IllegalArgumentException("Amount is required");
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Runs one payment on the caller's thread, or returns a REJECTED result
+     * at once if admission control refuses it. Steps of a parallel group
+     * still fan out to the executor pools.
+     */
+    public OrchestrationResult orchestrateSimple(Map<String, Object> paymentData) {
+        Objects.requireNonNull(paymentData, "paymentData");
+        if (!admission.tryAcquire()) {
+            return rejected();
         }
+        OrchestrationResult result = null;
         try {
-            Double.parseDouble(amountStr);
-        } catch (NumberFormatException e) {
-            throw new IllegalArgumentException("Amount must be numeric", e);
-        }
-
-        context.putAttribute("validated", Boolean.TRUE);
-        messages.add("Validation succeeded");
-    }
-
-    private void enrich(Map<String, Object> paymentData,
-                        PaymentOrchestrationContext context,
-                        List<String> messages) {
-        context.putAttribute("channel", "CLI_DEMO");
-        context.putAttribute("receivedAt", Instant.now());
-        messages.add("Enrichment completed");
-    }
-
-    private void transformToIso20022(Map<String, Object> paymentData,
-                                     PaymentOrchestrationContext context,
-                                     List<String> messages) {
-        Map<String, Object> iso = new LinkedHashMap<>();
-        iso.put("msgId", "MSG-" + context.getInternalId());
-        iso.put("debtorAccount", paymentData.get("debtorAccount"));
-        iso.put("creditorAccount", paymentData.get("creditorAccount"));
-        iso.put("amount", paymentData.get("amount"));
-        iso.put("currency", paymentData.getOrDefault("currency", "USD"));
-        context.putAttribute("iso20022Message", iso);
-        messages.add("Transformed into ISO 20022 inspired structure");
-    }
-
-    private void fraudCheck(Map<String, Object> paymentData,
-                            PaymentOrchestrationContext context,
-                            List<String> messages) {
-        double amount = Double.parseDouble((String) paymentData.get("amount"));
-        if (amount > 50000.0) {
-            messages.add("Fraud check result: REVIEW (high amount)");
-            context.putAttribute("fraudDecision", "REVIEW");
-        } else {
-            messages.add("Fraud check result: APPROVE");
-            context.putAttribute("fraudDecision", "APPROVE");
+            PaymentRun run = start(paymentData);
+            Throwable failure = null;
+            try {
+                run.plan.execute(paymentData, run.context, run.messages, run.saga, executor);
+            } catch (Exception ex) {
+                failure = ex;
+            }
+            result = finish(run, failure);
+            return result;
+        } finally {
+            release(result);
         }
     }
 
-    private void route(Map<String, Object> paymentData,
-                       PaymentOrchestrationContext context,
-                       List<String> messages) {
-        String currency = (String) paymentData.getOrDefault("currency", "USD");
-        String route;
-        if ("USD".equalsIgnoreCase(currency)) {
-            route = "INTERNAL_RT";
+    /**
+     * Records a payment that a caller refused before orchestration, for example
+     * on an account check, as a FAILURE with the given outcome. No step runs.
+     */
+    OrchestrationResult refuse(Map<String, Object> paymentData, OutcomeCode outcome) {
+        PaymentRun run = start(new LinkedHashMap<>(paymentData));
+        run.context.reject(outcome);
+        return finish(run, null);
+    }
+
+    private OrchestrationResult rejected() {
+        long now = System.nanoTime();
+        return new OrchestrationResult(OrchestrationResult.Status.REJECTED, OutcomeCode.REJECTED, null,
+                System.currentTimeMillis(), now, now, List.of(),
+                "admission limit of " + admission.getLimit() + " in-flight payments reached",
+                List.of(), null, null);
+    }
+
+    private void release(OrchestrationResult result) {
+        if (result == null) {
+            admission.abandon();
         } else {
-            route = "CROSS_BORDER";
+            admission.release(result.getDurationNanos(), result.getOutcome() == OutcomeCode.OVERLOADED);
         }
-        context.putAttribute("route", route);
-        messages.add("Routing decided: " + route);
     }
 
-    private void post(Map<String, Object> paymentData,
-                      PaymentOrchestrationContext context,
-                      List<String> messages) {
-        String ledgerId = "LEDGER-" + context.getInternalId();
-        context.putAttribute("ledgerId", ledgerId);
-        messages.add("Posted to simulated ledger with id=" + ledgerId);
+    private PaymentRun start(Map<String, Object> paymentData) {
+        long startEpochMillis = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        PaymentOrchestrationContext context =
+                new PaymentOrchestrationContext(UUID.randomUUID().toString(), settings.getAuditMode());
+        context.put(ContextKey.RAW_REQUEST, new LinkedHashMap<>(paymentData));
+        OrchestrationPipeline plan = flowPlans.get().select(paymentData);
+        context.put(ContextKey.FLOW_ID, plan.getId());
+        if (settings.getPaymentDeadlineMillis() > 0) {
+            context.setDeadline(startNanos + TimeUnit.MILLISECONDS.toNanos(settings.getPaymentDeadlineMillis()),
+                    TimeUnit.MILLISECONDS.toNanos(settings.getOptionalStepReserveMillis()));
+        }
+        PaymentLifecycleManager lifecycle = this.lifecycle;
+        if (lifecycle != null) {
+            lifecycle.register(context.getInternalId(), context.get(ContextKey.RAW_REQUEST));
+            lifecycle.tryTransition(context.getInternalId(), PaymentStatus.IN_PROGRESS);
+        }
+        return new PaymentRun(startEpochMillis, startNanos, context, plan, sagas.begin(), lifecycle);
     }
 
-    private void notifyParties(Map<String, Object> paymentData,
-                               PaymentOrchestrationContext context,
-                               List<String> messages) {
-        messages.add("Notifications sent to debtor and creditor (simulated)");
+    /**
+     * Builds the result once a payment's plan has stopped, either because it
+     * threw, because a step rejected it, or because every step ran.
+     */
+    private OrchestrationResult finish(PaymentRun run, Throwable ex) {
+        if (ex != null) {
+            return fail(run, OutcomeCode.of(ex), ex.getMessage());
+        }
+        OutcomeCode rejection = run.context.getRejection();
+        if (rejection != null) {
+            return fail(run, rejection, rejection.getDescription());
+        }
+        return succeed(run);
+    }
+
+    private OrchestrationResult succeed(PaymentRun run) {
+        PaymentOrchestrationContext context = run.context;
+        if (run.lifecycle != null && !run.lifecycle.tryTransition(context.getInternalId(), PaymentStatus.COMPLETED)) {
+            // The lifecycle deadline already recorded the payment as FAILED, so undo what was posted.
+            return fail(run, OutcomeCode.TIMEOUT, "Lifecycle deadline expired before completion");
+        }
+        context.advanceTo(OrchestrationStep.COMPLETE);
+        long endNanos = recordLatencies(run);
+        return new OrchestrationResult(OrchestrationResult.Status.SUCCESS, OutcomeCode.OK,
+                context.getInternalId(), run.startEpochMillis, run.startNanos, endNanos,
+                run.messages, null, List.of(), context.getAuditLog(), context.stepNanos());
+    }
+
+    private OrchestrationResult fail(PaymentRun run, OutcomeCode outcome, String reason) {
+        PaymentOrchestrationContext context = run.context;
+        context.advanceTo(OrchestrationStep.ERROR);
+        List<OrchestrationStep> compensated = sagas.compensate(run.saga, context);
+        if (run.lifecycle != null) {
+            run.lifecycle.tryTransition(context.getInternalId(), PaymentStatus.FAILED);
+        }
+        long endNanos = recordLatencies(run);
+        return new OrchestrationResult(OrchestrationResult.Status.FAILURE, outcome,
+                context.getInternalId(), run.startEpochMillis, run.startNanos, endNanos,
+                run.messages, reason, compensated, context.getAuditLog(), context.stepNanos());
+    }
+
+    private long recordLatencies(PaymentRun run) {
+        long endNanos = System.nanoTime();
+        long[] stepNanos = run.context.stepNanos();
+        for (int i = 0; i < stepNanos.length; i++) {
+            if (stepNanos[i] >= 0) {
+                stepLatency[i].record(stepNanos[i]);
+            }
+        }
+        paymentLatency.record(endNanos - run.startNanos);
+        return endNanos;
+    }
+
+    private static Throwable unwrap(Throwable ex) {
+        if (ex instanceof CompletionException && ex.getCause() != null) {
+            return ex.getCause();
+        }
+        return ex;
+    }
+
+    /**
+     * Per-payment state carried from start to result.
+     */
+    private static final class PaymentRun {
+
+        final long startEpochMillis;
+        final long startNanos;
+        final PaymentOrchestrationContext context;
+        final OrchestrationPipeline plan;
+        final SagaCoordinator.Saga saga;
+        final PaymentLifecycleManager lifecycle;
+        final List<String> messages = new ArrayList<>(8);
+
+        PaymentRun(long startEpochMillis, long startNanos, PaymentOrchestrationContext context,
+                   OrchestrationPipeline plan, SagaCoordinator.Saga saga,
+                   PaymentLifecycleManager lifecycle) {
+            this.startEpochMillis = startEpochMillis;
+            this.startNanos = startNanos;
+            this.context = context;
+            this.plan = plan;
+            this.saga = saga;
+            this.lifecycle = lifecycle;
+        }
     }
 }
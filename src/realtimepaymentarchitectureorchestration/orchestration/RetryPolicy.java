@@ -1,37 +1,304 @@
 package realtimepaymentarchitectureorchestration.orchestration;
 
-import java.time.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
- * RetryPolicy is a supporting type in the orchestration layer.
+ * Retries a downstream call with exponential backoff, decorrelated jitter
+ * and a per-route retry budget.
+ * <p>
+ * The first attempt runs on the caller's thread. Retries are scheduled on a
+ * shared scheduler instead of sleeping, so {@link #executeAsync} never blocks.
+ * Each delay is drawn uniformly from [baseDelay, 3 x previousDelay] and capped
+ * at maxDelay ("decorrelated jitter"), which spreads retries from many callers
+ * apart instead of synchronising them.
+ * <p>
+ * The retry budget limits the extra load retries may add to a route. Every
+ * first attempt deposits {@code budgetRatio} of a token into the route's budget,
+ * and every retry withdraws a whole token. With a ratio of 0.1, retries add at
+ * most about 10% on top of the regular traffic once the small initial reserve
+ * is spent.
+ * <p>
+ * Callers with a deadline pass their remaining budget. A retry whose backoff
+ * would end past the deadline is not scheduled, and the call reports failure
+ * at once instead of waiting.
+ * <p>
+ * An attempt that is itself asynchronous, such as a hedged call, is run with
+ * {@link #composeAsync}. The next retry is scheduled when the attempt's future
+ * completes, so no thread waits on it.
  */
 public class RetryPolicy {
 
-    private final Map<String, Object> metadata = new LinkedHashMap<>();
+    /**
+     * One attempt at a downstream call. Receives the zero-based attempt number
+     * and returns whether the call succeeded.
+     */
+    @FunctionalInterface
+    public interface Attempt {
+        boolean run(int attempt);
+    }
+
+    /**
+     * One asynchronous attempt at a downstream call. Receives the zero-based
+     * attempt number and returns a future of whether the call succeeded.
+     */
+    @FunctionalInterface
+    public interface AsyncAttempt {
+        CompletableFuture<Boolean> run(int attempt);
+    }
+
+    private static final RetryPolicy DOWNSTREAM_DEFAULT = new RetryPolicy(3, 5L, 200L, 0.1d, 10);
+
+    private static final long MILLI_TOKENS = 1000L;
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final long depositMilliTokens;
+    private final long reserveMilliTokens;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentMap<String, AtomicLong> budgets = new ConcurrentHashMap<>();
+    private final AtomicLong retriesDenied = new AtomicLong();
+    private final AtomicLong retriesPastDeadline = new AtomicLong();
+
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis,
+                       double budgetRatio, int minRetries) {
+        this(maxAttempts, baseDelayMillis, maxDelayMillis, budgetRatio, minRetries, SharedScheduler.INSTANCE);
+    }
+
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis,
+                       double budgetRatio, int minRetries, ScheduledExecutorService scheduler) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("maxAttempts must be positive");
+        }
+        if (baseDelayMillis < 0 || maxDelayMillis < baseDelayMillis) {
+            throw new IllegalArgumentException("delays must satisfy 0 <= baseDelay <= maxDelay");
+        }
+        if (budgetRatio < 0d || minRetries < 0) {
+            throw new IllegalArgumentException("budgetRatio and minRetries must not be negative");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.depositMilliTokens = Math.round(budgetRatio * MILLI_TOKENS);
+        this.reserveMilliTokens = minRetries * MILLI_TOKENS;
+        this.scheduler = Objects.requireNonNull(scheduler, "scheduler");
+    }
 
-    public RetryPolicy() {
-        metadata.put("createdAt", Instant.now());
-        metadata.put("createdBy", "RetryPolicy");
+    /**
+     * Shared policy for simulated downstream calls: three attempts, 5-200ms
+     * backoff and a 10% retry budget per route.
+     */
+    public static RetryPolicy downstreamDefault() {
+        return DOWNSTREAM_DEFAULT;
     }
 
-    public void put(String key, Object value) {
-        metadata.put(key, value);
+    /**
+     * Runs the attempt, scheduling retries without blocking. The future
+     * completes with true as soon as one attempt succeeds, or false when the
+     * attempts or the route's retry budget are exhausted. An attempt that
+     * throws completes the future exceptionally.
+     */
+    public CompletableFuture<Boolean> executeAsync(String route, Attempt attempt) {
+        return executeAsync(route, attempt, Long.MAX_VALUE);
     }
 
-    public Optional<Object> get(String key) {
-        return Optional.ofNullable(metadata.get(key));
+    /**
+     * Like {@link #executeAsync(String, Attempt)}, but gives up once
+     * {@code remainingNanos} have passed. Retries that could not start before
+     * then are not scheduled. With no time left, no attempt is made.
+     * Long.MAX_VALUE means no deadline.
+     */
+    public CompletableFuture<Boolean> executeAsync(String route, Attempt attempt, long remainingNanos) {
+        Objects.requireNonNull(attempt, "attempt");
+        return composeAsync(route, n -> CompletableFuture.completedFuture(attempt.run(n)), remainingNanos);
     }
 
-    public Map<String, Object> getAll() {
-        return Collections.unmodifiableMap(metadata);
+    /**
+     * Like {@link #executeAsync(String, Attempt, long)} for attempts that return
+     * a future. Each retry is scheduled once the previous attempt's future has
+     * completed with false; a future that completes exceptionally completes the
+     * outcome exceptionally.
+     */
+    public CompletableFuture<Boolean> composeAsync(String route, AsyncAttempt attempt, long remainingNanos) {
+        Objects.requireNonNull(route, "route");
+        Objects.requireNonNull(attempt, "attempt");
+        if (remainingNanos <= 0) {
+            return CompletableFuture.completedFuture(Boolean.FALSE);
+        }
+        boolean bounded = remainingNanos != Long.MAX_VALUE;
+        long deadlineNanos = bounded ? System.nanoTime() + remainingNanos : 0L;
+        AtomicLong budget = budgetFor(route);
+        deposit(budget);
+        CompletableFuture<Boolean> outcome = new CompletableFuture<>();
+        runAttempt(route, attempt, budget, 0, baseDelayMillis, bounded, deadlineNanos, outcome);
+        return outcome;
+    }
+
+    /**
+     * Convenience for synchronous callers: runs {@link #executeAsync} and waits
+     * for the outcome.
+     */
+    public boolean execute(String route, Attempt attempt) {
+        return execute(route, attempt, Long.MAX_VALUE);
+    }
+
+    /**
+     * Synchronous form of {@link #executeAsync(String, Attempt, long)}.
+     */
+    public boolean execute(String route, Attempt attempt, long remainingNanos) {
+        return await(executeAsync(route, attempt, remainingNanos));
+    }
+
+    /**
+     * Synchronous form of {@link #composeAsync}: waits once for the final outcome.
+     */
+    public boolean compose(String route, AsyncAttempt attempt, long remainingNanos) {
+        return await(composeAsync(route, attempt, remainingNanos));
+    }
+
+    private static boolean await(CompletableFuture<Boolean> outcome) {
+        try {
+            return outcome.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    private void runAttempt(String route, AsyncAttempt attempt, AtomicLong budget,
+                            int attemptNumber, long previousDelayMillis,
+                            boolean bounded, long deadlineNanos,
+                            CompletableFuture<Boolean> outcome) {
+        CompletableFuture<Boolean> result;
+        try {
+            result = Objects.requireNonNull(attempt.run(attemptNumber), "attempt result");
+        } catch (RuntimeException ex) {
+            outcome.completeExceptionally(ex);
+            return;
+        }
+        result.whenComplete((success, ex) -> {
+            if (ex != null) {
+                outcome.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null
+                        ? ex.getCause() : ex);
+            } else {
+                afterAttempt(route, attempt, budget, attemptNumber, previousDelayMillis,
+                        bounded, deadlineNanos, outcome, Boolean.TRUE.equals(success));
+            }
+        });
     }
 
-    public void logState() {
-        System.out.println("RetryPolicy state:");
-        for (Map.Entry<String, Object> entry : metadata.entrySet()) {
-            System.out.println("  " + entry.getKey() + " = " + entry.getValue());
+    private void afterAttempt(String route, AsyncAttempt attempt, AtomicLong budget,
+                              int attemptNumber, long previousDelayMillis,
+                              boolean bounded, long deadlineNanos,
+                              CompletableFuture<Boolean> outcome, boolean success) {
+        if (success) {
+            outcome.complete(Boolean.TRUE);
+            return;
         }
+        int next = attemptNumber + 1;
+        if (next >= maxAttempts) {
+            outcome.complete(Boolean.FALSE);
+            return;
+        }
+        long delay = nextDelayMillis(previousDelayMillis);
+        if (bounded && deadlineNanos - System.nanoTime() <= TimeUnit.MILLISECONDS.toNanos(delay)) {
+            retriesPastDeadline.incrementAndGet();
+            outcome.complete(Boolean.FALSE);
+            return;
+        }
+        if (!withdraw(budget)) {
+            retriesDenied.incrementAndGet();
+            outcome.complete(Boolean.FALSE);
+            return;
+        }
+        try {
+            scheduler.schedule(
+                    () -> runAttempt(route, attempt, budget, next, delay, bounded, deadlineNanos, outcome),
+                    delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            outcome.completeExceptionally(ex);
+        }
+    }
+
+    /**
+     * Decorrelated jitter: uniform in [baseDelay, 3 x previousDelay], capped at maxDelay.
+     */
+    long nextDelayMillis(long previousDelayMillis) {
+        long upper = Math.min(maxDelayMillis, Math.max(baseDelayMillis, previousDelayMillis * 3));
+        if (upper <= baseDelayMillis) {
+            return baseDelayMillis;
+        }
+        return ThreadLocalRandom.current().nextLong(baseDelayMillis, upper + 1);
+    }
+
+    private AtomicLong budgetFor(String route) {
+        AtomicLong budget = budgets.get(route);
+        return budget != null ? budget : budgets.computeIfAbsent(route, r -> new AtomicLong(reserveMilliTokens));
+    }
+
+    private void deposit(AtomicLong budget) {
+        long cap = reserveMilliTokens + 100 * MILLI_TOKENS;
+        long current;
+        do {
+            current = budget.get();
+            if (current >= cap) {
+                return;
+            }
+        } while (!budget.compareAndSet(current, Math.min(cap, current + depositMilliTokens)));
+    }
+
+    private boolean withdraw(AtomicLong budget) {
+        long current;
+        do {
+            current = budget.get();
+            if (current < MILLI_TOKENS) {
+                return false;
+            }
+        } while (!budget.compareAndSet(current, current - MILLI_TOKENS));
+        return true;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Retries remaining in the route's budget, rounded down.
+     */
+    public long getRetryBudget(String route) {
+        return budgetFor(route).get() / MILLI_TOKENS;
+    }
+
+    /**
+     * Number of retries skipped because a route's budget was empty.
+     */
+    public long getRetriesDenied() {
+        return retriesDenied.get();
+    }
+
+    /**
+     * Number of retries skipped because they could not start before the caller's deadline.
+     */
+    public long getRetriesPastDeadline() {
+        return retriesPastDeadline.get();
+    }
+
+    private static final class SharedScheduler {
+
+        private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+        static final ScheduledExecutorService INSTANCE = Executors.newScheduledThreadPool(
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+                task -> {
+                    Thread thread = new Thread(task, "retry-scheduler-" + SEQUENCE.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
     }
 }
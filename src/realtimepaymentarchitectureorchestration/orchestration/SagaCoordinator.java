@@ -1,37 +1,154 @@
 package realtimepaymentarchitectureorchestration.orchestration;
 
-import java.time.*;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import realtimepaymentarchitectureorchestration.observability.MetricsRegistry;
 
 
 /**
- * SagaCoordinator is a supporting type in the orchestration layer.
+ * Tracks the compensable steps each payment has completed and reverses them,
+ * newest first, when the payment fails.
+ * <p>
+ * Compensation handlers are compiled into an array indexed by step ordinal.
+ * Each payment gets a {@link Saga} whose state is an append-only byte log of
+ * completed step ordinals; steps without a compensation are never logged, so
+ * most sagas stay a handful of bytes.
  */
 public class SagaCoordinator {
 
-    private final Map<String, Object> metadata = new LinkedHashMap<>();
+    private static final OrchestrationStep[] STEPS = OrchestrationStep.values();
+
+    private final CompensationHandler[] handlers = new CompensationHandler[STEPS.length];
+    private final MetricsRegistry metrics;
+    private final AtomicLong running = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public SagaCoordinator(Map<OrchestrationStep, CompensationHandler> compensations, MetricsRegistry metrics) {
+        Objects.requireNonNull(compensations, "compensations");
+        this.metrics = Objects.requireNonNull(metrics, "metrics");
+        for (Map.Entry<OrchestrationStep, CompensationHandler> entry : compensations.entrySet()) {
+            handlers[entry.getKey().ordinal()] = Objects.requireNonNull(entry.getValue(), "handler");
+        }
+    }
+
+    /**
+     * A coordinator that reverses ledger postings.
+     */
+    public static SagaCoordinator standard(MetricsRegistry metrics) {
+        return new SagaCoordinator(standardCompensations(), metrics);
+    }
 
-    public SagaCoordinator() {
-        metadata.put("createdAt", Instant.now());
-        metadata.put("createdBy", "SagaCoordinator");
+    public static Map<OrchestrationStep, CompensationHandler> standardCompensations() {
+        Map<OrchestrationStep, CompensationHandler> compensations = new EnumMap<>(OrchestrationStep.class);
+        compensations.put(OrchestrationStep.POST, new ReversePosting());
+        return compensations;
     }
 
-    public void put(String key, Object value) {
-        metadata.put(key, value);
+    public Saga begin() {
+        return new Saga(handlers);
     }
 
-    public Optional<Object> get(String key) {
-        return Optional.ofNullable(metadata.get(key));
+    /**
+     * Runs the compensations for every logged step in reverse order.
+     * Returns the steps that were compensated successfully.
+     */
+    public List<OrchestrationStep> compensate(Saga saga, PaymentOrchestrationContext context) {
+        if (saga.size == 0) {
+            return List.of();
+        }
+        long startNanos = System.nanoTime();
+        metrics.increment("saga.compensations.started");
+        metrics.setGauge("saga.compensations.backlog", running.incrementAndGet() + failed.get());
+        List<OrchestrationStep> compensated = new ArrayList<>(saga.size);
+        boolean allSucceeded = true;
+        for (int i = saga.size - 1; i >= 0; i--) {
+            OrchestrationStep step = STEPS[saga.log[i]];
+            try {
+                handlers[step.ordinal()].compensate(context);
+                compensated.add(step);
+                context.addAudit("Compensated " + step);
+            } catch (RuntimeException ex) {
+                allSucceeded = false;
+                context.addAudit("Compensation of " + step + " failed: " + ex.getMessage());
+            }
+        }
+        running.decrementAndGet();
+        if (allSucceeded) {
+            metrics.increment("saga.compensations.completed");
+        } else {
+            failed.incrementAndGet();
+            metrics.increment("saga.compensations.failed");
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        metrics.add("saga.compensations.totalLatencyMicros", micros);
+        metrics.setGauge("saga.compensations.lastLatencyMicros", micros);
+        metrics.setGauge("saga.compensations.backlog", getBacklog());
+        return compensated;
     }
 
-    public Map<String, Object> getAll() {
-        return Collections.unmodifiableMap(metadata);
+    /**
+     * Compensations in progress plus sagas whose compensation failed and still
+     * need attention.
+     */
+    public long getBacklog() {
+        return running.get() + failed.get();
     }
 
-    public void logState() {
-        System.out.println("SagaCoordinator state:");
-        for (Map.Entry<String, Object> entry : metadata.entrySet()) {
-            System.out.println("  " + entry.getKey() + " = " + entry.getValue());
+    /**
+     * Call once a failed compensation has been resolved out of band.
+     */
+    public void acknowledgeFailure() {
+        if (failed.getAndUpdate(n -> n > 0 ? n - 1 : 0) > 0) {
+            metrics.setGauge("saga.compensations.backlog", getBacklog());
+        }
+    }
+
+    /**
+     * Per-payment saga state. Confined to the thread running the payment.
+     */
+    public static final class Saga {
+
+        private final CompensationHandler[] handlers;
+        private byte[] log = new byte[4];
+        private int size;
+
+        private Saga(CompensationHandler[] handlers) {
+            this.handlers = handlers;
+        }
+
+        /**
+         * Logs a completed step if it has a compensation registered.
+         */
+        public void stepCompleted(OrchestrationStep step) {
+            int ordinal = step.ordinal();
+            if (handlers[ordinal] == null) {
+                return;
+            }
+            if (size == log.length) {
+                log = Arrays.copyOf(log, size * 2);
+            }
+            log[size++] = (byte) ordinal;
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Reverses a simulated ledger posting by booking an offsetting entry.
+     */
+    static final class ReversePosting implements CompensationHandler {
+
+        @Override
+        public void compensate(PaymentOrchestrationContext context) {
+            String ledgerId = context.get(ContextKey.LEDGER_ID);
+            if (ledgerId == null) {
+                return;
+            }
+            context.putAttribute("reversalId", "REVERSAL-" + ledgerId);
         }
     }
 }
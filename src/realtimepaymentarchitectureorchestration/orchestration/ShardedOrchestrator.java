@@ -0,0 +1,365 @@
+package realtimepaymentarchitectureorchestration.orchestration;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+
+/**
+ * Orchestrates payments on single-writer shards keyed by debtor account.
+ * <p>
+ * Each debtor account hashes to one of N shards. A shard is one daemon thread
+ * draining a lock-free MPSC inbox, so payments from the same account run one
+ * at a time in submission order, while different shards run in parallel. The
+ * per-account state behind the velocity, amount and duplicate checks is owned
+ * by its shard thread and lives in plain HashMaps without any locking.
+ * <p>
+ * The account checks look back over a sliding window: a payment counts
+ * against its account from when it is accepted until the window length has
+ * passed, so a burst cannot straddle a window boundary to get twice the limit.
+ * Two payments are duplicates when they share creditor, end-to-end id,
+ * currency and amount by value, so "10.0" and "10.00" match. A payment
+ * without an end-to-end id has nothing unique to match on and is never
+ * treated as a duplicate. The amount is parsed once into AmountText's
+ * canonical long, which both the duplicate key and the amount limit use; an
+ * amount with more digits than that holds is refused as INVALID_AMOUNT.
+ * <p>
+ * A payment that fails an account check is recorded through the orchestrator
+ * as a FAILURE with VELOCITY_EXCEEDED, LIMIT_EXCEEDED or DUPLICATE_PAYMENT and
+ * no step runs. A payment that passes is reserved against its account's window
+ * and orchestrated on the shard thread; if it does not succeed, the
+ * reservation is returned.
+ */
+public class ShardedOrchestrator implements AutoCloseable {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private final PaymentOrchestrator orchestrator;
+    private final Shard[] shards;
+    private final int maxPaymentsPerWindow;
+    private final double maxAmountPerWindow;
+    private final long windowMillis;
+    private final LongSupplier clock;
+    private volatile boolean closed;
+
+    public ShardedOrchestrator(PaymentOrchestrator orchestrator) {
+        this(orchestrator, orchestrator.getSettings().getShardCount());
+    }
+
+    public ShardedOrchestrator(PaymentOrchestrator orchestrator, int shardCount) {
+        this(orchestrator, shardCount, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock  milliseconds source for the account windows, replaceable for tests
+     */
+    public ShardedOrchestrator(PaymentOrchestrator orchestrator, int shardCount, LongSupplier clock) {
+        this.orchestrator = Objects.requireNonNull(orchestrator, "orchestrator");
+        this.clock = Objects.requireNonNull(clock, "clock");
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("shardCount must be positive");
+        }
+        OrchestrationSettings settings = orchestrator.getSettings();
+        this.maxPaymentsPerWindow = settings.getAccountMaxPaymentsPerWindow();
+        this.maxAmountPerWindow = settings.getAccountMaxAmountPerWindow();
+        this.windowMillis = settings.getAccountWindowMillis();
+        int group = SEQUENCE.incrementAndGet();
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard("payment-shard-" + group + "-" + i);
+        }
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+    }
+
+    /**
+     * Queues a payment on its debtor account's shard. Never blocks. The request
+     * map is copied, so the caller may reuse it afterwards.
+     */
+    public CompletableFuture<OrchestrationResult> submit(Map<String, Object> paymentData) {
+        Objects.requireNonNull(paymentData, "paymentData");
+        if (closed) {
+            throw new IllegalStateException("ShardedOrchestrator is closed");
+        }
+        Map<String, Object> snapshot = new LinkedHashMap<>(paymentData);
+        CompletableFuture<OrchestrationResult> future = new CompletableFuture<>();
+        shards[shardOf(snapshot.get("debtorAccount"))].enqueue(new Task(snapshot, future));
+        return future;
+    }
+
+    /**
+     * The shard that owns a debtor account.
+     */
+    public int shardOf(Object debtorAccount) {
+        int h = debtorAccount == null ? 0 : debtorAccount.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), shards.length);
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Stops the shard threads after they drain what is already queued. A
+     * payment that raced with close and missed its shard fails with
+     * IllegalStateException.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Shard shard : shards) {
+            LockSupport.unpark(shard.thread);
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (!shard.thread.isAlive()) {
+                Task late;
+                while ((late = shard.inbox.poll()) != null) {
+                    late.future.completeExceptionally(new IllegalStateException("ShardedOrchestrator is closed"));
+                }
+            }
+        }
+    }
+
+    private static final class Task {
+
+        final Map<String, Object> paymentData;
+        final CompletableFuture<OrchestrationResult> future;
+
+        Task(Map<String, Object> paymentData, CompletableFuture<OrchestrationResult> future) {
+            this.paymentData = paymentData;
+            this.future = future;
+        }
+    }
+
+    /**
+     * One single-writer shard. Everything except the inbox and the parked flag
+     * is touched only by the shard thread.
+     */
+    private final class Shard implements Runnable {
+
+        private final MpscInbox<Task> inbox = new MpscInbox<>();
+        private final Map<String, AccountWindow> accounts = new HashMap<>();
+        private final Thread thread;
+        private volatile boolean parked;
+        private int processed;
+
+        Shard(String name) {
+            this.thread = new Thread(this, name);
+            thread.setDaemon(true);
+        }
+
+        void enqueue(Task task) {
+            inbox.offer(task);
+            if (parked) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Task task = inbox.poll();
+                if (task != null) {
+                    process(task);
+                    continue;
+                }
+                if (closed) {
+                    return;
+                }
+                parked = true;
+                if (inbox.isEmpty() && !closed) {
+                    LockSupport.park(this);
+                }
+                parked = false;
+            }
+        }
+
+        private void process(Task task) {
+            try {
+                task.future.complete(orchestrate(task.paymentData));
+            } catch (Throwable ex) {
+                task.future.completeExceptionally(ex);
+            }
+            if ((++processed & 4095) == 0) {
+                evictIdle(clock.getAsLong());
+            }
+        }
+
+        /**
+         * Drops accounts with no payment left in their window, so idle accounts do not accumulate.
+         */
+        private void evictIdle(long nowMillis) {
+            accounts.values().removeIf(window -> {
+                window.expire(nowMillis);
+                return window.isEmpty();
+            });
+        }
+
+        private OrchestrationResult orchestrate(Map<String, Object> paymentData) {
+            Object debtor = paymentData.get("debtorAccount");
+            Object amountText = paymentData.get("amount");
+            if (!(debtor instanceof String) || !(amountText instanceof String)) {
+                // Validation rejects it; there is no account to charge.
+                return orchestrator.orchestrateSimple(paymentData);
+            }
+            long canonical = AmountText.canonical((String) amountText);
+            if (canonical == AmountText.INVALID) {
+                if (AmountText.isDecimal((String) amountText)) {
+                    // A plain decimal too precise to hold; it cannot be checked against the account.
+                    return orchestrator.refuse(paymentData, OutcomeCode.INVALID_AMOUNT);
+                }
+                return orchestrator.orchestrateSimple(paymentData);
+            }
+            double amount = AmountText.toDouble(canonical);
+            Object endToEndId = paymentData.get("endToEndId");
+            Fingerprint fingerprint = endToEndId == null ? null : new Fingerprint(paymentData.get("creditorAccount"),
+                    endToEndId, canonical, paymentData.getOrDefault("currency", "USD"));
+            AccountWindow window = accounts.computeIfAbsent((String) debtor, d -> new AccountWindow());
+            long nowMillis = clock.getAsLong();
+            window.expire(nowMillis);
+            OutcomeCode refusal = window.check(amount, fingerprint);
+            if (refusal != null) {
+                return orchestrator.refuse(paymentData, refusal);
+            }
+            window.reserve(nowMillis, amount, fingerprint);
+            OrchestrationResult result = orchestrator.orchestrateSimple(paymentData);
+            if (result.getStatus() != OrchestrationResult.Status.SUCCESS) {
+                window.releaseLast();
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Velocity, amount and duplicate state of one debtor account over the
+     * sliding window: its accepted payments, oldest first, plus running totals.
+     * Owned by a single shard thread.
+     */
+    private final class AccountWindow {
+
+        private final ArrayDeque<Accepted> accepted = new ArrayDeque<>();
+        private final Set<Fingerprint> fingerprints = new HashSet<>();
+        private double amount;
+
+        /**
+         * Forgets payments accepted a full window or more before {@code nowMillis}.
+         */
+        void expire(long nowMillis) {
+            Accepted oldest;
+            while ((oldest = accepted.peekFirst()) != null && nowMillis - oldest.atMillis >= windowMillis) {
+                accepted.pollFirst();
+                forget(oldest);
+            }
+        }
+
+        boolean isEmpty() {
+            return accepted.isEmpty();
+        }
+
+        /**
+         * The reason to refuse a payment, or null to accept it. A null
+         * fingerprint skips the duplicate check.
+         */
+        OutcomeCode check(double paymentAmount, Fingerprint fingerprint) {
+            if (fingerprint != null && fingerprints.contains(fingerprint)) {
+                return OutcomeCode.DUPLICATE_PAYMENT;
+            }
+            if (accepted.size() >= maxPaymentsPerWindow) {
+                return OutcomeCode.VELOCITY_EXCEEDED;
+            }
+            if (amount + paymentAmount > maxAmountPerWindow) {
+                return OutcomeCode.LIMIT_EXCEEDED;
+            }
+            return null;
+        }
+
+        void reserve(long nowMillis, double paymentAmount, Fingerprint fingerprint) {
+            accepted.addLast(new Accepted(nowMillis, paymentAmount, fingerprint));
+            amount += paymentAmount;
+            if (fingerprint != null) {
+                fingerprints.add(fingerprint);
+            }
+        }
+
+        /**
+         * Returns the most recent reservation, made for a payment that then failed.
+         */
+        void releaseLast() {
+            Accepted last = accepted.pollLast();
+            if (last != null) {
+                forget(last);
+            }
+        }
+
+        private void forget(Accepted payment) {
+            if (payment.fingerprint != null) {
+                fingerprints.remove(payment.fingerprint);
+            }
+            amount = accepted.isEmpty() ? 0d : amount - payment.amount;
+        }
+    }
+
+    /**
+     * What makes two payments from one account duplicates. The amount is
+     * AmountText's canonical long, so equal values compare equal.
+     */
+    private static final class Fingerprint {
+
+        final Object creditor;
+        final Object endToEndId;
+        final long amount;
+        final Object currency;
+
+        Fingerprint(Object creditor, Object endToEndId, long amount, Object currency) {
+            this.creditor = creditor;
+            this.endToEndId = endToEndId;
+            this.amount = amount;
+            this.currency = currency;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Fingerprint)) {
+                return false;
+            }
+            Fingerprint other = (Fingerprint) o;
+            return amount == other.amount
+                    && endToEndId.equals(other.endToEndId)
+                    && Objects.equals(creditor, other.creditor)
+                    && Objects.equals(currency, other.currency);
+        }
+
+        @Override
+        public int hashCode() {
+            int h = endToEndId.hashCode();
+            h = 31 * h + Long.hashCode(amount);
+            h = 31 * h + Objects.hashCode(creditor);
+            return 31 * h + Objects.hashCode(currency);
+        }
+    }
+
+    private static final class Accepted {
+
+        final long atMillis;
+        final double amount;
+        final Fingerprint fingerprint;
+
+        Accepted(long atMillis, double amount, Fingerprint fingerprint) {
+            this.atMillis = atMillis;
+            this.amount = amount;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
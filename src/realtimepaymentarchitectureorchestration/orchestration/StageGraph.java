@@ -0,0 +1,96 @@
+package realtimepaymentarchitectureorchestration.orchestration;
+
+import java.util.*;
+
+
+/**
+ * Declares which orchestration steps depend on which.
+ * <p>
+ * A pipeline keeps the step order it was configured with, but consecutive
+ * steps that do not depend on one another are compiled into a parallel group
+ * and run concurrently. A step that is not declared here depends on every step
+ * before it, so an empty graph runs everything in sequence.
+ */
+public final class StageGraph {
+
+    private final Map<OrchestrationStep, EnumSet<OrchestrationStep>> dependencies =
+            new EnumMap<>(OrchestrationStep.class);
+
+    /**
+     * A graph with no declared dependencies: every step runs after the one before it.
+     */
+    public static StageGraph sequential() {
+        return new StageGraph();
+    }
+
+    /**
+     * Enrichment, ISO 20022 transformation, sanctions screening and fraud
+     * scoring depend only on the validated request and may run side by side.
+     * Routing needs all of them; posting follows routing and notification
+     * follows posting.
+     */
+    public static StageGraph standard() {
+        return new StageGraph()
+                .dependsOn(OrchestrationStep.ENRICH, OrchestrationStep.VALIDATE)
+                .dependsOn(OrchestrationStep.TRANSFORM_TO_ISO20022, OrchestrationStep.VALIDATE)
+                .dependsOn(OrchestrationStep.SANCTIONS_CHECK, OrchestrationStep.VALIDATE)
+                .dependsOn(OrchestrationStep.FRAUD_CHECK, OrchestrationStep.VALIDATE)
+                .dependsOn(OrchestrationStep.ROUTE, OrchestrationStep.VALIDATE, OrchestrationStep.ENRICH,
+                        OrchestrationStep.TRANSFORM_TO_ISO20022, OrchestrationStep.SANCTIONS_CHECK,
+                        OrchestrationStep.FRAUD_CHECK)
+                .dependsOn(OrchestrationStep.POST, OrchestrationStep.ROUTE)
+                .dependsOn(OrchestrationStep.NOTIFY, OrchestrationStep.POST);
+    }
+
+    /**
+     * Declares the steps that must finish before {@code step} may start,
+     * replacing any earlier declaration for it.
+     */
+    public StageGraph dependsOn(OrchestrationStep step, OrchestrationStep... prerequisites) {
+        Objects.requireNonNull(step, "step");
+        EnumSet<OrchestrationStep> set = EnumSet.noneOf(OrchestrationStep.class);
+        for (OrchestrationStep prerequisite : prerequisites) {
+            if (prerequisite == step) {
+                throw new IllegalArgumentException("Step " + step + " cannot depend on itself");
+            }
+            set.add(Objects.requireNonNull(prerequisite, "prerequisite"));
+        }
+        dependencies.put(step, set);
+        return this;
+    }
+
+    /**
+     * Whether {@code step} must wait for {@code earlier}. Undeclared steps wait
+     * for everything.
+     */
+    public boolean mustFollow(OrchestrationStep step, OrchestrationStep earlier) {
+        EnumSet<OrchestrationStep> set = dependencies.get(step);
+        return set == null || set.contains(earlier);
+    }
+
+    /**
+     * Splits a step order into groups of consecutive steps that do not depend
+     * on each other. Returns the exclusive end index of each group.
+     */
+    int[] groupEnds(OrchestrationStep[] order) {
+        int[] ends = new int[order.length];
+        int groups = 0;
+        int groupStart = 0;
+        for (int i = 1; i <= order.length; i++) {
+            boolean split = i == order.length;
+            for (int j = groupStart; j < i && !split; j++) {
+                split = mustFollow(order[i], order[j]);
+            }
+            if (split) {
+                ends[groups++] = i;
+                groupStart = i;
+            }
+        }
+        return Arrays.copyOf(ends, groups);
+    }
+
+    @Override
+    public String toString() {
+        return "StageGraph" + dependencies;
+    }
+}
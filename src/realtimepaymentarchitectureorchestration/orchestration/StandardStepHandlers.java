@@ -0,0 +1,214 @@
+package realtimepaymentarchitectureorchestration.orchestration;
+
+import java.time.*;
+import java.util.*;
+
+
+/**
+ * Built-in handlers for the canonical orchestration steps.
+ * Every handler is stateless and shared by all payments.
+ */
+public final class StandardStepHandlers {
+
+    public static final OrchestrationStepHandler VALIDATE = new Validate();
+    public static final OrchestrationStepHandler ENRICH = new Enrich();
+    public static final OrchestrationStepHandler TRANSFORM_TO_ISO20022 = new TransformToIso20022();
+    public static final OrchestrationStepHandler SANCTIONS_CHECK = new SanctionsCheck(Set.of());
+    public static final OrchestrationStepHandler FRAUD_CHECK = new FraudCheck();
+    public static final OrchestrationStepHandler ROUTE = new Route();
+    public static final OrchestrationStepHandler POST = new Post();
+    public static final OrchestrationStepHandler NOTIFY = new Notify();
+
+    private StandardStepHandlers() {}
+
+    /**
+     * Returns a fresh, mutable step-to-handler registry populated with the
+     * standard handlers. Callers may replace or add entries before compiling
+     * an OrchestrationPipeline from it.
+     */
+    public static Map<OrchestrationStep, OrchestrationStepHandler> registry() {
+        Map<OrchestrationStep, OrchestrationStepHandler> registry = new EnumMap<>(OrchestrationStep.class);
+        registry.put(OrchestrationStep.VALIDATE, VALIDATE);
+        registry.put(OrchestrationStep.ENRICH, ENRICH);
+        registry.put(OrchestrationStep.TRANSFORM_TO_ISO20022, TRANSFORM_TO_ISO20022);
+        registry.put(OrchestrationStep.SANCTIONS_CHECK, SANCTIONS_CHECK);
+        registry.put(OrchestrationStep.FRAUD_CHECK, FRAUD_CHECK);
+        registry.put(OrchestrationStep.ROUTE, ROUTE);
+        registry.put(OrchestrationStep.POST, POST);
+        registry.put(OrchestrationStep.NOTIFY, NOTIFY);
+        return registry;
+    }
+
+    /**
+     * Checks required fields and the amount format. Failures are reported as
+     * preallocated outcome codes rather than exceptions.
+     */
+    static final class Validate implements OrchestrationStepHandler {
+
+        private static boolean isBlank(Object value) {
+            return !(value instanceof String) || ((String) value).isBlank();
+        }
+
+        @Override
+        public void execute(Map<String, Object> paymentData,
+                            PaymentOrchestrationContext context,
+                            List<String> messages) {
+            Object debtor = paymentData.get("debtorAccount");
+            Object creditor = paymentData.get("creditorAccount");
+            Object amount = paymentData.get("amount");
+
+            if (isBlank(debtor)) {
+                context.reject(OutcomeCode.MISSING_DEBTOR_ACCOUNT);
+                return;
+            }
+            if (isBlank(creditor)) {
+                context.reject(OutcomeCode.MISSING_CREDITOR_ACCOUNT);
+                return;
+            }
+            if (isBlank(amount)) {
+                context.reject(OutcomeCode.MISSING_AMOUNT);
+                return;
+            }
+            if (!AmountText.isDecimal((String) amount)) {
+                context.reject(OutcomeCode.INVALID_AMOUNT);
+                return;
+            }
+
+            context.put(ContextKey.VALIDATED, Boolean.TRUE);
+            messages.add("Validation succeeded");
+        }
+    }
+
+    static final class Enrich implements OrchestrationStepHandler {
+
+        @Override
+        public void execute(Map<String, Object> paymentData,
+                            PaymentOrchestrationContext context,
+                            List<String> messages) {
+            context.put(ContextKey.CHANNEL, "CLI_DEMO");
+            context.put(ContextKey.RECEIVED_AT, Instant.now());
+            messages.add("Enrichment completed");
+        }
+    }
+
+    static final class TransformToIso20022 implements OrchestrationStepHandler {
+
+        @Override
+        public void execute(Map<String, Object> paymentData,
+                            PaymentOrchestrationContext context,
+                            List<String> messages) {
+            Map<String, Object> iso = new LinkedHashMap<>();
+            iso.put("msgId", "MSG-" + context.getInternalId());
+            iso.put("debtorAccount", paymentData.get("debtorAccount"));
+            iso.put("creditorAccount", paymentData.get("creditorAccount"));
+            iso.put("amount", paymentData.get("amount"));
+            iso.put("currency", paymentData.getOrDefault("currency", "USD"));
+            context.put(ContextKey.ISO20022_MESSAGE, iso);
+            messages.add("Transformed into ISO 20022 inspired structure");
+        }
+    }
+
+    /**
+     * Screens debtor and creditor accounts against a list of blocked accounts.
+     */
+    public static final class SanctionsCheck implements OrchestrationStepHandler {
+
+        private final Set<String> blockedAccounts;
+
+        public SanctionsCheck(Set<String> blockedAccounts) {
+            this.blockedAccounts = Set.copyOf(blockedAccounts);
+        }
+
+        @Override
+        public void execute(Map<String, Object> paymentData,
+                            PaymentOrchestrationContext context,
+                            List<String> messages) {
+            Object debtor = paymentData.get("debtorAccount");
+            Object creditor = paymentData.get("creditorAccount");
+            if (blockedAccounts.contains(debtor) || blockedAccounts.contains(creditor)) {
+                context.reject(OutcomeCode.SANCTIONS_HIT);
+                return;
+            }
+            messages.add("Sanctions screening passed");
+        }
+    }
+
+    static final class FraudCheck implements OrchestrationStepHandler {
+
+        @Override
+        public void execute(Map<String, Object> paymentData,
+                            PaymentOrchestrationContext context,
+                            List<String> messages) {
+            double amount = Double.parseDouble((String) paymentData.get("amount"));
+            if (amount > 50000.0) {
+                messages.add("Fraud check result: REVIEW (high amount)");
+                context.put(ContextKey.FRAUD_DECISION, "REVIEW");
+            } else {
+                messages.add("Fraud check result: APPROVE");
+                context.put(ContextKey.FRAUD_DECISION, "APPROVE");
+            }
+        }
+    }
+
+    static final class Route implements OrchestrationStepHandler {
+
+        @Override
+        public void execute(Map<String, Object> paymentData,
+                            PaymentOrchestrationContext context,
+                            List<String> messages) {
+            String currency = (String) paymentData.getOrDefault("currency", "USD");
+            String route;
+            if ("USD".equalsIgnoreCase(currency)) {
+                route = "INTERNAL_RT";
+            } else {
+                route = "CROSS_BORDER";
+            }
+            context.put(ContextKey.ROUTE, route);
+            messages.add("Routing decided: " + route);
+        }
+    }
+
+    static final class Post implements OrchestrationStepHandler {
+
+        @Override
+        public void execute(Map<String, Object> paymentData,
+                            PaymentOrchestrationContext context,
+                            List<String> messages) {
+            String ledgerId = "LEDGER-" + context.getInternalId();
+            context.put(ContextKey.LEDGER_ID, ledgerId);
+            messages.add("Posted to simulated ledger with id=" + ledgerId);
+        }
+
+        /**
+         * Posts the whole batch as one simulated ledger submission.
+         */
+        @Override
+        public void executeBatch(PaymentBatch batch) {
+            int postings = batch.liveCount();
+            for (int i = 0; i < batch.size(); i++) {
+                if (batch.isLive(i)) {
+                    PaymentOrchestrationContext context = batch.context(i);
+                    String ledgerId = "LEDGER-" + context.getInternalId();
+                    context.put(ContextKey.LEDGER_ID, ledgerId);
+                    batch.messages(i).add("Posted to simulated ledger with id=" + ledgerId
+                            + " in a batch of " + postings);
+                }
+            }
+        }
+    }
+
+    static final class Notify implements OrchestrationStepHandler {
+
+        @Override
+        public void execute(Map<String, Object> paymentData,
+                            PaymentOrchestrationContext context,
+                            List<String> messages) {
+            messages.add("Notifications sent to debtor and creditor (simulated)");
+        }
+
+        @Override
+        public boolean isOptional() {
+            return true;
+        }
+    }
+}
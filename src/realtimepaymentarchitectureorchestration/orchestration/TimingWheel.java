@@ -0,0 +1,196 @@
+package realtimepaymentarchitectureorchestration.orchestration;
+
+import java.util.*;
+
+
+/**
+ * Hierarchical timing wheel for large numbers of coarse-grained timeouts.
+ * <p>
+ * Four levels of 64 slots each cover 2^24 ticks. A timeout is linked into the
+ * slot of the lowest level whose range covers its expiry, so scheduling and
+ * cancelling are constant-time list operations regardless of how many timeouts
+ * are pending. Each time the level-0 wheel wraps around, the next slot of the
+ * level above is cascaded down, the same scheme the classic Linux kernel timer
+ * wheel uses. Expiry is checked to the tick; timeouts fire on the first
+ * {@link #advanceTo(long)} that reaches their tick.
+ * <p>
+ * The wheel has no thread of its own. Its owner calls {@link #advanceTo(long)}
+ * with the current tick, for example from a periodic ticker. All methods are
+ * synchronized, and expired tasks run on the advancing thread after the lock
+ * has been released.
+ */
+public final class TimingWheel {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_SPAN = 1L << (SLOT_BITS * LEVELS);
+
+    private final Timeout[][] heads = new Timeout[LEVELS][SLOTS];
+    private long nextTick;
+    private int pending;
+
+    /**
+     * @param startTick the first tick the wheel will process
+     */
+    public TimingWheel(long startTick) {
+        this.nextTick = startTick;
+    }
+
+    /**
+     * Schedules a task to run once the wheel reaches the given tick. Ticks
+     * that have already been processed fire on the next advance.
+     */
+    public synchronized Timeout schedule(long expiryTick, Runnable task) {
+        Timeout timeout = new Timeout(this, expiryTick, Objects.requireNonNull(task, "task"));
+        link(timeout);
+        pending++;
+        return timeout;
+    }
+
+    /**
+     * Processes every tick up to and including {@code tick} and runs the tasks
+     * that expired. Returns the number of tasks run.
+     */
+    public int advanceTo(long tick) {
+        List<Timeout> expired = null;
+        synchronized (this) {
+            while (nextTick <= tick) {
+                int index = (int) (nextTick & SLOT_MASK);
+                if (index == 0) {
+                    for (int level = 1; level < LEVELS; level++) {
+                        int slot = (int) ((nextTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+                        cascade(level, slot);
+                        if (slot != 0) {
+                            break;
+                        }
+                    }
+                }
+                Timeout timeout = heads[0][index];
+                heads[0][index] = null;
+                while (timeout != null) {
+                    Timeout next = timeout.next;
+                    timeout.prev = null;
+                    timeout.next = null;
+                    timeout.level = -1;
+                    if (timeout.expiryTick > nextTick) {
+                        link(timeout);
+                    } else {
+                        pending--;
+                        if (expired == null) {
+                            expired = new ArrayList<>();
+                        }
+                        expired.add(timeout);
+                    }
+                    timeout = next;
+                }
+                nextTick++;
+            }
+        }
+        if (expired == null) {
+            return 0;
+        }
+        for (Timeout timeout : expired) {
+            timeout.task.run();
+        }
+        return expired.size();
+    }
+
+    public synchronized int getPendingCount() {
+        return pending;
+    }
+
+    /**
+     * Next tick that {@link #advanceTo(long)} will process.
+     */
+    public synchronized long getNextTick() {
+        return nextTick;
+    }
+
+    private synchronized boolean cancel(Timeout timeout) {
+        if (timeout.level < 0) {
+            return false;
+        }
+        unlink(timeout);
+        pending--;
+        return true;
+    }
+
+    private void cascade(int level, int slot) {
+        Timeout timeout = heads[level][slot];
+        heads[level][slot] = null;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            timeout.prev = null;
+            timeout.next = null;
+            link(timeout);
+            timeout = next;
+        }
+    }
+
+    private void link(Timeout timeout) {
+        long expiry = Math.max(timeout.expiryTick, nextTick);
+        long delta = Math.min(expiry - nextTick, MAX_SPAN - 1);
+        expiry = nextTick + delta;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int slot = (int) ((expiry >>> (SLOT_BITS * level)) & SLOT_MASK);
+        Timeout head = heads[level][slot];
+        timeout.level = level;
+        timeout.slot = slot;
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+        heads[level][slot] = timeout;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            heads[timeout.level][timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.level = -1;
+    }
+
+    /**
+     * Handle to a scheduled task.
+     */
+    public static final class Timeout {
+
+        private final TimingWheel wheel;
+        private final long expiryTick;
+        private final Runnable task;
+        private Timeout prev;
+        private Timeout next;
+        private int level = -1;
+        private int slot;
+
+        private Timeout(TimingWheel wheel, long expiryTick, Runnable task) {
+            this.wheel = wheel;
+            this.expiryTick = expiryTick;
+            this.task = task;
+        }
+
+        public long getExpiryTick() {
+            return expiryTick;
+        }
+
+        /**
+         * Removes the task from the wheel. Returns false if it already ran or
+         * was cancelled before.
+         */
+        public boolean cancel() {
+            return wheel.cancel(this);
+        }
+    }
+}
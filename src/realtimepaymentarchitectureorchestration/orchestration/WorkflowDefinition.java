@@ -1,37 +1,37 @@
 package realtimepaymentarchitectureorchestration.orchestration;
 
-import java.time.*;
 import java.util.*;
 
 
 /**
- * WorkflowDefinition is a supporting type in the orchestration layer.
+ * Names a workflow and the configured flow that executes it.
  */
-public class WorkflowDefinition {
+public final class WorkflowDefinition {
 
-    private final Map<String, Object> metadata = new LinkedHashMap<>();
+    private final String id;
+    private final String flowId;
 
-    public WorkflowDefinition() {
-        metadata.put("createdAt", Instant.now());
-        metadata.put("createdBy", "WorkflowDefinition");
+    public WorkflowDefinition(String id, String flowId) {
+        this.id = Objects.requireNonNull(id, "id");
+        this.flowId = Objects.requireNonNull(flowId, "flowId");
     }
 
-    public void put(String key, Object value) {
-        metadata.put(key, value);
+    public String getId() {
+        return id;
     }
 
-    public Optional<Object> get(String key) {
-        return Optional.ofNullable(metadata.get(key));
+    /**
+     * Id of the PipelineConfigLoader flow that runs this workflow.
+     */
+    public String getFlowId() {
+        return flowId;
     }
 
-    public Map<String, Object> getAll() {
-        return Collections.unmodifiableMap(metadata);
-    }
-
-    public void logState() {
-        System.out.println("WorkflowDefinition state:");
-        for (Map.Entry<String, Object> entry : metadata.entrySet()) {
-            System.out.println("  " + entry.getKey() + " = " + entry.getValue());
-        }
+    @Override
+    public String toString() {
+        return "WorkflowDefinition{" +
+                "id='" + id + '\'' +
+                ", flowId='" + flowId + '\'' +
+                '}';
     }
 }
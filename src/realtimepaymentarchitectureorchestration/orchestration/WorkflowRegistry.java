@@ -1,37 +1,260 @@
 package realtimepaymentarchitectureorchestration.orchestration;
 
-import java.time.*;
 import java.util.*;
 
 
 /**
- * WorkflowRegistry is a supporting type in the orchestration layer.
+ * Maps (scheme, currency, amount band, channel) to a WorkflowDefinition.
+ * <p>
+ * Rules may use {@link #ANY} or {@link #ANY_BAND} as wildcards. Whenever the
+ * rules change, the registry precomputes a {@link DecisionIndex}: a dense
+ * four-dimensional table with one cell for every combination of known scheme,
+ * currency, amount band and channel, plus an "other" slot per dimension for
+ * values no rule names. Each cell holds the most specific matching rule, so
+ * selecting a workflow costs three small map lookups, a short band search and
+ * one array load, however many rules are registered. Values are matched as
+ * registered, falling back to their upper-case form.
  */
 public class WorkflowRegistry {
 
-    private final Map<String, Object> metadata = new LinkedHashMap<>();
+    public static final String ANY = "*";
+    public static final int ANY_BAND = -1;
 
-    public WorkflowRegistry() {
-        metadata.put("createdAt", Instant.now());
-        metadata.put("createdBy", "WorkflowRegistry");
+    public static final String DEFAULT_SCHEME = "RTP";
+    public static final String DEFAULT_CURRENCY = "USD";
+
+    private final double[] bandUpperBounds;
+    private final List<Rule> rules = new ArrayList<>();
+    private volatile DecisionIndex index;
+
+    /**
+     * @param bandUpperBounds inclusive upper bounds of the amount bands, ascending.
+     *                        N bounds give N + 1 bands; the last band is open-ended.
+     */
+    public WorkflowRegistry(double... bandUpperBounds) {
+        double[] bounds = bandUpperBounds.clone();
+        for (int i = 1; i < bounds.length; i++) {
+            if (bounds[i] <= bounds[i - 1]) {
+                throw new IllegalArgumentException("Amount band bounds must be strictly ascending");
+            }
+        }
+        this.bandUpperBounds = bounds;
+        this.index = new DecisionIndex(this.bandUpperBounds, List.of());
+    }
+
+    /**
+     * Workflows equivalent to the built-in flows: USD payments run domestic-rtp,
+     * USD payments above 50,000 run high-value-review, and every other currency
+     * runs cross-border-sample.
+     */
+    public static WorkflowRegistry standard() {
+        WorkflowRegistry registry = new WorkflowRegistry(50000.0);
+        registry.register(ANY, ANY, ANY_BAND, ANY,
+                new WorkflowDefinition("cross-border", FlowPlanRegistry.CROSS_BORDER_FLOW));
+        registry.register(ANY, "USD", ANY_BAND, ANY,
+                new WorkflowDefinition("domestic", FlowPlanRegistry.DOMESTIC_FLOW));
+        registry.register(ANY, "USD", 1, ANY,
+                new WorkflowDefinition("domestic-high-value", FlowPlanRegistry.HIGH_VALUE_FLOW));
+        return registry;
+    }
+
+    /**
+     * A registry that sends every payment to the same workflow.
+     */
+    public static WorkflowRegistry catchAll(WorkflowDefinition definition) {
+        WorkflowRegistry registry = new WorkflowRegistry();
+        registry.register(ANY, ANY, ANY_BAND, ANY, definition);
+        return registry;
+    }
+
+    /**
+     * Adds a rule and rebuilds the decision index. When several rules match the
+     * same payment, the one with the most non-wildcard dimensions wins; among
+     * equally specific rules the one registered last wins.
+     */
+    public synchronized WorkflowRegistry register(String scheme, String currency, int amountBand,
+                                                  String channel, WorkflowDefinition definition) {
+        if (amountBand < ANY_BAND || amountBand > bandUpperBounds.length) {
+            throw new IllegalArgumentException("Unknown amount band " + amountBand);
+        }
+        rules.add(new Rule(Objects.requireNonNull(scheme, "scheme"),
+                Objects.requireNonNull(currency, "currency"),
+                amountBand,
+                Objects.requireNonNull(channel, "channel"),
+                Objects.requireNonNull(definition, "definition")));
+        index = new DecisionIndex(bandUpperBounds, rules);
+        return this;
     }
 
-    public void put(String key, Object value) {
-        metadata.put(key, value);
+    public DecisionIndex getIndex() {
+        return index;
     }
 
-    public Optional<Object> get(String key) {
-        return Optional.ofNullable(metadata.get(key));
+    public WorkflowDefinition resolve(String scheme, String currency, double amount, String channel) {
+        DecisionIndex current = index;
+        return current.definitionAt(current.cell(scheme, currency, amount, channel));
     }
 
-    public Map<String, Object> getAll() {
-        return Collections.unmodifiableMap(metadata);
+    public WorkflowDefinition resolve(Map<String, Object> paymentData) {
+        DecisionIndex current = index;
+        return current.definitionAt(current.cell(paymentData));
     }
 
-    public void logState() {
-        System.out.println("WorkflowRegistry state:");
-        for (Map.Entry<String, Object> entry : metadata.entrySet()) {
-            System.out.println("  " + entry.getKey() + " = " + entry.getValue());
+    private static final class Rule {
+
+        final String scheme;
+        final String currency;
+        final int band;
+        final String channel;
+        final WorkflowDefinition definition;
+
+        Rule(String scheme, String currency, int band, String channel, WorkflowDefinition definition) {
+            this.scheme = scheme;
+            this.currency = currency;
+            this.band = band;
+            this.channel = channel;
+            this.definition = definition;
+        }
+
+        int specificity() {
+            return (ANY.equals(scheme) ? 0 : 1) + (ANY.equals(currency) ? 0 : 1)
+                    + (band == ANY_BAND ? 0 : 1) + (ANY.equals(channel) ? 0 : 1);
+        }
+    }
+
+    /**
+     * Immutable, precomputed decision table. Index 0 of every string dimension
+     * stands for values that no rule names explicitly.
+     */
+    public static final class DecisionIndex {
+
+        private final Map<String, Integer> schemeIds;
+        private final Map<String, Integer> currencyIds;
+        private final Map<String, Integer> channelIds;
+        private final double[] bandUpperBounds;
+        private final int currencies;
+        private final int bands;
+        private final int channels;
+        private final WorkflowDefinition[] table;
+
+        private DecisionIndex(double[] bandUpperBounds, List<Rule> rules) {
+            Map<String, Integer> schemes = new HashMap<>();
+            Map<String, Integer> currencyMap = new HashMap<>();
+            Map<String, Integer> channelMap = new HashMap<>();
+            for (Rule rule : rules) {
+                assign(schemes, rule.scheme);
+                assign(currencyMap, rule.currency);
+                assign(channelMap, rule.channel);
+            }
+            this.schemeIds = Map.copyOf(schemes);
+            this.currencyIds = Map.copyOf(currencyMap);
+            this.channelIds = Map.copyOf(channelMap);
+            this.bandUpperBounds = bandUpperBounds;
+            int schemeCount = schemes.size() + 1;
+            this.currencies = currencyMap.size() + 1;
+            this.bands = bandUpperBounds.length + 1;
+            this.channels = channelMap.size() + 1;
+            this.table = new WorkflowDefinition[schemeCount * currencies * bands * channels];
+
+            int[] winningSpecificity = new int[table.length];
+            Arrays.fill(winningSpecificity, -1);
+            for (Rule rule : rules) {
+                int specificity = rule.specificity();
+                for (int s = 0; s < schemeCount; s++) {
+                    if (!ANY.equals(rule.scheme) && s != schemes.get(rule.scheme)) {
+                        continue;
+                    }
+                    for (int c = 0; c < currencies; c++) {
+                        if (!ANY.equals(rule.currency) && c != currencyMap.get(rule.currency)) {
+                            continue;
+                        }
+                        for (int a = 0; a < bands; a++) {
+                            if (rule.band != ANY_BAND && a != rule.band) {
+                                continue;
+                            }
+                            for (int h = 0; h < channels; h++) {
+                                if (!ANY.equals(rule.channel) && h != channelMap.get(rule.channel)) {
+                                    continue;
+                                }
+                                int cell = ((s * currencies + c) * bands + a) * channels + h;
+                                if (specificity >= winningSpecificity[cell]) {
+                                    winningSpecificity[cell] = specificity;
+                                    table[cell] = rule.definition;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        private static void assign(Map<String, Integer> ids, String value) {
+            if (!ANY.equals(value) && !ids.containsKey(value)) {
+                ids.put(value, ids.size() + 1);
+            }
+        }
+
+        /**
+         * Flat table position for the given payment attributes. Null scheme and
+         * currency default to {@link #DEFAULT_SCHEME} and {@link #DEFAULT_CURRENCY}.
+         */
+        public int cell(String scheme, String currency, double amount, String channel) {
+            int s = id(schemeIds, scheme != null ? scheme : DEFAULT_SCHEME);
+            int c = id(currencyIds, currency != null ? currency : DEFAULT_CURRENCY);
+            int h = id(channelIds, channel);
+            return ((s * currencies + c) * bands + band(amount)) * channels + h;
+        }
+
+        /**
+         * Same as {@link #cell(String, String, double, String)}, reading the
+         * scheme, currency, amount and channel entries of a payment request.
+         * Amounts that are missing or not numeric fall into the lowest band.
+         */
+        public int cell(Map<String, Object> paymentData) {
+            return cell(asString(paymentData.get("scheme")),
+                    asString(paymentData.get("currency")),
+                    amountOf(paymentData.get("amount")),
+                    asString(paymentData.get("channel")));
+        }
+
+        public WorkflowDefinition definitionAt(int cell) {
+            return table[cell];
+        }
+
+        public int size() {
+            return table.length;
+        }
+
+        private int band(double amount) {
+            double[] bounds = bandUpperBounds;
+            int band = 0;
+            while (band < bounds.length && amount > bounds[band]) {
+                band++;
+            }
+            return band;
+        }
+
+        private static int id(Map<String, Integer> ids, String value) {
+            if (value == null) {
+                return 0;
+            }
+            Integer id = ids.get(value);
+            if (id == null) {
+                String upper = value.toUpperCase(Locale.ROOT);
+                id = upper.equals(value) ? null : ids.get(upper);
+            }
+            return id != null ? id : 0;
+        }
+
+        private static String asString(Object value) {
+            return value != null ? value.toString() : null;
+        }
+
+        private static double amountOf(Object value) {
+            if (value instanceof String && AmountText.isDecimal((String) value)) {
+                return Double.parseDouble((String) value);
+            }
+            return 0d;
         }
     }
 }
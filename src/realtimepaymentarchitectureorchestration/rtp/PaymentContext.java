@@ -0,0 +1,97 @@
+package rtp;
+
+/**
+ * PaymentContext
+ *
+ * Attributes, audit trail, errors, warnings and flags of one payment as it
+ * passes through the RTP flows, shared by every RTP component. The audit
+ * trail is synchronized because a hedged downstream call may write to it from
+ * two threads.
+ */
+public class PaymentContext {
+
+    private final java.util.Map<String, Object> attributes = new java.util.HashMap<>();
+    private final java.util.List<String> auditTrail =
+            java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+    private final java.util.Map<String, java.util.List<String>> errors = new java.util.HashMap<>();
+    private final java.util.Map<String, java.util.List<String>> warnings = new java.util.HashMap<>();
+    private final java.util.Set<String> flags = new java.util.HashSet<>();
+    private String transactionId;
+    private boolean hasDeadline;
+    private long deadlineNanos;
+
+    public java.util.Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    public java.util.List<String> getAuditTrail() {
+        return auditTrail;
+    }
+
+    public void addError(String code, String detail) {
+        errors.computeIfAbsent(code, k -> new java.util.ArrayList<>()).add(detail);
+    }
+
+    public void addWarning(String code, String detail) {
+        warnings.computeIfAbsent(code, k -> new java.util.ArrayList<>()).add(detail);
+    }
+
+    public void addFlag(String flag) {
+        flags.add(flag);
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    public java.util.Map<String, java.util.List<String>> getErrors() {
+        return errors;
+    }
+
+    public java.util.Map<String, java.util.List<String>> getWarnings() {
+        return warnings;
+    }
+
+    public java.util.Set<String> getFlags() {
+        return flags;
+    }
+
+    public String getTransactionId() {
+        return transactionId;
+    }
+
+    public void setTransactionId(String txId) {
+        this.transactionId = txId;
+    }
+
+    /**
+     * Sets the absolute network response deadline, in System.nanoTime() units.
+     */
+    public void setDeadlineNanos(long deadlineNanos) {
+        this.hasDeadline = true;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public boolean hasDeadline() {
+        return hasDeadline;
+    }
+
+    public long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+
+    /**
+     * Time left before the deadline, or Long.MAX_VALUE when none is set.
+     */
+    public long getRemainingNanos() {
+        return hasDeadline ? deadlineNanos - System.nanoTime() : Long.MAX_VALUE;
+    }
+
+    public boolean isPastDeadline() {
+        return getRemainingNanos() <= 0;
+    }
+
+    public boolean hasBudgetFor(long nanos) {
+        return getRemainingNanos() > nanos;
+    }
+}
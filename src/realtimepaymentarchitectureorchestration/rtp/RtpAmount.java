@@ -0,0 +1,227 @@
+package rtp;
+
+/**
+ * RtpAmount
+ *
+ * Fixed-point payment amounts packed into a single long, so the RTP flows can
+ * parse, compare and classify amounts without allocating. The high 59 bits
+ * hold the unscaled value and the low 5 bits hold the exponent, the number of
+ * decimal places as written: "125.00" is 12500 at exponent 2,
+ * "125" is 125 at exponent 0. Unscaled values are limited to 17 digits and
+ * exponents to 18, which covers every real payment amount.
+ * <p>
+ * {@link #parse} handles plain decimals in a single pass over the ASCII
+ * characters. Anything else that BigDecimal accepts, such as exponent
+ * notation or more than 17 digits, falls back to BigDecimal once and is
+ * packed if it fits.
+ */
+public final class RtpAmount {
+
+/**
+ * Returned by {@link #parse} for text that is not an amount or does not fit.
+ */
+public static final long INVALID = Long.MIN_VALUE;
+
+/**
+ * Decimal places of the minor unit of every supported RTP currency.
+ */
+public static final int MINOR_UNIT_EXPONENT = 2;
+
+private static final int EXPONENT_BITS = 5;
+private static final long EXPONENT_MASK = (1L << EXPONENT_BITS) - 1;
+private static final int MAX_EXPONENT = 18;
+private static final int MAX_FAST_DIGITS = 17;
+private static final long MAX_UNSCALED = (1L << (Long.SIZE - EXPONENT_BITS - 1)) - 1;
+
+private static final long[] POWERS_OF_TEN = new long[MAX_EXPONENT + 1];
+
+static {
+    POWERS_OF_TEN[0] = 1L;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+        POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10L;
+    }
+}
+
+private RtpAmount() {}
+
+/**
+ * Packs an unscaled value and exponent, for example {@code of(1_000_000, 0)}
+ * for one million or {@code of(12500, 2)} for 125.00.
+ */
+public static long of(long unscaled, int exponent) {
+    if (exponent < 0 || exponent > MAX_EXPONENT) {
+        throw new IllegalArgumentException("exponent must be between 0 and " + MAX_EXPONENT);
+    }
+    if (unscaled > MAX_UNSCALED || unscaled < -MAX_UNSCALED) {
+        throw new IllegalArgumentException("unscaled value out of range: " + unscaled);
+    }
+    return (unscaled << EXPONENT_BITS) | exponent;
+}
+
+/**
+ * Parses an amount such as "125.00", "-3.5" or "+10". Returns {@link #INVALID}
+ * for text BigDecimal would reject and for amounts too large or too precise
+ * to pack.
+ */
+public static long parse(String text) {
+    int length = text.length();
+    int i = 0;
+    boolean negative = false;
+    if (length > 0) {
+        char first = text.charAt(0);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+        }
+    }
+    long unscaled = 0L;
+    boolean anyDigit = false;
+    int digits = 0;
+    int exponent = -1;
+    for (; i < length; i++) {
+        char c = text.charAt(i);
+        if (c >= '0' && c <= '9') {
+            anyDigit = true;
+            if (unscaled != 0L || c != '0') {
+                if (++digits > MAX_FAST_DIGITS) {
+                    return parseSlow(text);
+                }
+            }
+            unscaled = unscaled * 10L + (c - '0');
+            if (exponent >= 0) {
+                exponent++;
+            }
+        } else if (c == '.' && exponent < 0) {
+            exponent = 0;
+        } else {
+            return parseSlow(text);
+        }
+    }
+    if (!anyDigit) {
+        return INVALID;
+    }
+    exponent = Math.max(exponent, 0);
+    if (exponent > MAX_EXPONENT) {
+        return parseSlow(text);
+    }
+    return ((negative ? -unscaled : unscaled) << EXPONENT_BITS) | exponent;
+}
+
+private static long parseSlow(String text) {
+    java.math.BigDecimal value;
+    try {
+        value = new java.math.BigDecimal(text);
+    } catch (NumberFormatException ex) {
+        return INVALID;
+    }
+    if (value.precision() - value.scale() > MAX_FAST_DIGITS) {
+        return INVALID;
+    }
+    if (value.scale() < 0) {
+        value = value.setScale(0);
+    }
+    if (value.scale() > MAX_EXPONENT || value.unscaledValue().bitLength() > Long.SIZE - EXPONENT_BITS - 1) {
+        return INVALID;
+    }
+    return (value.unscaledValue().longValue() << EXPONENT_BITS) | value.scale();
+}
+
+/**
+ * The value in units of the last written decimal place.
+ */
+public static long unscaled(long amount) {
+    return amount >> EXPONENT_BITS;
+}
+
+/**
+ * Number of decimal places as written.
+ */
+public static int exponent(long amount) {
+    return (int) (amount & EXPONENT_MASK);
+}
+
+public static int signum(long amount) {
+    return Long.signum(unscaled(amount));
+}
+
+/**
+ * Compares two amounts by value, so 10 and 10.00 are equal.
+ */
+public static int compare(long a, long b) {
+    long ua = unscaled(a);
+    long ub = unscaled(b);
+    int ea = exponent(a);
+    int eb = exponent(b);
+    if (ea == eb) {
+        return Long.compare(ua, ub);
+    }
+    if (ea < eb) {
+        return compareRescaled(ua, eb - ea, ub);
+    }
+    return -compareRescaled(ub, ea - eb, ua);
+}
+
+/**
+ * Compares {@code value * 10^shift} with {@code other}, treating overflow as
+ * a magnitude larger than any long.
+ */
+private static int compareRescaled(long value, int shift, long other) {
+    long power = POWERS_OF_TEN[shift];
+    if (value > Long.MAX_VALUE / power || value < Long.MIN_VALUE / power) {
+        return Long.signum(value);
+    }
+    return Long.compare(value * power, other);
+}
+
+/**
+ * The same value with trailing fractional zeros removed, so amounts that
+ * compare equal also pack equal: "10.50" becomes "10.5" and "10.00" becomes
+ * "10".
+ */
+public static long stripTrailingZeros(long amount) {
+    long unscaled = unscaled(amount);
+    int exponent = exponent(amount);
+    while (exponent > 0 && unscaled % 10L == 0L) {
+        unscaled /= 10L;
+        exponent--;
+    }
+    return (unscaled << EXPONENT_BITS) | exponent;
+}
+
+/**
+ * Whether the amount is written with more decimal places than the currency's
+ * minor unit, such as "10.005" for a currency with exponent 2.
+ */
+public static boolean hasSubMinorDigits(long amount, int currencyExponent) {
+    return exponent(amount) > currencyExponent;
+}
+
+/**
+ * The amount as written, without exponent notation, like
+ * BigDecimal.toPlainString.
+ */
+public static String toPlainString(long amount) {
+    long unscaled = unscaled(amount);
+    int exponent = exponent(amount);
+    String digits = Long.toString(Math.abs(unscaled));
+    if (exponent == 0) {
+        return unscaled < 0 ? "-" + digits : digits;
+    }
+    StringBuilder text = new StringBuilder(digits.length() + exponent + 3);
+    if (unscaled < 0) {
+        text.append('-');
+    }
+    int whole = digits.length() - exponent;
+    if (whole <= 0) {
+        text.append("0.");
+        for (int i = whole; i < 0; i++) {
+            text.append('0');
+        }
+        text.append(digits);
+    } else {
+        text.append(digits, 0, whole).append('.').append(digits, whole, digits.length());
+    }
+    return text.toString();
+}
+
+}
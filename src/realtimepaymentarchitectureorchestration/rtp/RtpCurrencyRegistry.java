@@ -0,0 +1,176 @@
+package rtp;
+
+/**
+ * RtpCurrencyRegistry
+ *
+ * Maps ISO 4217 currency codes to small integer ids and holds, per id, the
+ * minor-unit exponent and whether the RTP flows support the currency. A flow
+ * resolves its currency code to an id once; after that the supported check is
+ * a bit test, and RtpRoutingTableManager indexes its routes by the same id.
+ * <p>
+ * Codes are indexed directly by their three letters, so resolving one neither
+ * hashes nor allocates. Id 0 stands for every code that is not registered.
+ * Registration is copy-on-write: readers see a consistent immutable snapshot,
+ * and new currencies can be added at runtime without touching the flows.
+ * Ids are never reused or removed.
+ */
+public final class RtpCurrencyRegistry {
+
+/**
+ * Id of every unregistered or malformed currency code.
+ */
+public static final int UNKNOWN = 0;
+
+private static final int LETTERS = 26;
+private static final int CODE_SPACE = LETTERS * LETTERS * LETTERS;
+private static final int MAX_CURRENCIES = Short.MAX_VALUE;
+
+private static final RtpCurrencyRegistry STANDARD = new RtpCurrencyRegistry()
+        .register("USD", 2, true)
+        .register("EUR", 2, true)
+        .register("GBP", 2, true)
+        .register("INR", 2, true);
+
+private volatile Table table = new Table();
+
+/**
+ * The registry used by the standard RTP flow hooks: USD, EUR, GBP and INR.
+ */
+public static RtpCurrencyRegistry standard() {
+    return STANDARD;
+}
+
+/**
+ * Registers a currency, or updates it if already registered, keeping its id.
+ *
+ * @param code       ISO 4217 code, three upper-case letters
+ * @param exponent   decimal places of the minor unit
+ * @param supported  whether the RTP flows accept the currency without warning
+ */
+public synchronized RtpCurrencyRegistry register(String code, int exponent, boolean supported) {
+    int index = indexOf(code);
+    if (index < 0) {
+        throw new IllegalArgumentException("Not an ISO 4217 currency code: " + code);
+    }
+    if (exponent < 0 || exponent > 18) {
+        throw new IllegalArgumentException("exponent must be between 0 and 18");
+    }
+    Table current = table;
+    int id = current.ids[index];
+    Table next;
+    if (id == UNKNOWN) {
+        if (current.size == MAX_CURRENCIES) {
+            throw new IllegalStateException("Too many currencies registered");
+        }
+        id = current.size;
+        next = current.grow(code);
+        next.ids[index] = (short) id;
+    } else {
+        next = current.copy();
+    }
+    next.exponents[id] = exponent;
+    if (supported) {
+        next.supported[id >>> 6] |= 1L << id;
+    } else {
+        next.supported[id >>> 6] &= ~(1L << id);
+    }
+    table = next;
+    return this;
+}
+
+/**
+ * The id of a currency code, or {@link #UNKNOWN}.
+ */
+public int idOf(String code) {
+    int index = indexOf(code);
+    return index < 0 ? UNKNOWN : table.ids[index];
+}
+
+public boolean isSupported(int currencyId) {
+    long[] supported = table.supported;
+    int word = currencyId >>> 6;
+    return word < supported.length && (supported[word] & (1L << currencyId)) != 0;
+}
+
+/**
+ * Minor-unit exponent of a currency; unknown currencies use two decimal places.
+ */
+public int exponentOf(int currencyId) {
+    Table current = table;
+    return currencyId < current.size ? current.exponents[currencyId] : RtpAmount.MINOR_UNIT_EXPONENT;
+}
+
+/**
+ * Number of ids handed out so far, including {@link #UNKNOWN}.
+ */
+public int size() {
+    return table.size;
+}
+
+public String codeOf(int currencyId) {
+    Table current = table;
+    return currencyId > UNKNOWN && currencyId < current.size ? current.codes[currencyId] : null;
+}
+
+/**
+ * Position of a code in the direct index, or -1 if it is not three upper-case
+ * ASCII letters.
+ */
+private static int indexOf(String code) {
+    if (code == null || code.length() != 3) {
+        return -1;
+    }
+    int index = 0;
+    for (int i = 0; i < 3; i++) {
+        int letter = code.charAt(i) - 'A';
+        if (letter < 0 || letter >= LETTERS) {
+            return -1;
+        }
+        index = index * LETTERS + letter;
+    }
+    return index;
+}
+
+/**
+ * One immutable snapshot of the registry. Entry 0 is the unknown currency.
+ */
+private static final class Table {
+
+    final short[] ids;
+    final int size;
+    final String[] codes;
+    final int[] exponents;
+    final long[] supported;
+
+    Table() {
+        this(new short[CODE_SPACE], 1);
+        exponents[UNKNOWN] = RtpAmount.MINOR_UNIT_EXPONENT;
+    }
+
+    private Table(short[] ids, int size) {
+        this.ids = ids;
+        this.size = size;
+        this.codes = new String[size];
+        this.exponents = new int[size];
+        this.supported = new long[(size + 63) >>> 6];
+    }
+
+    Table copy() {
+        return copyTo(new Table(ids, size));
+    }
+
+    Table grow(String code) {
+        Table next = copyTo(new Table(ids.clone(), size + 1));
+        next.codes[size] = code;
+        return next;
+    }
+
+    private Table copyTo(Table next) {
+        System.arraycopy(codes, 0, next.codes, 0, size);
+        System.arraycopy(exponents, 0, next.exponents, 0, size);
+        System.arraycopy(supported, 0, next.supported, 0, supported.length);
+        return next;
+    }
+}
+
+}
@@ -0,0 +1,408 @@
+package rtp;
+
+/**
+ * RtpDuplicateIndex
+ *
+ * Remembers payment keys for a sliding window and answers whether a key was
+ * seen before, at tens of millions of keys per window. Keys are reduced to a
+ * 128-bit fingerprint, so the index is exact up to fingerprint collisions,
+ * which at 128 bits do not happen in practice.
+ * <p>
+ * The window is split into generations, each covering window / generations of
+ * time. Every generation has two tiers: a Bloom filter on the heap, which
+ * answers "definitely new" for almost every fresh key without touching the
+ * second tier, and an exact open-addressing set of fingerprints in off-heap
+ * memory, which confirms or refutes what the filter reports. A key is checked
+ * against the older generations through both tiers and is recorded in the
+ * newest generation with one compare-and-set, so two concurrent copies of the
+ * same payment cannot both pass. A key is remembered for at least the
+ * window and at most one generation longer.
+ * <p>
+ * Memory follows from the expected keys per window and the false-positive
+ * rate of the filters: each generation's filter is sized for its share of the
+ * keys at that rate and its exact set is kept below three-quarters full. If
+ * more keys arrive than expected, the newest generation fills up and rotates
+ * early, shortening the window, and {@link #getEarlyRotations()} counts it.
+ * <p>
+ * Generations are stamped with their start time and lookups stop at the
+ * first one that has aged out, so a key expires on time even when the index
+ * sat idle across several generations and rotated only once.
+ * <p>
+ * Rotation never pauses lookups. The first caller to notice that a
+ * generation has expired swaps in a spare, already-cleared generation with
+ * one volatile write, and the expired generation is cleared on a background
+ * thread to become the next spare.
+ * <p>
+ * Before the swap, the outgoing newest generation is sealed and the rotating
+ * caller waits for adds already inside it to finish. An add that finds its
+ * generation sealed starts over against the new generations. So every key
+ * was either recorded before the new generations were published, and is
+ * found by callers that use them, or is recorded in the new newest
+ * generation itself. Two copies of a payment cannot pass on either side of
+ * a rotation.
+ */
+public final class RtpDuplicateIndex {
+
+private static final java.lang.invoke.VarHandle OFF_HEAP_LONGS =
+        java.lang.invoke.MethodHandles.byteBufferViewVarHandle(long[].class, java.nio.ByteOrder.nativeOrder());
+private static final java.lang.invoke.VarHandle BLOOM_WORDS =
+        java.lang.invoke.MethodHandles.arrayElementVarHandle(long[].class);
+
+private static final int ENTRY_BYTES = 16;
+private static final double MAX_LOAD = 0.75d;
+
+private static final java.util.concurrent.ExecutorService CLEANER =
+        java.util.concurrent.Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "rtp-duplicate-index-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+private final long generationMillis;
+private final int maxKeysPerGeneration;
+private final int bloomHashes;
+private final int bloomBitsLog2;
+private final int exactCapacity;
+private final java.util.function.LongSupplier clock;
+private final java.util.concurrent.atomic.AtomicBoolean rotating = new java.util.concurrent.atomic.AtomicBoolean();
+private final java.util.concurrent.atomic.AtomicLong lookups = new java.util.concurrent.atomic.AtomicLong();
+private final java.util.concurrent.atomic.AtomicLong duplicates = new java.util.concurrent.atomic.AtomicLong();
+private final java.util.concurrent.atomic.AtomicLong filterFalsePositives = new java.util.concurrent.atomic.AtomicLong();
+private final java.util.concurrent.atomic.AtomicLong earlyRotations = new java.util.concurrent.atomic.AtomicLong();
+
+private volatile Generation[] live;
+private volatile long newestStartMillis;
+private volatile Generation spare;
+
+/**
+ * @param windowMillis           how long a key is remembered
+ * @param generations            how many slices the window is split into
+ * @param expectedKeysPerWindow  keys expected within one window
+ * @param falsePositiveRate      Bloom filter false-positive rate, between 0 and 1
+ */
+public RtpDuplicateIndex(long windowMillis, int generations, long expectedKeysPerWindow, double falsePositiveRate) {
+    this(windowMillis, generations, expectedKeysPerWindow, falsePositiveRate, System::currentTimeMillis);
+}
+
+public RtpDuplicateIndex(long windowMillis, int generations, long expectedKeysPerWindow, double falsePositiveRate,
+                         java.util.function.LongSupplier clock) {
+    if (windowMillis <= 0 || generations <= 0 || expectedKeysPerWindow <= 0) {
+        throw new IllegalArgumentException("windowMillis, generations and expectedKeysPerWindow must be positive");
+    }
+    if (!(falsePositiveRate > 0d && falsePositiveRate < 1d)) {
+        throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+    }
+    long perGeneration = (expectedKeysPerWindow + generations - 1) / generations;
+    long capacity = Long.highestOneBit((long) Math.ceil(perGeneration / MAX_LOAD)) << 1;
+    if (capacity * ENTRY_BYTES > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Too many keys per generation: " + perGeneration);
+    }
+    double ln2 = Math.log(2d);
+    long bloomBits = (long) Math.ceil(-perGeneration * Math.log(falsePositiveRate) / (ln2 * ln2));
+    this.bloomBitsLog2 = Math.max(6, 64 - Long.numberOfLeadingZeros(bloomBits - 1));
+    if (bloomBitsLog2 > 37) {
+        throw new IllegalArgumentException("Bloom filter too large for falsePositiveRate " + falsePositiveRate);
+    }
+    this.generationMillis = Math.max(1L, windowMillis / generations);
+    this.maxKeysPerGeneration = (int) (capacity * MAX_LOAD);
+    this.exactCapacity = (int) capacity;
+    this.bloomHashes = (int) Math.max(1L, Math.min(16L, Math.round((double) (1L << bloomBitsLog2) / perGeneration * ln2)));
+    this.clock = java.util.Objects.requireNonNull(clock, "clock");
+
+    // One more live generation than the window needs, so a key survives a full window.
+    long now = clock.getAsLong();
+    Generation[] generationsArray = new Generation[generations + 1];
+    for (int i = 0; i < generationsArray.length; i++) {
+        generationsArray[i] = new Generation();
+        generationsArray[i].startMillis = now;
+    }
+    this.live = generationsArray;
+    this.spare = new Generation();
+    this.newestStartMillis = now;
+}
+
+/**
+ * Records the payment key and returns whether it was already seen within the
+ * window. The amount is a packed RtpAmount and is compared by value, so
+ * "10" and "10.00" are the same amount.
+ */
+public boolean checkAndRecord(String debtor, String creditor, long amount, String endToEndId) {
+    long h1 = 0x9E3779B97F4A7C15L;
+    long h2 = 0xC2B2AE3D27D4EB4FL;
+    h1 = hash(h1, debtor, 0x100000001B3L);
+    h2 = hash(h2, debtor, 0xFF51AFD7ED558CCDL);
+    h1 = hash(h1, creditor, 0x100000001B3L);
+    h2 = hash(h2, creditor, 0xFF51AFD7ED558CCDL);
+    long normalized = RtpAmount.stripTrailingZeros(amount);
+    h1 = (h1 ^ normalized) * 0x100000001B3L;
+    h2 = (h2 ^ normalized) * 0xFF51AFD7ED558CCDL;
+    h1 = hash(h1, endToEndId, 0x100000001B3L);
+    h2 = hash(h2, endToEndId, 0xFF51AFD7ED558CCDL);
+    long first = mix(h1);
+    long second = mix(h2 ^ h1);
+    return checkAndRecord(first == 0L ? 1L : first, second == 0L ? 1L : second);
+}
+
+private boolean checkAndRecord(long h1, long h2) {
+    lookups.incrementAndGet();
+    long now = clock.getAsLong();
+    if (now - newestStartMillis >= generationMillis) {
+        rotate(now, null);
+    }
+    while (true) {
+        Generation[] generations = live;
+        long expiredBefore = now - generations.length * generationMillis;
+        for (int i = 1; i < generations.length; i++) {
+            Generation generation = generations[i];
+            if (generation.startMillis <= expiredBefore) {
+                break;
+            }
+            if (generation.mightContain(h1, h2)) {
+                if (generation.contains(h1, h2)) {
+                    duplicates.incrementAndGet();
+                    return true;
+                }
+                filterFalsePositives.incrementAndGet();
+            }
+        }
+        int added = generations[0].add(h1, h2);
+        if (added > 0) {
+            return false;
+        }
+        if (added == 0) {
+            duplicates.incrementAndGet();
+            return true;
+        }
+        // Full or sealed: rotate if nobody has, then start over on the new generations.
+        rotate(now, generations[0]);
+        Thread.onSpinWait();
+    }
+}
+
+/**
+ * Number of keys checked so far.
+ */
+public long getLookups() {
+    return lookups.get();
+}
+
+/**
+ * Number of keys reported as duplicates.
+ */
+public long getDuplicates() {
+    return duplicates.get();
+}
+
+/**
+ * Number of times a Bloom filter reported a key that its exact set refuted.
+ */
+public long getFilterFalsePositives() {
+    return filterFalsePositives.get();
+}
+
+/**
+ * Number of rotations forced by a full generation rather than by time.
+ */
+public long getEarlyRotations() {
+    return earlyRotations.get();
+}
+
+/**
+ * Off-heap bytes of the exact sets, including the spare generation.
+ */
+public long getOffHeapBytes() {
+    return (long) (live.length + 1) * exactCapacity * ENTRY_BYTES;
+}
+
+/**
+ * Heap bytes of the Bloom filters, including the spare generation.
+ */
+public long getBloomBytes() {
+    return (long) (live.length + 1) * (1L << bloomBitsLog2) / Byte.SIZE;
+}
+
+/**
+ * Starts a new generation, either because the newest one has expired or,
+ * when {@code full} is given, because that generation filled up. Callers
+ * that lose the race to rotate carry on with the current generations.
+ */
+private void rotate(long now, Generation full) {
+    if (!rotating.compareAndSet(false, true)) {
+        return;
+    }
+    try {
+        if (full == null ? now - newestStartMillis < generationMillis : live[0] != full) {
+            return;
+        }
+        Generation fresh = spare;
+        spare = null;
+        if (fresh == null) {
+            // The cleaner has not finished; only possible with very short generations.
+            fresh = new Generation();
+        }
+        fresh.startMillis = now;
+        Generation[] current = live;
+        current[0].seal();
+        Generation[] next = new Generation[current.length];
+        next[0] = fresh;
+        System.arraycopy(current, 0, next, 1, current.length - 1);
+        Generation expired = current[current.length - 1];
+        newestStartMillis = now;
+        live = next;
+        if (full != null) {
+            earlyRotations.incrementAndGet();
+        }
+        CLEANER.execute(() -> {
+            expired.clear();
+            spare = expired;
+        });
+    } finally {
+        rotating.set(false);
+    }
+}
+
+private static long hash(long h, String text, long prime) {
+    if (text == null) {
+        return (h ^ 0xFFFFL) * prime;
+    }
+    for (int i = 0, n = text.length(); i < n; i++) {
+        h = (h ^ text.charAt(i)) * prime;
+    }
+    // The length separates fields, so ("ab", "c") and ("a", "bc") differ.
+    return (h ^ (0x10000L + text.length())) * prime;
+}
+
+private static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return h;
+}
+
+/**
+ * One slice of the window: a Bloom filter and an exact off-heap set of
+ * 128-bit fingerprints. Fingerprint halves are never zero, so a zero first
+ * half marks an empty slot.
+ */
+private final class Generation {
+
+    private final long[] bloom = new long[1 << (bloomBitsLog2 - 6)];
+    private final java.nio.ByteBuffer exact = java.nio.ByteBuffer.allocateDirect(exactCapacity * ENTRY_BYTES)
+            .order(java.nio.ByteOrder.nativeOrder());
+    private final java.util.concurrent.atomic.AtomicInteger size = new java.util.concurrent.atomic.AtomicInteger();
+    // Adds in progress; the sign bit is set once the generation is sealed.
+    private final java.util.concurrent.atomic.AtomicInteger writers = new java.util.concurrent.atomic.AtomicInteger();
+    // Written before the generation is published through the volatile live array.
+    long startMillis;
+
+    boolean mightContain(long h1, long h2) {
+        long mask = (1L << bloomBitsLog2) - 1;
+        for (int i = 0; i < bloomHashes; i++) {
+            long bit = (h1 + i * (h2 | 1L)) & mask;
+            if (((long) BLOOM_WORDS.getOpaque(bloom, (int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean contains(long h1, long h2) {
+        int mask = exactCapacity - 1;
+        for (int probe = 0, slot = (int) h1 & mask; probe < exactCapacity; probe++, slot = (slot + 1) & mask) {
+            long first = (long) OFF_HEAP_LONGS.getAcquire(exact, slot * ENTRY_BYTES);
+            if (first == 0L) {
+                return false;
+            }
+            if (first == h1 && secondHalf(slot) == h2) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns 1 if the key was added, 0 if it was already present and -1 if
+     * the generation is full or sealed.
+     */
+    int add(long h1, long h2) {
+        int current;
+        do {
+            current = writers.get();
+            if (current < 0) {
+                return -1;
+            }
+        } while (!writers.compareAndSet(current, current + 1));
+        try {
+            return insert(h1, h2);
+        } finally {
+            writers.decrementAndGet();
+        }
+    }
+
+    private int insert(long h1, long h2) {
+        long mask = (1L << bloomBitsLog2) - 1;
+        for (int i = 0; i < bloomHashes; i++) {
+            long bit = (h1 + i * (h2 | 1L)) & mask;
+            BLOOM_WORDS.getAndBitwiseOr(bloom, (int) (bit >>> 6), 1L << bit);
+        }
+        int slotMask = exactCapacity - 1;
+        for (int probe = 0, slot = (int) h1 & slotMask; probe < exactCapacity; probe++, slot = (slot + 1) & slotMask) {
+            int offset = slot * ENTRY_BYTES;
+            long first = (long) OFF_HEAP_LONGS.getAcquire(exact, offset);
+            if (first == 0L) {
+                if (size.get() >= maxKeysPerGeneration) {
+                    return -1;
+                }
+                if (OFF_HEAP_LONGS.compareAndSet(exact, offset, 0L, h1)) {
+                    OFF_HEAP_LONGS.setRelease(exact, offset + Long.BYTES, h2);
+                    size.incrementAndGet();
+                    return 1;
+                }
+                first = (long) OFF_HEAP_LONGS.getAcquire(exact, offset);
+            }
+            if (first == h1 && secondHalf(slot) == h2) {
+                return 0;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The second half of a slot whose first half is set. A writer publishes
+     * the second half right after claiming the slot, so this only spins for
+     * that instant.
+     */
+    private long secondHalf(int slot) {
+        long second;
+        while ((second = (long) OFF_HEAP_LONGS.getAcquire(exact, slot * ENTRY_BYTES + Long.BYTES)) == 0L) {
+            Thread.onSpinWait();
+        }
+        return second;
+    }
+
+    /**
+     * Refuses further adds and waits for the adds in progress to finish.
+     */
+    void seal() {
+        int current;
+        do {
+            current = writers.get();
+        } while (!writers.compareAndSet(current, current | Integer.MIN_VALUE));
+        while (writers.get() != Integer.MIN_VALUE) {
+            Thread.onSpinWait();
+        }
+    }
+
+    void clear() {
+        java.util.Arrays.fill(bloom, 0L);
+        for (int offset = 0, end = exactCapacity * ENTRY_BYTES; offset < end; offset += Long.BYTES) {
+            exact.putLong(offset, 0L);
+        }
+        size.set(0);
+        writers.set(0);
+    }
+}
+
+}
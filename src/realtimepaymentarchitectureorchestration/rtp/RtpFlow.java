@@ -0,0 +1,44 @@
+package rtp;
+
+/**
+ * RtpFlow
+ *
+ * The eight processing flows every RTP component exposes. Each flow runs the
+ * same RtpFlowKernel code path; the flow only names the audit entries and
+ * idempotency keys, and marks notification as optional work that is skipped
+ * when the payment deadline is close.
+ */
+public enum RtpFlow {
+
+VALIDATE_AND_ROUTE_PAYMENT("validateAndRoutePayment", false),
+ENRICH_AND_NORMALIZE_INSTRUCTION("enrichAndNormalizeInstruction", false),
+PERFORM_RISK_AND_COMPLIANCE_CHECKS("performRiskAndComplianceChecks", false),
+EXECUTE_DOWNSTREAM_POSTING("executeDownstreamPosting", false),
+HANDLE_ASYNC_NOTIFICATION_FLOW("handleAsyncNotificationFlow", true),
+SIMULATE_EXCEPTION_SCENARIO("simulateExceptionScenario", false),
+RUN_END_TO_END_SIMULATION("runEndToEndSimulation", false),
+APPLY_OPERATIONAL_METRICS("applyOperationalMetrics", false);
+
+private final String flowName;
+private final boolean optional;
+private final String idempotencySuffix;
+
+RtpFlow(String flowName, boolean optional) {
+    this.flowName = flowName;
+    this.optional = optional;
+    this.idempotencySuffix = ":" + flowName;
+}
+
+public String getFlowName() {
+    return flowName;
+}
+
+public boolean isOptional() {
+    return optional;
+}
+
+String idempotencyKey(String txId) {
+    return txId + idempotencySuffix;
+}
+
+}
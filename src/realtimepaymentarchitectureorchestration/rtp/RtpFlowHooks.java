@@ -0,0 +1,56 @@
+package rtp;
+
+/**
+ * RtpFlowHooks
+ *
+ * Per-component extension points of the shared RtpFlowKernel. Every method
+ * has the standard behaviour as its default, and components that need
+ * nothing special share {@link #STANDARD}, so the kernel's hook call sites see
+ * one receiver type and stay inlined.
+ */
+public interface RtpFlowHooks {
+
+RtpFlowHooks STANDARD = new RtpFlowHooks() { };
+
+/**
+ * Currencies the flows accept and the routes they take.
+ */
+default RtpCurrencyRegistry currencies() {
+    return RtpCurrencyRegistry.standard();
+}
+
+/**
+ * Component-specific validation, run after the standard checks and before
+ * the flow stops on errors. The amount is packed as described in RtpAmount.
+ * An error added here stops the flow before routing.
+ */
+default void validate(PaymentContext context, long amount) {
+}
+
+/**
+ * Chooses the clearing route for a validated payment. The currency is a
+ * registry id, the amount is packed as described in RtpAmount, and the
+ * creditor participant may be null.
+ */
+default String route(int currencyId, long amount, String participant) {
+    return RtpRoutingDecisionEngine.standard().decideRoute(currencyId, amount, participant);
+}
+
+/**
+ * Alternate route a slow call may be hedged to, or null for none.
+ */
+default String alternateRoute(String route) {
+    return RtpAlternatePathSelector.alternateFor(route);
+}
+
+/**
+ * One downstream call to clearing. Returns whether it succeeded. A hedged
+ * call and its primary carry the same idempotency key, which must reach the
+ * clearing side so it applies at most one of them.
+ */
+default boolean downstreamCall(String route, String idempotencyKey, long amount,
+                               java.util.List<String> auditTrail) {
+    return RtpFlowKernel.simulateDownstreamCall(route, idempotencyKey, amount, auditTrail);
+}
+
+}
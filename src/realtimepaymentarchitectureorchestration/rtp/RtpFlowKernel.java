@@ -0,0 +1,181 @@
+package rtp;
+
+/**
+ * RtpFlowKernel
+ *
+ * The one implementation of the RTP processing flows. Every RTP component
+ * delegates its flows here instead of carrying its own copy, so the JIT
+ * compiles and optimizes a single hot code path rather than fifty cold ones.
+ * A flow validates the instruction, picks a route, calls downstream through
+ * the shared retry and hedging policies within the payment deadline, and
+ * records key metrics. Each attempt's hedged call is composed into the retry
+ * chain as a future, so the flow waits once for the final outcome and no
+ * retry or hedge starts after the deadline. Component validation, routing and
+ * the downstream call are RtpFlowHooks, so a component can change them without
+ * copying the flow.
+ * <p>
+ * Amounts are parsed once into RtpAmount's packed fixed-point form and every
+ * threshold is precomputed, so amount checks neither allocate nor do
+ * BigDecimal arithmetic. The currency is resolved once to an
+ * RtpCurrencyRegistry id, which drives the supported check and the
+ * routing table lookup.
+ */
+public final class RtpFlowKernel {
+
+private static final realtimepaymentarchitectureorchestration.orchestration.RetryPolicy RETRY_POLICY =
+        realtimepaymentarchitectureorchestration.orchestration.RetryPolicy.downstreamDefault();
+
+private static final realtimepaymentarchitectureorchestration.orchestration.HedgingPolicy HEDGING =
+        realtimepaymentarchitectureorchestration.orchestration.HedgingPolicy.downstreamDefault();
+
+private static final long NOTIFICATION_MIN_BUDGET_NANOS = 250_000_000L;
+
+private static final long HIGH_VALUE_REVIEW_THRESHOLD = RtpAmount.of(1_000_000L, 0);
+private static final long LARGE_VALUE_METRIC_THRESHOLD = RtpAmount.of(50_000L, 0);
+
+private static final RtpFlowKernel STANDARD = new RtpFlowKernel(RtpFlowHooks.STANDARD);
+
+private final RtpFlowHooks hooks;
+
+public RtpFlowKernel(RtpFlowHooks hooks) {
+    this.hooks = java.util.Objects.requireNonNull(hooks, "hooks");
+}
+
+/**
+ * The kernel shared by every component that uses the standard hooks.
+ */
+public static RtpFlowKernel standard() {
+    return STANDARD;
+}
+
+public void run(RtpFlow flow, PaymentContext context) {
+    java.util.Map<String, Object> attributes = context.getAttributes();
+    java.util.List<String> auditTrail = context.getAuditTrail();
+    String flowName = flow.getFlowName();
+    auditTrail.add("Starting RTP flow: " + flowName);
+
+    if (flow.isOptional() && !context.hasBudgetFor(NOTIFICATION_MIN_BUDGET_NANOS)) {
+        auditTrail.add("Skipping optional flow " + flowName + ": deadline budget too low");
+        return;
+    }
+
+    String txId = context.getTransactionId();
+    if (txId == null || txId.isBlank()) {
+        txId = java.util.UUID.randomUUID().toString();
+        context.setTransactionId(txId);
+        auditTrail.add("Generated new transaction id: " + txId);
+    }
+
+    String debtor = (String) attributes.getOrDefault("debtorAccount", "UNKNOWN");
+    String creditor = (String) attributes.getOrDefault("creditorAccount", "UNKNOWN");
+    String currency = String.valueOf(attributes.getOrDefault("currency", "USD"));
+    String amountStr = String.valueOf(attributes.getOrDefault("amount", "0.00"));
+
+    if (debtor.equals("UNKNOWN") || creditor.equals("UNKNOWN")) {
+        context.addWarning("MISSING_PARTY", debtor + "->" + creditor);
+        auditTrail.add("Missing party information for tx " + txId);
+    }
+
+    long amount = RtpAmount.parse(amountStr);
+    if (amount == RtpAmount.INVALID) {
+        context.addError("INVALID_AMOUNT_FORMAT", amountStr);
+        auditTrail.add("Invalid amount format for tx " + txId + ": " + amountStr);
+        return;
+    }
+
+    if (RtpAmount.signum(amount) <= 0) {
+        context.addError("NON_POSITIVE_AMOUNT", RtpAmount.toPlainString(amount));
+        auditTrail.add("Non-positive amount detected for tx " + txId);
+    }
+
+    RtpCurrencyRegistry currencies = hooks.currencies();
+    int currencyId = currencies.idOf(currency);
+    if (!currencies.isSupported(currencyId)) {
+        context.addWarning("UNSUPPORTED_CURRENCY", currency);
+        auditTrail.add("Unsupported currency " + currency + " for tx " + txId);
+    }
+
+    for (int i = 0; i < 5; i++) {
+        String key = "meta_" + i;
+        Object value = attributes.get(key);
+        if (value != null) {
+            auditTrail.add("Meta attribute " + key + " = " + value);
+        }
+    }
+
+    if (debtor.equals(creditor) && !debtor.equals("UNKNOWN")) {
+        context.addWarning("SAME_ACCOUNT", debtor);
+        auditTrail.add("Debtor and creditor are the same account " + debtor + " for tx " + txId);
+    }
+
+    if (RtpAmount.compare(amount, HIGH_VALUE_REVIEW_THRESHOLD) > 0) {
+        context.addFlag("HIGH_VALUE_REVIEW");
+        auditTrail.add("High value transaction flagged for tx " + txId);
+    }
+
+    hooks.validate(context, amount);
+
+    if (context.hasErrors()) {
+        auditTrail.add("Stopping " + flowName + " due to validation errors for tx " + txId);
+        return;
+    }
+
+    if (context.isPastDeadline()) {
+        context.addError("DEADLINE_EXCEEDED", txId);
+        auditTrail.add("Deadline exceeded before downstream call for tx " + txId);
+        return;
+    }
+
+    Object participant = attributes.get("creditorAgent");
+    String route = hooks.route(currencyId, amount, participant == null ? null : participant.toString());
+    auditTrail.add("Route selected for tx " + txId + ": " + route);
+
+    String alternateRoute = hooks.alternateRoute(route);
+    String idempotencyKey = flow.idempotencyKey(txId);
+    boolean success = RETRY_POLICY.compose(route, attempt -> {
+        auditTrail.add("Attempt " + attempt + " on route " + route + " for tx " + context.getTransactionId());
+        return HEDGING.executeAsync(idempotencyKey, route, alternateRoute,
+                (path, key) -> hooks.downstreamCall(path, key, amount, auditTrail), context.getRemainingNanos());
+    }, context.getRemainingNanos());
+
+    if (!success && context.isPastDeadline()) {
+        context.addError("DEADLINE_EXCEEDED", route);
+        auditTrail.add("Deadline exceeded during downstream retries for tx " + txId + " on route " + route);
+    } else if (!success) {
+        context.addError("DOWNSTREAM_FAILURE", route);
+        auditTrail.add("Downstream failure after retries for tx " + txId + " on route " + route);
+    } else {
+        auditTrail.add("Successfully completed downstream interactions for tx " + txId);
+    }
+
+    appendKeyMetrics(context, amount, currencies.exponentOf(currencyId));
+    auditTrail.add("Completed RTP flow: " + flowName + " for tx " + txId);
+}
+
+static boolean simulateDownstreamCall(String route, String idempotencyKey, long amount,
+                                      java.util.List<String> auditTrail) {
+    String plainAmount = RtpAmount.toPlainString(amount);
+    auditTrail.add("Simulating downstream call to route " + route + " for amount " + plainAmount
+            + " with idempotency key " + idempotencyKey);
+    int hash = (route + plainAmount).hashCode();
+    boolean success = Math.abs(hash % 4) != 0;
+    if (!success) {
+        auditTrail.add("Simulated downstream failure for route " + route);
+    } else {
+        auditTrail.add("Simulated downstream success for route " + route);
+    }
+    return success;
+}
+
+private static void appendKeyMetrics(PaymentContext context, long amount, int currencyExponent) {
+    java.util.List<String> auditTrail = context.getAuditTrail();
+    auditTrail.add("Recording key metrics for amount " + RtpAmount.toPlainString(amount));
+    if (RtpAmount.compare(amount, LARGE_VALUE_METRIC_THRESHOLD) > 0) {
+        context.addFlag("LARGE_VALUE_METRIC");
+    }
+    if (RtpAmount.hasSubMinorDigits(amount, currencyExponent)) {
+        context.addWarning("UNUSUAL_DECIMALS", RtpAmount.toPlainString(amount));
+    }
+}
+
+}
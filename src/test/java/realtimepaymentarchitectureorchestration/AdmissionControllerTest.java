@@ -0,0 +1,71 @@
+package realtimepaymentarchitectureorchestration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.concurrent.TimeUnit;
+
+import realtimepaymentarchitectureorchestration.observability.MetricsRegistry;
+import realtimepaymentarchitectureorchestration.orchestration.AdmissionController;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControllerTest {
+
+    @Test
+    @DisplayName("Payments beyond the limit should be rejected without blocking")
+    void tryAcquire_rejectsAtLimit() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        AdmissionController admission = new AdmissionController(4, 2, 1, 100L, metrics);
+
+        assertTrue(admission.tryAcquire());
+        assertTrue(admission.tryAcquire());
+        assertFalse(admission.tryAcquire());
+        assertEquals(1L, metrics.get("admission.rejected"));
+
+        admission.release(TimeUnit.MILLISECONDS.toNanos(1), false);
+        assertTrue(admission.tryAcquire());
+    }
+
+    @Test
+    @DisplayName("The adaptive limit should shrink on slow payments and grow on fast ones")
+    void release_adjustsLimit() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        AdmissionController admission = new AdmissionController(100, 50, 10, 100L, metrics);
+
+        assertTrue(admission.tryAcquire());
+        admission.release(TimeUnit.MILLISECONDS.toNanos(500), false);
+        assertEquals(45, admission.getLimit());
+        assertEquals(45L, metrics.get("admission.limit"));
+
+        for (int i = 0; i < 45 * 3; i++) {
+            for (int j = 0; j < 45; j++) {
+                admission.tryAcquire();
+            }
+            while (admission.getInFlight() > 0) {
+                admission.release(TimeUnit.MILLISECONDS.toNanos(1), false);
+            }
+        }
+        assertTrue(admission.getLimit() > 45);
+        assertTrue(admission.getLimit() <= 100);
+    }
+
+    @Test
+    @DisplayName("Abandoning a payment should free its slot without growing the limit")
+    void abandon_leavesLimit() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        AdmissionController admission = new AdmissionController(100, 10, 1, 100L, metrics);
+
+        for (int i = 0; i < 200; i++) {
+            for (int j = 0; j < 10; j++) {
+                assertTrue(admission.tryAcquire());
+            }
+            while (admission.getInFlight() > 0) {
+                admission.abandon();
+            }
+        }
+        assertEquals(10, admission.getLimit());
+        assertEquals(0, admission.getInFlight());
+        assertEquals(2000L, metrics.get("admission.abandoned"));
+    }
+}
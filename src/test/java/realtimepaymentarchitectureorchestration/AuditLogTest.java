@@ -0,0 +1,84 @@
+package realtimepaymentarchitectureorchestration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.List;
+
+import realtimepaymentarchitectureorchestration.orchestration.AuditLog;
+import realtimepaymentarchitectureorchestration.orchestration.OrchestrationStep;
+import realtimepaymentarchitectureorchestration.orchestration.PaymentOrchestrationContext;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuditLogTest {
+
+    private static PaymentOrchestrationContext recordSample(AuditLog.Mode mode) {
+        PaymentOrchestrationContext context = new PaymentOrchestrationContext("P1", mode);
+        context.advanceTo(OrchestrationStep.VALIDATE);
+        context.putAttribute("channel", "MOBILE");
+        context.addAudit("Manual note");
+        return context;
+    }
+
+    private static boolean anyEndsWith(List<String> lines, String suffix) {
+        for (String line : lines) {
+            if (line.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    @DisplayName("FULL mode should record creation, steps, attributes and notes")
+    void fullMode_recordsEverything() {
+        List<String> trail = recordSample(AuditLog.Mode.FULL).getAuditTrail();
+        assertEquals(4, trail.size());
+        assertTrue(trail.get(0).endsWith(" - Context created"));
+        assertTrue(anyEndsWith(trail, " - Advancing from RECEIVE_REQUEST to VALIDATE"));
+        assertTrue(anyEndsWith(trail, " - Attribute set: channel=MOBILE"));
+        assertTrue(anyEndsWith(trail, " - Manual note"));
+    }
+
+    @Test
+    @DisplayName("STEPS_ONLY mode should record creation and step transitions only")
+    void stepsOnlyMode_recordsSteps() {
+        PaymentOrchestrationContext context = recordSample(AuditLog.Mode.STEPS_ONLY);
+        List<String> trail = context.getAuditTrail();
+        assertEquals(2, trail.size());
+        assertTrue(trail.get(0).endsWith(" - Context created"));
+        assertTrue(trail.get(1).endsWith(" - Advancing from RECEIVE_REQUEST to VALIDATE"));
+        assertEquals("MOBILE", context.getAttribute("channel", String.class));
+    }
+
+    @Test
+    @DisplayName("OFF mode should record nothing")
+    void offMode_recordsNothing() {
+        PaymentOrchestrationContext context = recordSample(AuditLog.Mode.OFF);
+        assertTrue(context.getAuditTrail().isEmpty());
+        assertEquals(0, context.getAuditLog().size());
+        assertEquals(0, context.getAuditLog().getRecordedCount());
+    }
+
+    @Test
+    @DisplayName("A full ring should overwrite the oldest events and report how many were dropped")
+    void ring_overwritesOldest() {
+        PaymentOrchestrationContext context = new PaymentOrchestrationContext("P1", AuditLog.Mode.FULL);
+        int notes = AuditLog.DEFAULT_CAPACITY + 8;
+        for (int i = 0; i < notes; i++) {
+            context.addAudit("note " + i);
+        }
+        AuditLog log = context.getAuditLog();
+        int recorded = notes + 1;
+        assertEquals(recorded, log.getRecordedCount());
+        assertEquals(AuditLog.DEFAULT_CAPACITY, log.size());
+
+        List<String> trail = context.getAuditTrail();
+        int dropped = recorded - AuditLog.DEFAULT_CAPACITY;
+        assertEquals(AuditLog.DEFAULT_CAPACITY + 1, trail.size());
+        assertEquals(dropped + " earlier audit events overwritten", trail.get(0));
+        assertTrue(trail.get(1).endsWith(" - note " + (dropped - 1)));
+        assertTrue(trail.get(trail.size() - 1).endsWith(" - note " + (notes - 1)));
+    }
+}
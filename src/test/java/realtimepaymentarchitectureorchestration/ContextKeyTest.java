@@ -0,0 +1,58 @@
+package realtimepaymentarchitectureorchestration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.List;
+import java.util.Map;
+
+import realtimepaymentarchitectureorchestration.orchestration.ContextKey;
+import realtimepaymentarchitectureorchestration.orchestration.PaymentOrchestrationContext;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContextKeyTest {
+
+    @Test
+    @DisplayName("Typed keys and attribute names should address the same slot")
+    void slot_putAndGet() {
+        PaymentOrchestrationContext context = new PaymentOrchestrationContext("P1");
+        assertNull(context.get(ContextKey.ROUTE));
+
+        context.put(ContextKey.ROUTE, "INTERNAL_RT");
+        assertEquals("INTERNAL_RT", context.get(ContextKey.ROUTE));
+        assertEquals("INTERNAL_RT", context.getAttribute("route", String.class));
+
+        context.putAttribute("validated", Boolean.TRUE);
+        assertEquals(Boolean.TRUE, context.get(ContextKey.VALIDATED));
+        assertSame(ContextKey.VALIDATED, ContextKey.forName("validated"));
+    }
+
+    @Test
+    @DisplayName("Well-known attributes should reject values of the wrong type")
+    void slot_typeCheck() {
+        PaymentOrchestrationContext context = new PaymentOrchestrationContext("P1");
+        assertThrows(IllegalArgumentException.class, () -> context.putAttribute("validated", "yes"));
+        assertNull(context.get(ContextKey.VALIDATED));
+
+        context.put(ContextKey.FLOW_ID, "default");
+        assertThrows(IllegalStateException.class, () -> context.getAttribute("flowId", Integer.class));
+    }
+
+    @Test
+    @DisplayName("Unknown attribute names should fall back to the extension map")
+    void extension_fallback() {
+        PaymentOrchestrationContext context = new PaymentOrchestrationContext("P1");
+        assertNull(ContextKey.forName("merchantCategory"));
+        assertNull(context.getAttribute("merchantCategory", String.class));
+
+        context.put(ContextKey.CHANNEL, "MOBILE");
+        context.putAttribute("merchantCategory", "5411");
+        assertEquals("5411", context.getAttribute("merchantCategory", String.class));
+        assertThrows(IllegalStateException.class, () -> context.getAttribute("merchantCategory", Integer.class));
+
+        Map<String, Object> attributes = context.getAttributes();
+        assertEquals(List.of("channel", "merchantCategory"), List.copyOf(attributes.keySet()));
+        assertEquals("5411", attributes.get("merchantCategory"));
+    }
+}
@@ -0,0 +1,131 @@
+package realtimepaymentarchitectureorchestration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import realtimepaymentarchitectureorchestration.orchestration.HedgingPolicy;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HedgingPolicyTest {
+
+    @Test
+    @DisplayName("A slow call should be hedged to the alternate route, which answers first")
+    void execute_hedgesSlowRoute() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        ExecutorService calls = Executors.newCachedThreadPool();
+        try {
+            HedgingPolicy policy = new HedgingPolicy(90d, 20, 1L, 10_000L, scheduler, calls);
+            assertEquals(-1L, policy.getHedgeDelayNanos("PRIMARY"));
+            for (int i = 0; i < 40; i++) {
+                policy.recordLatency("PRIMARY", 2_000_000L);
+            }
+            assertTrue(policy.getHedgeDelayNanos("PRIMARY") >= 2_000_000L);
+
+            AtomicInteger keysSeen = new AtomicInteger();
+            boolean success = policy.execute("TX-1:post", "PRIMARY", "SECONDARY", (route, key) -> {
+                if ("TX-1:post".equals(key)) {
+                    keysSeen.incrementAndGet();
+                }
+                if ("PRIMARY".equals(route)) {
+                    try {
+                        Thread.sleep(500L);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return true;
+            });
+
+            assertTrue(success);
+            assertEquals(1L, policy.getHedgesSent());
+            assertEquals(1L, policy.getHedgesWon());
+            assertEquals(2, keysSeen.get());
+        } finally {
+            scheduler.shutdownNow();
+            calls.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Routes without enough samples or without an alternate run once, unhedged")
+    void execute_withoutHistoryDoesNotHedge() {
+        HedgingPolicy policy = HedgingPolicy.downstreamDefault();
+        AtomicInteger calls = new AtomicInteger();
+
+        assertFalse(policy.execute("TX-2:post", "COLD_ROUTE", "COLD_ROUTE_SECONDARY", (route, key) -> {
+            calls.incrementAndGet();
+            return false;
+        }));
+        assertTrue(policy.execute("TX-3:post", "COLD_ROUTE", null, (route, key) -> calls.incrementAndGet() > 0));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    @DisplayName("A hedge due after the caller's deadline should not be sent")
+    void executeAsync_noHedgePastDeadline() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        ExecutorService calls = Executors.newCachedThreadPool();
+        try {
+            HedgingPolicy policy = new HedgingPolicy(90d, 20, 1L, 10_000L, scheduler, calls);
+            for (int i = 0; i < 40; i++) {
+                policy.recordLatency("PRIMARY", 20_000_000L);
+            }
+            long remainingNanos = policy.getHedgeDelayNanos("PRIMARY") / 2;
+            AtomicInteger routesCalled = new AtomicInteger();
+
+            boolean success = policy.executeAsync("TX-4:post", "PRIMARY", "SECONDARY", (route, key) -> {
+                routesCalled.incrementAndGet();
+                return "PRIMARY".equals(route);
+            }, remainingNanos).join();
+
+            assertTrue(success);
+            assertEquals(1, routesCalled.get());
+            assertEquals(0L, policy.getHedgesSent());
+            assertEquals(1L, policy.getHedgesPastDeadline());
+        } finally {
+            scheduler.shutdownNow();
+            calls.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("The primary should run on the caller's thread, and a rejected hedge should count as not sent")
+    void executeAsync_primaryOnCallerAndRejectedHedge() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            HedgingPolicy policy = new HedgingPolicy(90d, 20, 1L, 10_000L, scheduler, task -> {
+                throw new RejectedExecutionException("hedge pool full");
+            });
+            for (int i = 0; i < 40; i++) {
+                policy.recordLatency("PRIMARY", 1_000_000L);
+            }
+            List<Thread> threads = new CopyOnWriteArrayList<>();
+
+            boolean success = policy.executeAsync("TX-5:post", "PRIMARY", "SECONDARY", (route, key) -> {
+                threads.add(Thread.currentThread());
+                try {
+                    Thread.sleep(100L);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return false;
+            }).join();
+
+            assertFalse(success);
+            assertEquals(List.of(Thread.currentThread()), threads);
+            assertEquals(0L, policy.getHedgesSent());
+            assertEquals(1L, policy.getHedgesRejected());
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+}
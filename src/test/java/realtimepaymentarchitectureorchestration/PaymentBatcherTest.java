@@ -0,0 +1,44 @@
+package realtimepaymentarchitectureorchestration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import realtimepaymentarchitectureorchestration.orchestration.OrchestrationResult;
+import realtimepaymentarchitectureorchestration.orchestration.PaymentBatcher;
+import realtimepaymentarchitectureorchestration.orchestration.PaymentOrchestrator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentBatcherTest {
+
+    @Test
+    @DisplayName("Batches should flush on size and on the delay limit")
+    void submit_flushesOnSizeAndTime() throws Exception {
+        try (PaymentOrchestrator orchestrator = new PaymentOrchestrator();
+             PaymentBatcher batcher = new PaymentBatcher(orchestrator, 4, 20L)) {
+            List<CompletableFuture<OrchestrationResult>> futures = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                Map<String, Object> payment = new HashMap<>();
+                payment.put("debtorAccount", "D" + i);
+                payment.put("creditorAccount", "22222222");
+                payment.put("amount", "10.00");
+                payment.put("currency", "USD");
+                futures.add(batcher.submit(payment));
+            }
+
+            for (int i = 0; i < 6; i++) {
+                OrchestrationResult result = futures.get(i).get(5, TimeUnit.SECONDS);
+                assertEquals(OrchestrationResult.Status.SUCCESS, result.getStatus());
+                String batchOf = i < 4 ? "in a batch of 4" : "in a batch of 2";
+                assertTrue(result.getMessages().stream().anyMatch(m -> m.contains(batchOf)));
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package realtimepaymentarchitectureorchestration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import realtimepaymentarchitectureorchestration.observability.MetricsRegistry;
+import realtimepaymentarchitectureorchestration.orchestration.PaymentLifecycleManager;
+import realtimepaymentarchitectureorchestration.repository.InMemoryPaymentRepository;
+import realtimepaymentarchitectureorchestration.repository.PaymentStatus;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentLifecycleManagerTest {
+
+    @Test
+    @DisplayName("Transitions should be persisted and illegal moves rejected")
+    void transition_enforcesTable() {
+        InMemoryPaymentRepository repository = new InMemoryPaymentRepository();
+        AtomicLong clock = new AtomicLong(1_000L);
+        PaymentLifecycleManager lifecycle =
+                new PaymentLifecycleManager(repository, new MetricsRegistry(), 10L, clock::get);
+
+        lifecycle.register("P1", Map.of("amount", "10.00"));
+        assertThrows(IllegalStateException.class,
+                () -> lifecycle.transition("P1", PaymentStatus.COMPLETED));
+
+        lifecycle.transition("P1", PaymentStatus.IN_PROGRESS);
+        assertEquals(PaymentStatus.IN_PROGRESS, repository.findById("P1").get().getStatus());
+        lifecycle.transition("P1", PaymentStatus.COMPLETED);
+        assertEquals(PaymentStatus.COMPLETED, repository.findById("P1").get().getStatus());
+        assertEquals(0, lifecycle.getActiveCount());
+        assertEquals(0, lifecycle.getPendingDeadlineCount());
+    }
+
+    @Test
+    @DisplayName("A payment stuck past its deadline should be marked FAILED")
+    void expireOverdue_failsStuckPayments() {
+        InMemoryPaymentRepository repository = new InMemoryPaymentRepository();
+        MetricsRegistry metrics = new MetricsRegistry();
+        AtomicLong clock = new AtomicLong(1_000L);
+        PaymentLifecycleManager lifecycle =
+                new PaymentLifecycleManager(repository, metrics, 10L, clock::get);
+        lifecycle.setDeadline(PaymentStatus.IN_PROGRESS, Duration.ofMillis(500));
+
+        lifecycle.register("STUCK", Map.of());
+        lifecycle.transition("STUCK", PaymentStatus.IN_PROGRESS);
+        lifecycle.register("FAST", Map.of());
+        lifecycle.transition("FAST", PaymentStatus.IN_PROGRESS);
+        lifecycle.transition("FAST", PaymentStatus.COMPLETED);
+
+        clock.set(1_400L);
+        assertEquals(0, lifecycle.expireOverdue());
+        clock.set(1_600L);
+        assertEquals(1, lifecycle.expireOverdue());
+
+        assertEquals(PaymentStatus.FAILED, repository.findById("STUCK").get().getStatus());
+        assertEquals(PaymentStatus.COMPLETED, repository.findById("FAST").get().getStatus());
+        assertEquals(1L, metrics.get("lifecycle.deadlines.expired"));
+        assertEquals(1L, metrics.get("lifecycle.deadlines.expired.IN_PROGRESS"));
+        assertFalse(lifecycle.tryTransition("STUCK", PaymentStatus.COMPLETED));
+    }
+}
@@ -4,11 +4,28 @@ package realtimepaymentarchitectureorchestration;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import realtimepaymentarchitectureorchestration.observability.MetricsRegistry;
+import realtimepaymentarchitectureorchestration.orchestration.AsyncTaskExecutor;
+import realtimepaymentarchitectureorchestration.orchestration.AuditLog;
+import realtimepaymentarchitectureorchestration.orchestration.FlowPlanRegistry;
 import realtimepaymentarchitectureorchestration.orchestration.PaymentOrchestrator;
+import realtimepaymentarchitectureorchestration.orchestration.OrchestrationPipeline;
 import realtimepaymentarchitectureorchestration.orchestration.OrchestrationResult;
+import realtimepaymentarchitectureorchestration.orchestration.OrchestrationSettings;
+import realtimepaymentarchitectureorchestration.orchestration.OrchestrationStep;
+import realtimepaymentarchitectureorchestration.orchestration.OrchestrationStepHandler;
+import realtimepaymentarchitectureorchestration.orchestration.OutcomeCode;
+import realtimepaymentarchitectureorchestration.orchestration.StageGraph;
+import realtimepaymentarchitectureorchestration.orchestration.StandardStepHandlers;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -42,6 +59,351 @@ class PaymentOrchestratorTest {
         OrchestrationResult result = orchestrator.orchestrateSimple(payment);
 
         assertEquals(OrchestrationResult.Status.FAILURE, result.getStatus());
+        assertEquals(OutcomeCode.MISSING_DEBTOR_ACCOUNT, result.getOutcome());
         assertTrue(result.getMessages().stream().anyMatch(m -> m.contains("Debtor account is required")));
     }
+
+    @Test
+    @DisplayName("orchestrateAll should run payments concurrently and keep input order")
+    void orchestrateAll_preservesOrder() {
+        OrchestrationSettings settings = new OrchestrationSettings();
+        settings.setCpuWorkerThreads(2);
+        settings.setIoWorkerThreads(4);
+        settings.setMaxInFlight(8);
+        List<Map<String, Object>> payments = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Map<String, Object> payment = new HashMap<>();
+            if (i % 10 != 0) {
+                payment.put("debtorAccount", "1111" + i);
+            }
+            payment.put("creditorAccount", "22222222");
+            payment.put("amount", "10.00");
+            payment.put("currency", "USD");
+            payments.add(payment);
+        }
+
+        try (PaymentOrchestrator orchestrator = new PaymentOrchestrator(settings)) {
+            List<OrchestrationResult> results = orchestrator.orchestrateAll(payments);
+
+            assertEquals(50, results.size());
+            for (int i = 0; i < results.size(); i++) {
+                OrchestrationResult.Status expected = i % 10 == 0
+                        ? OrchestrationResult.Status.FAILURE
+                        : OrchestrationResult.Status.SUCCESS;
+                assertEquals(expected, results.get(i).getStatus());
+            }
+            assertEquals(0, orchestrator.getInFlightCount());
+        }
+    }
+
+    @Test
+    @DisplayName("Custom pipeline can run sanctions screening before fraud check")
+    void customPipeline_sanctionsBeforeFraud() {
+        Map<OrchestrationStep, OrchestrationStepHandler> registry = StandardStepHandlers.registry();
+        registry.put(OrchestrationStep.SANCTIONS_CHECK, new StandardStepHandlers.SanctionsCheck(Set.of("66666666")));
+        OrchestrationPipeline pipeline = new OrchestrationPipeline("sanctions-first", List.of(
+                OrchestrationStep.VALIDATE,
+                OrchestrationStep.SANCTIONS_CHECK,
+                OrchestrationStep.FRAUD_CHECK,
+                OrchestrationStep.ROUTE,
+                OrchestrationStep.POST
+        ), registry);
+        PaymentOrchestrator orchestrator = new PaymentOrchestrator(new OrchestrationSettings(), pipeline);
+
+        Map<String, Object> payment = new HashMap<>();
+        payment.put("debtorAccount", "66666666");
+        payment.put("creditorAccount", "22222222");
+        payment.put("amount", "10.00");
+        payment.put("currency", "USD");
+
+        OrchestrationResult result = orchestrator.orchestrateSimple(payment);
+
+        assertEquals(OrchestrationResult.Status.FAILURE, result.getStatus());
+        assertEquals(OutcomeCode.SANCTIONS_HIT, result.getOutcome());
+        assertTrue(result.getMessages().stream().anyMatch(m -> m.contains("Sanctions screening hit")));
+        assertTrue(result.getMessages().stream().noneMatch(m -> m.contains("Fraud check result")));
+    }
+
+    @Test
+    @DisplayName("High-value USD payments should use the high-value flow without NOTIFY")
+    void orchestrateSimple_highValueFlow() {
+        PaymentOrchestrator orchestrator = new PaymentOrchestrator();
+        Map<String, Object> payment = new HashMap<>();
+        payment.put("debtorAccount", "11111111");
+        payment.put("creditorAccount", "22222222");
+        payment.put("amount", "75000.00");
+        payment.put("currency", "USD");
+
+        OrchestrationResult result = orchestrator.orchestrateSimple(payment);
+
+        assertEquals(OrchestrationResult.Status.SUCCESS, result.getStatus());
+        assertTrue(result.getMessages().stream().anyMatch(m -> m.contains("flowId=high-value-review")));
+        assertTrue(result.getMessages().stream().noneMatch(m -> m.contains("Notifications sent")));
+    }
+
+    @Test
+    @DisplayName("Per-step latencies should be exposed on the result and aggregated into histograms")
+    void orchestrateSimple_recordsStepTimings() {
+        PaymentOrchestrator orchestrator = new PaymentOrchestrator();
+        Map<String, Object> payment = new HashMap<>();
+        payment.put("debtorAccount", "11111111");
+        payment.put("creditorAccount", "22222222");
+        payment.put("amount", "75000.00");
+        payment.put("currency", "USD");
+
+        OrchestrationResult result = orchestrator.orchestrateSimple(payment);
+
+        assertTrue(result.getStepNanos(OrchestrationStep.VALIDATE) >= 0);
+        assertTrue(result.getStepNanos(OrchestrationStep.POST) >= 0);
+        assertEquals(-1L, result.getStepNanos(OrchestrationStep.NOTIFY));
+        assertTrue(result.getDurationNanos() >= result.getStepNanos(OrchestrationStep.POST));
+        assertEquals(1L, orchestrator.getMetrics().histogram("orchestrator.step.POST.nanos").getCount());
+        assertEquals(0L, orchestrator.getMetrics().histogram("orchestrator.step.NOTIFY.nanos").getCount());
+        assertEquals(1L, orchestrator.getMetrics().snapshot().get("orchestrator.payment.nanos.count").longValue());
+    }
+
+    @Test
+    @DisplayName("Batch mode should isolate failures and keep input order")
+    void orchestrateBatch_isolatesFailures() {
+        PaymentOrchestrator orchestrator = new PaymentOrchestrator();
+        List<Map<String, Object>> payments = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Map<String, Object> payment = new HashMap<>();
+            if (i != 7) {
+                payment.put("debtorAccount", "D" + i);
+            }
+            payment.put("creditorAccount", "22222222");
+            payment.put("amount", i == 12 ? "60000.00" : "10.00");
+            payment.put("currency", "USD");
+            payments.add(payment);
+        }
+
+        List<OrchestrationResult> results = orchestrator.orchestrateBatch(payments);
+
+        assertEquals(20, results.size());
+        for (int i = 0; i < 20; i++) {
+            OrchestrationResult.Status expected = i == 7
+                    ? OrchestrationResult.Status.FAILURE : OrchestrationResult.Status.SUCCESS;
+            assertEquals(expected, results.get(i).getStatus());
+        }
+        assertTrue(results.get(0).getMessages().stream().anyMatch(m -> m.contains("in a batch of 18")));
+        assertTrue(results.get(12).getMessages().stream().anyMatch(m -> m.contains("flowId=high-value-review")));
+    }
+
+    @Test
+    @DisplayName("Independent stages should fan out, keep message order and fail as a group")
+    void parallelStages_fanOutAndFailTogether() {
+        List<OrchestrationStep> order = List.of(
+                OrchestrationStep.VALIDATE,
+                OrchestrationStep.ENRICH,
+                OrchestrationStep.SANCTIONS_CHECK,
+                OrchestrationStep.FRAUD_CHECK,
+                OrchestrationStep.ROUTE,
+                OrchestrationStep.POST);
+        Map<String, Object> payment = new HashMap<>();
+        payment.put("debtorAccount", "11111111");
+        payment.put("creditorAccount", "22222222");
+        payment.put("amount", "10.00");
+        payment.put("currency", "USD");
+
+        OrchestrationPipeline parallel = new OrchestrationPipeline("parallel", order,
+                StandardStepHandlers.registry(), StageGraph.standard());
+        OrchestrationResult ok = new PaymentOrchestrator(new OrchestrationSettings(), parallel)
+                .orchestrateSimple(payment);
+
+        assertEquals(OrchestrationResult.Status.SUCCESS, ok.getStatus());
+        List<String> messages = ok.getMessages();
+        assertTrue(messages.indexOf("Enrichment completed") < messages.indexOf("Sanctions screening passed"));
+        assertTrue(messages.indexOf("Sanctions screening passed") < messages.indexOf("Fraud check result: APPROVE"));
+        assertTrue(messages.indexOf("Fraud check result: APPROVE") < messages.indexOf("Routing decided: INTERNAL_RT"));
+
+        Map<OrchestrationStep, OrchestrationStepHandler> registry = StandardStepHandlers.registry();
+        registry.put(OrchestrationStep.FRAUD_CHECK, (data, context, out) -> {
+            throw new IllegalStateException("fraud engine unavailable");
+        });
+        OrchestrationPipeline failing = new OrchestrationPipeline("parallel-failing", order,
+                registry, StageGraph.standard());
+        OrchestrationResult failed = new PaymentOrchestrator(new OrchestrationSettings(), failing)
+                .orchestrateSimple(payment);
+
+        assertEquals(OrchestrationResult.Status.FAILURE, failed.getStatus());
+        assertTrue(failed.getMessages().stream().anyMatch(m -> m.contains("fraud engine unavailable")));
+        assertTrue(failed.getMessages().stream().noneMatch(m -> m.contains("Routing decided")));
+        assertEquals(-1L, failed.getStepNanos(OrchestrationStep.ROUTE));
+    }
+
+    @Test
+    @DisplayName("A payment out of time should skip notification, then fail with TIMEOUT")
+    void deadline_skipsOptionalStepsThenTimesOut() {
+        Map<OrchestrationStep, OrchestrationStepHandler> registry = StandardStepHandlers.registry();
+        registry.put(OrchestrationStep.ENRICH, (data, context, out) -> {
+            try {
+                Thread.sleep(60L);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            out.add("Slow enrichment completed");
+        });
+        OrchestrationPipeline pipeline = new OrchestrationPipeline("slow", List.of(
+                OrchestrationStep.VALIDATE,
+                OrchestrationStep.ENRICH,
+                OrchestrationStep.ROUTE,
+                OrchestrationStep.NOTIFY
+        ), registry);
+        Map<String, Object> payment = new HashMap<>();
+        payment.put("debtorAccount", "11111111");
+        payment.put("creditorAccount", "22222222");
+        payment.put("amount", "10.00");
+        payment.put("currency", "USD");
+
+        OrchestrationSettings lowBudget = new OrchestrationSettings();
+        lowBudget.setPaymentDeadlineMillis(1000L);
+        lowBudget.setOptionalStepReserveMillis(980L);
+        OrchestrationResult skipped = new PaymentOrchestrator(lowBudget, pipeline).orchestrateSimple(payment);
+
+        assertEquals(OrchestrationResult.Status.SUCCESS, skipped.getStatus());
+        assertTrue(skipped.getMessages().contains("Skipped optional step NOTIFY: deadline budget too low"));
+        assertEquals(-1L, skipped.getStepNanos(OrchestrationStep.NOTIFY));
+
+        OrchestrationSettings tight = new OrchestrationSettings();
+        tight.setPaymentDeadlineMillis(20L);
+        OrchestrationResult timedOut = new PaymentOrchestrator(tight, pipeline).orchestrateSimple(payment);
+
+        assertEquals(OrchestrationResult.Status.FAILURE, timedOut.getStatus());
+        assertEquals(OutcomeCode.TIMEOUT, timedOut.getOutcome());
+        assertTrue(timedOut.getMessages().stream().noneMatch(m -> m.contains("Routing decided")));
+    }
+
+    @Test
+    @DisplayName("A full stage queue should fail the payment with OVERLOADED and publish pool gauges")
+    void submit_fullQueueIsOverloaded() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Map<OrchestrationStep, OrchestrationStepHandler> registry = StandardStepHandlers.registry();
+        registry.put(OrchestrationStep.VALIDATE, (data, context, out) -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            out.add("Blocking validation completed");
+        });
+        OrchestrationPipeline pipeline = new OrchestrationPipeline("blocking", List.of(
+                OrchestrationStep.VALIDATE,
+                OrchestrationStep.ROUTE
+        ), registry);
+        OrchestrationSettings settings = new OrchestrationSettings();
+        settings.setCpuWorkerThreads(1);
+        settings.setIoWorkerThreads(1);
+        settings.setStageQueueCapacity(1);
+        Map<String, Object> payment = new HashMap<>();
+        payment.put("debtorAccount", "11111111");
+        payment.put("creditorAccount", "22222222");
+        payment.put("amount", "10.00");
+        payment.put("currency", "USD");
+
+        try (PaymentOrchestrator orchestrator = new PaymentOrchestrator(settings, pipeline)) {
+            MetricsRegistry metrics = orchestrator.getMetrics();
+            CompletableFuture<OrchestrationResult> running = orchestrator.submit(payment);
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            CompletableFuture<OrchestrationResult> queued = orchestrator.submit(payment);
+            CompletableFuture<OrchestrationResult> overloaded = orchestrator.submit(payment);
+
+            OrchestrationResult rejected = overloaded.get(5, TimeUnit.SECONDS);
+            assertEquals(OrchestrationResult.Status.FAILURE, rejected.getStatus());
+            assertEquals(OutcomeCode.OVERLOADED, rejected.getOutcome());
+            assertEquals(1L, metrics.get("executor.cpu.active"));
+            assertEquals(1L, metrics.get("executor.cpu.queueDepth"));
+            assertEquals(1L, metrics.get("executor.cpu.rejected"));
+
+            release.countDown();
+            assertEquals(OrchestrationResult.Status.SUCCESS, running.get(5, TimeUnit.SECONDS).getStatus());
+            assertEquals(OrchestrationResult.Status.SUCCESS, queued.get(5, TimeUnit.SECONDS).getStatus());
+            assertEquals(0L, metrics.get("executor.cpu.queueDepth"));
+            assertEquals(1L, orchestrator.getExecutor().getRejectedCount(AsyncTaskExecutor.StageClass.CPU));
+        }
+    }
+
+    @Test
+    @DisplayName("Result messages should be rendered on demand in the original eager order")
+    void getMessages_rendersOnDemand() {
+        Map<OrchestrationStep, OrchestrationStepHandler> registry = StandardStepHandlers.registry();
+        registry.put(OrchestrationStep.VALIDATE, (data, context, out) -> {
+            if (data.containsKey("fail")) {
+                throw new IllegalStateException("validator unavailable");
+            }
+            out.add("Validated by test handler");
+        });
+        OrchestrationPipeline pipeline = new OrchestrationPipeline("single",
+                List.of(OrchestrationStep.VALIDATE), registry);
+        OrchestrationSettings settings = new OrchestrationSettings();
+        settings.setAuditMode(AuditLog.Mode.STEPS_ONLY);
+        PaymentOrchestrator orchestrator = new PaymentOrchestrator(settings, pipeline);
+        Map<String, Object> payment = new HashMap<>();
+        payment.put("amount", "10.00");
+
+        OrchestrationResult ok = orchestrator.orchestrateSimple(payment);
+        List<String> messages = ok.getMessages();
+        List<String> audit = messages.subList(2, messages.size());
+        assertEquals("Validated by test handler", messages.get(0));
+        assertEquals("Payment completed successfully with internalId=" + ok.getInternalId(), messages.get(1));
+        assertTrue(audit.get(0).endsWith(" - Context created"));
+        assertTrue(audit.get(audit.size() - 1).endsWith(" to COMPLETE"));
+        assertTrue(audit.stream().allMatch(m -> m.contains(" - ")));
+        assertSame(messages, ok.getMessages());
+
+        payment.put("fail", Boolean.TRUE);
+        OrchestrationResult failed = orchestrator.orchestrateSimple(payment);
+        List<String> failure = failed.getMessages();
+        assertEquals("Payment orchestration failed: validator unavailable", failure.get(0));
+        assertTrue(failure.get(1).endsWith(" - Context created"));
+        assertTrue(failure.get(failure.size() - 1).endsWith(" to ERROR"));
+        assertSame(failure, failed.getMessages());
+    }
+
+    @Test
+    @DisplayName("Amounts padded with whitespace should validate; embedded spaces should not")
+    void orchestrateSimple_paddedAmount() {
+        PaymentOrchestrator orchestrator = new PaymentOrchestrator();
+        Map<String, Object> payment = new HashMap<>();
+        payment.put("debtorAccount", "11111111");
+        payment.put("creditorAccount", "22222222");
+        payment.put("amount", " 10.00 ");
+        payment.put("currency", "USD");
+
+        assertEquals(OrchestrationResult.Status.SUCCESS, orchestrator.orchestrateSimple(payment).getStatus());
+
+        payment.put("amount", "\t+10.00\n");
+        assertEquals(OrchestrationResult.Status.SUCCESS, orchestrator.orchestrateSimple(payment).getStatus());
+
+        payment.put("amount", "10 .00");
+        assertEquals(OutcomeCode.INVALID_AMOUNT, orchestrator.orchestrateSimple(payment).getOutcome());
+        payment.put("amount", " - ");
+        assertEquals(OutcomeCode.INVALID_AMOUNT, orchestrator.orchestrateSimple(payment).getOutcome());
+    }
+
+    @Test
+    @DisplayName("Default flow plans should run in sequence unless parallel stages are enabled")
+    void parallelStages_optIn() {
+        Map<String, Object> payment = new HashMap<>();
+        payment.put("debtorAccount", "11111111");
+        payment.put("creditorAccount", "22222222");
+        payment.put("amount", "10.00");
+        payment.put("currency", "USD");
+
+        PaymentOrchestrator sequential = new PaymentOrchestrator();
+        assertFalse(sequential.getSettings().isParallelStages());
+        assertFalse(sequential.getFlowPlans().getPlan(FlowPlanRegistry.DOMESTIC_FLOW).hasParallelGroups());
+
+        OrchestrationSettings settings = new OrchestrationSettings();
+        settings.setParallelStages(true);
+        PaymentOrchestrator parallel = new PaymentOrchestrator(settings);
+        assertTrue(parallel.getFlowPlans().getPlan(FlowPlanRegistry.DOMESTIC_FLOW).hasParallelGroups());
+
+        OrchestrationResult expected = sequential.orchestrateSimple(payment);
+        OrchestrationResult actual = parallel.orchestrateSimple(payment);
+        assertEquals(OrchestrationResult.Status.SUCCESS, actual.getStatus());
+        assertEquals(expected.getMessages().subList(0, 5), actual.getMessages().subList(0, 5));
+    }
 }
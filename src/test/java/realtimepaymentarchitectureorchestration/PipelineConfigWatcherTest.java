@@ -0,0 +1,110 @@
+package realtimepaymentarchitectureorchestration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import realtimepaymentarchitectureorchestration.config.PipelineConfigLoader;
+import realtimepaymentarchitectureorchestration.config.PipelineConfigWatcher;
+import realtimepaymentarchitectureorchestration.orchestration.FlowPlanRegistry;
+import realtimepaymentarchitectureorchestration.orchestration.PaymentOrchestrator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineConfigWatcherTest {
+
+    @Test
+    @DisplayName("Reloading flows should bump the version, and a bad config should keep the old plans")
+    void reloadFlows_versionsAndRejects() throws Exception {
+        Path dir = Files.createTempDirectory("pipeline-config");
+        Path file = write(dir.resolve("flows.properties"),
+                "flow.domestic-rtp=VALIDATE,ROUTE,POST\nflow.audit-only=VALIDATE\n");
+        PaymentOrchestrator orchestrator = new PaymentOrchestrator();
+        long initialVersion = orchestrator.getFlowPlans().getVersion();
+
+        assertTrue(orchestrator.reloadFlows(PipelineConfigLoader.fromFile(file)));
+        FlowPlanRegistry reloaded = orchestrator.getFlowPlans();
+        assertEquals(initialVersion + 1, reloaded.getVersion());
+        assertNotNull(reloaded.getPlan("audit-only"));
+
+        write(file, "flow.domestic-rtp=VALIDATE,TELEPORT\n");
+        assertFalse(orchestrator.reloadFlows(PipelineConfigLoader.fromFile(file)));
+        assertSame(reloaded, orchestrator.getFlowPlans());
+        assertEquals(1L, orchestrator.getMetrics().get("orchestrator.flows.reload.failures"));
+
+        write(file, "flow.domestic-rtp=\n");
+        assertThrows(IllegalArgumentException.class, () -> PipelineConfigLoader.fromFile(file));
+    }
+
+    @Test
+    @DisplayName("The watcher should reload once the file is quiet and skip files that do not parse")
+    void watcher_debouncesAndSkipsBadFiles() throws Exception {
+        Path dir = Files.createTempDirectory("pipeline-config");
+        Path file = write(dir.resolve("flows.properties"), "flow.domestic-rtp=VALIDATE\n");
+        List<PipelineConfigLoader> loaded = new CopyOnWriteArrayList<>();
+        try (PipelineConfigWatcher watcher = new PipelineConfigWatcher(file, loaded::add, 300L)) {
+            watcher.start();
+            Thread.sleep(100L);
+
+            // A half-written file followed quickly by the complete one is reloaded once, complete.
+            write(file, "flow.domestic-rtp=\n");
+            write(file, "flow.domestic-rtp=VALIDATE,ROUTE,POST\n");
+            awaitSize(loaded, 1);
+            Thread.sleep(500L);
+            assertEquals(1, loaded.size());
+            assertEquals(3, loaded.get(0).getFlow("domestic-rtp").getSteps().size());
+            assertEquals(0L, watcher.getFailedReloads());
+
+            write(file, "flow.broken=\n");
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (watcher.getFailedReloads() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(20L);
+            }
+            assertEquals(1L, watcher.getFailedReloads());
+            assertTrue(watcher.getLastFailure() instanceof IllegalArgumentException);
+            assertEquals(1, loaded.size());
+        }
+    }
+
+    @Test
+    @DisplayName("Changes to other files in the directory should not cut the debounce short")
+    void watcher_ignoresOtherFiles() throws Exception {
+        Path dir = Files.createTempDirectory("pipeline-config");
+        Path file = write(dir.resolve("flows.properties"), "flow.domestic-rtp=VALIDATE\n");
+        List<PipelineConfigLoader> loaded = new CopyOnWriteArrayList<>();
+        try (PipelineConfigWatcher watcher = new PipelineConfigWatcher(file, loaded::add, 300L)) {
+            watcher.start();
+            Thread.sleep(100L);
+
+            // An editor saving through a swap file: half-written target, swap file, then the complete target.
+            write(file, "flow.domestic-rtp=\n");
+            Thread.sleep(50L);
+            write(dir.resolve(".flows.properties.swp"), "swap");
+            Thread.sleep(100L);
+            write(file, "flow.domestic-rtp=VALIDATE,ROUTE,POST\n");
+            awaitSize(loaded, 1);
+            Thread.sleep(500L);
+            assertEquals(1, loaded.size());
+            assertEquals(3, loaded.get(0).getFlow("domestic-rtp").getSteps().size());
+            assertEquals(0L, watcher.getFailedReloads());
+        }
+    }
+
+    private static Path write(Path file, String content) throws Exception {
+        return Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void awaitSize(List<?> list, int size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (list.size() < size && System.nanoTime() < deadline) {
+            Thread.sleep(20L);
+        }
+        assertEquals(size, list.size());
+    }
+}
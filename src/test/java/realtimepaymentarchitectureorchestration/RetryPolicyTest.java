@@ -0,0 +1,104 @@
+package realtimepaymentarchitectureorchestration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import realtimepaymentarchitectureorchestration.orchestration.RetryPolicy;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryPolicyTest {
+
+    @Test
+    @DisplayName("Retries should stop as soon as an attempt succeeds")
+    void execute_succeedsOnRetry() {
+        RetryPolicy policy = new RetryPolicy(5, 1L, 5L, 0.1d, 10);
+        AtomicInteger calls = new AtomicInteger();
+
+        boolean success = policy.execute("ROUTE_A", attempt -> calls.incrementAndGet() == 3);
+
+        assertTrue(success);
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    @DisplayName("Attempts should be capped at maxAttempts")
+    void execute_exhaustsAttempts() {
+        RetryPolicy policy = new RetryPolicy(3, 1L, 5L, 0.1d, 10);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertFalse(policy.execute("ROUTE_B", attempt -> {
+            calls.incrementAndGet();
+            return false;
+        }));
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    @DisplayName("An empty retry budget should allow only first attempts")
+    void execute_respectsRetryBudget() {
+        RetryPolicy policy = new RetryPolicy(3, 0L, 0L, 0.1d, 1);
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 5; i++) {
+            policy.execute("ROUTE_C", attempt -> {
+                calls.incrementAndGet();
+                return false;
+            });
+        }
+
+        // five first attempts plus the single retry held in reserve;
+        // five deposits of 0.1 do not add up to another whole retry
+        assertEquals(6, calls.get());
+        assertEquals(5, policy.getRetriesDenied());
+    }
+
+    @Test
+    @DisplayName("A retry whose backoff outlasts the deadline should not run")
+    void execute_stopsAtDeadline() {
+        RetryPolicy policy = new RetryPolicy(3, 100L, 200L, 0.1d, 10);
+        AtomicInteger calls = new AtomicInteger();
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(20L);
+
+        long started = System.nanoTime();
+        assertFalse(policy.execute("ROUTE_D", attempt -> {
+            calls.incrementAndGet();
+            return false;
+        }, remainingNanos));
+
+        assertEquals(1, calls.get());
+        assertEquals(1L, policy.getRetriesPastDeadline());
+        assertEquals(10L, policy.getRetryBudget("ROUTE_D"));
+        assertTrue(System.nanoTime() - started < TimeUnit.MILLISECONDS.toNanos(100L));
+
+        assertFalse(policy.execute("ROUTE_D", attempt -> calls.incrementAndGet() > 0, 0L));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    @DisplayName("Asynchronous attempts should be retried when their future completes, without blocking")
+    void composeAsync_retriesOnCompletion() throws Exception {
+        RetryPolicy policy = new RetryPolicy(3, 1L, 5L, 0.1d, 10);
+        CompletableFuture<Boolean> first = new CompletableFuture<>();
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<Boolean> outcome = policy.composeAsync("ROUTE_E", attempt -> {
+            calls.incrementAndGet();
+            return attempt == 0 ? first : CompletableFuture.completedFuture(Boolean.TRUE);
+        }, Long.MAX_VALUE);
+
+        assertFalse(outcome.isDone());
+        assertEquals(1, calls.get());
+        first.complete(Boolean.FALSE);
+        assertTrue(outcome.get(5, TimeUnit.SECONDS));
+        assertEquals(2, calls.get());
+
+        CompletableFuture<Boolean> failing = new CompletableFuture<>();
+        failing.completeExceptionally(new IllegalStateException("downstream unavailable"));
+        assertThrows(IllegalStateException.class, () -> policy.compose("ROUTE_E", attempt -> failing, Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,40 @@
+package realtimepaymentarchitectureorchestration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import rtp.RtpAmount;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RtpAmountTest {
+
+    @Test
+    @DisplayName("Amounts should parse to fixed point and print as written")
+    void parse_keepsWrittenDecimals() {
+        long amount = RtpAmount.parse("125.00");
+        assertEquals(12_500L, RtpAmount.unscaled(amount));
+        assertEquals(2, RtpAmount.exponent(amount));
+        assertEquals("125.00", RtpAmount.toPlainString(amount));
+        assertEquals("-0.05", RtpAmount.toPlainString(RtpAmount.parse("-.05")));
+        assertEquals("1000", RtpAmount.toPlainString(RtpAmount.parse("1E3")));
+        assertTrue(RtpAmount.hasSubMinorDigits(RtpAmount.parse("10.005"), RtpAmount.MINOR_UNIT_EXPONENT));
+
+        assertEquals(RtpAmount.INVALID, RtpAmount.parse(""));
+        assertEquals(RtpAmount.INVALID, RtpAmount.parse("-"));
+        assertEquals(RtpAmount.INVALID, RtpAmount.parse("12,50"));
+        assertEquals(RtpAmount.INVALID, RtpAmount.parse("1E999999999"));
+    }
+
+    @Test
+    @DisplayName("Amounts should compare by value across different decimal places")
+    void compare_acrossExponents() {
+        long threshold = RtpAmount.of(10_000L, 0);
+        assertEquals(0, RtpAmount.compare(RtpAmount.parse("10000.00"), threshold));
+        assertTrue(RtpAmount.compare(RtpAmount.parse("10000.01"), threshold) > 0);
+        assertTrue(RtpAmount.compare(RtpAmount.parse("9999.999"), threshold) < 0);
+        assertTrue(RtpAmount.compare(RtpAmount.parse("-5"), threshold) < 0);
+        assertTrue(RtpAmount.compare(RtpAmount.parse("99999999999999999"), RtpAmount.parse("0.000000000000000001")) > 0);
+        assertEquals(-1, RtpAmount.signum(RtpAmount.parse("-0.01")));
+    }
+}
@@ -0,0 +1,47 @@
+package realtimepaymentarchitectureorchestration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import rtp.RtpCurrencyRegistry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RtpCurrencyRegistryTest {
+
+    @Test
+    @DisplayName("Standard currencies should resolve to supported ids and others to UNKNOWN")
+    void standard_resolvesIds() {
+        RtpCurrencyRegistry registry = RtpCurrencyRegistry.standard();
+        int usd = registry.idOf("USD");
+        assertNotEquals(RtpCurrencyRegistry.UNKNOWN, usd);
+        assertEquals("USD", registry.codeOf(usd));
+        assertTrue(registry.isSupported(usd));
+        assertTrue(registry.isSupported(registry.idOf("INR")));
+        assertEquals(2, registry.exponentOf(usd));
+
+        int unknown = registry.idOf("usd");
+        assertEquals(RtpCurrencyRegistry.UNKNOWN, unknown);
+        assertFalse(registry.isSupported(unknown));
+        assertEquals(RtpCurrencyRegistry.UNKNOWN, registry.idOf("US"));
+    }
+
+    @Test
+    @DisplayName("Registering a currency should make it supported without changing existing ids")
+    void register_addsCurrency() {
+        RtpCurrencyRegistry registry = new RtpCurrencyRegistry()
+                .register("USD", 2, true);
+        int usd = registry.idOf("USD");
+        assertFalse(registry.isSupported(registry.idOf("JPY")));
+
+        registry.register("JPY", 0, true);
+        int jpy = registry.idOf("JPY");
+        assertTrue(registry.isSupported(jpy));
+        assertEquals(0, registry.exponentOf(jpy));
+        assertEquals(usd, registry.idOf("USD"));
+
+        registry.register("JPY", 0, false);
+        assertFalse(registry.isSupported(jpy));
+        assertThrows(IllegalArgumentException.class, () -> registry.register("YEN1", 0, true));
+    }
+}
@@ -0,0 +1,139 @@
+package realtimepaymentarchitectureorchestration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rtp.PaymentContext;
+import rtp.RtpAmount;
+import rtp.RtpDuplicateChecker;
+import rtp.RtpDuplicateIndex;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RtpDuplicateIndexTest {
+
+    @Test
+    @DisplayName("A repeated payment should be a duplicate within the window and new after it")
+    void checkAndRecord_slidingWindow() {
+        AtomicLong now = new AtomicLong(1_000_000L);
+        RtpDuplicateIndex index = new RtpDuplicateIndex(24_000L, 4, 10_000L, 0.01d, now::get);
+        long amount = RtpAmount.parse("10.00");
+
+        assertFalse(index.checkAndRecord("D1", "C1", amount, "E2E-1"));
+        assertTrue(index.checkAndRecord("D1", "C1", RtpAmount.parse("10"), "E2E-1"));
+        assertFalse(index.checkAndRecord("D1", "C1", amount, "E2E-2"));
+        assertFalse(index.checkAndRecord("D1", "C2", amount, "E2E-1"));
+        assertFalse(index.checkAndRecord("D1", "C1", RtpAmount.parse("10.01"), "E2E-1"));
+
+        now.addAndGet(23_000L);
+        assertTrue(index.checkAndRecord("D1", "C1", amount, "E2E-1"));
+        now.addAndGet(36_000L);
+        assertFalse(index.checkAndRecord("D1", "C1", amount, "E2E-1"));
+        assertEquals(2L, index.getDuplicates());
+    }
+
+    @Test
+    @DisplayName("More keys than expected should rotate early without losing recent keys")
+    void checkAndRecord_rotatesEarlyWhenFull() {
+        RtpDuplicateIndex index = new RtpDuplicateIndex(60_000L, 2, 64L, 0.01d, () -> 0L);
+        for (int i = 0; i < 200; i++) {
+            assertFalse(index.checkAndRecord("D", "C", RtpAmount.of(i + 1L, 2), null));
+        }
+        assertTrue(index.getEarlyRotations() > 0);
+        assertTrue(index.checkAndRecord("D", "C", RtpAmount.of(200L, 2), null));
+    }
+
+    @Test
+    @DisplayName("Concurrent copies of a payment should let exactly one through across a rotation")
+    void checkAndRecord_oneWinnerAcrossRotation() throws Exception {
+        int threads = 8;
+        int rounds = 500;
+        AtomicLong now = new AtomicLong(1_000_000L);
+        RtpDuplicateIndex index = new RtpDuplicateIndex(4_000L, 4, 256L, 0.01d, now::get);
+        // Every round starts a new generation, so the first caller rotates while the others check.
+        CyclicBarrier start = new CyclicBarrier(threads, () -> now.addAndGet(1_000L));
+        AtomicInteger[] passed = new AtomicInteger[rounds];
+        for (int round = 0; round < rounds; round++) {
+            passed[round] = new AtomicInteger();
+        }
+        List<Thread> workers = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    for (int round = 0; round < rounds; round++) {
+                        start.await();
+                        if (!index.checkAndRecord("D1", "C1", RtpAmount.of(round + 1L, 2), "E2E-" + round)) {
+                            passed[round].incrementAndGet();
+                        }
+                    }
+                } catch (Throwable ex) {
+                    synchronized (failures) {
+                        failures.add(ex);
+                    }
+                    start.reset();
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertTrue(failures.isEmpty(), "Worker failed: " + failures);
+        for (int round = 0; round < rounds; round++) {
+            assertEquals(1, passed[round].get(), "round " + round);
+        }
+        assertEquals((long) rounds * (threads - 1), index.getDuplicates());
+    }
+
+    @Test
+    @DisplayName("The checker should flag a repeated payment with DUPLICATE_PAYMENT")
+    void checker_flagsDuplicate() {
+        RtpDuplicateChecker checker = new RtpDuplicateChecker(new RtpDuplicateIndex(60_000L, 4, 1_000L, 0.01d));
+        PaymentContext first = payment();
+        PaymentContext second = payment();
+
+        assertFalse(checker.checkForDuplicate(first));
+        assertFalse(first.hasErrors());
+        assertTrue(checker.checkForDuplicate(second));
+        assertTrue(second.getErrors().containsKey("DUPLICATE_PAYMENT"));
+    }
+
+    @Test
+    @DisplayName("The checker's own flows should stop a repeated payment before routing")
+    void checkerFlows_rejectRepeat() {
+        RtpDuplicateChecker checker = new RtpDuplicateChecker(new RtpDuplicateIndex(60_000L, 4, 1_000L, 0.01d));
+        PaymentContext first = payment();
+        first.setTransactionId("TX-D1");
+        PaymentContext second = payment();
+        second.setTransactionId("TX-D2");
+
+        checker.validateAndRoutePayment(first);
+        checker.runEndToEndSimulation(first);
+        assertFalse(first.getErrors().containsKey("DUPLICATE_PAYMENT"));
+        assertTrue(first.getAuditTrail().stream().anyMatch(m -> m.startsWith("Route selected for tx TX-D1")));
+
+        checker.runEndToEndSimulation(second);
+        assertTrue(second.getErrors().containsKey("DUPLICATE_PAYMENT"));
+        List<String> trail = second.getAuditTrail();
+        assertTrue(trail.contains("Duplicate payment detected for tx TX-D2"));
+        assertTrue(trail.stream().noneMatch(m -> m.startsWith("Route selected")));
+    }
+
+    private static PaymentContext payment() {
+        PaymentContext context = new PaymentContext();
+        context.getAttributes().put("debtorAccount", "D1");
+        context.getAttributes().put("creditorAccount", "C1");
+        context.getAttributes().put("amount", "125.00");
+        context.getAttributes().put("endToEndId", "E2E-42");
+        return context;
+    }
+}
@@ -0,0 +1,170 @@
+package realtimepaymentarchitectureorchestration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import realtimepaymentarchitectureorchestration.orchestration.HedgingPolicy;
+import realtimepaymentarchitectureorchestration.orchestration.RetryPolicy;
+import rtp.PaymentContext;
+import rtp.RtpFlow;
+import rtp.RtpFlowHooks;
+import rtp.RtpFlowKernel;
+import rtp.RtpLedgerPostingAdapter;
+import rtp.RtpPaymentProcessor;
+import rtp.RtpRoutingTableManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RtpFlowKernelTest {
+
+    private static PaymentContext context(String txId, String amount, String currency) {
+        PaymentContext context = new PaymentContext();
+        context.setTransactionId(txId);
+        Map<String, Object> attributes = context.getAttributes();
+        attributes.put("debtorAccount", "D1");
+        attributes.put("creditorAccount", "C1");
+        attributes.put("amount", amount);
+        attributes.put("currency", currency);
+        return context;
+    }
+
+    @Test
+    @DisplayName("Components should produce the same audit trail and flags from the shared flow")
+    void components_shareFlow() {
+        PaymentContext processed = context("TX-K1", "1500000.00", "USD");
+        PaymentContext posted = context("TX-K1", "1500000.00", "USD");
+
+        new RtpPaymentProcessor().executeDownstreamPosting(processed);
+        new RtpLedgerPostingAdapter().executeDownstreamPosting(posted);
+
+        List<String> trail = processed.getAuditTrail();
+        assertEquals(trail, posted.getAuditTrail());
+        assertEquals("Starting RTP flow: executeDownstreamPosting", trail.get(0));
+        assertTrue(trail.contains("Route selected for tx TX-K1: RTP_DOMESTIC_HIGH_VALUE"));
+        assertTrue(trail.contains("Successfully completed downstream interactions for tx TX-K1"));
+        assertEquals("Completed RTP flow: executeDownstreamPosting for tx TX-K1", trail.get(trail.size() - 1));
+        assertFalse(processed.hasErrors());
+        assertTrue(processed.getFlags().contains("HIGH_VALUE_REVIEW"));
+        assertTrue(processed.getFlags().contains("LARGE_VALUE_METRIC"));
+        assertEquals(processed.getFlags(), posted.getFlags());
+    }
+
+    @Test
+    @DisplayName("An unparseable amount should stop the flow with INVALID_AMOUNT_FORMAT")
+    void invalidAmount_stopsFlow() {
+        PaymentContext context = context("TX-K2", "12,50", "USD");
+
+        new RtpRoutingTableManager().validateAndRoutePayment(context);
+
+        assertEquals(List.of("12,50"), context.getErrors().get("INVALID_AMOUNT_FORMAT"));
+        List<String> trail = context.getAuditTrail();
+        assertEquals("Invalid amount format for tx TX-K2: 12,50", trail.get(trail.size() - 1));
+        assertTrue(trail.stream().noneMatch(m -> m.startsWith("Route selected")));
+        assertTrue(context.getFlags().isEmpty());
+    }
+
+    @Test
+    @DisplayName("An unsupported currency should warn and fall back to the generic route")
+    void unsupportedCurrency_warnsAndFallsBack() {
+        PaymentContext context = context("TX-K3", "125.00", "JPY");
+
+        new RtpPaymentProcessor().validateAndRoutePayment(context);
+
+        assertEquals(List.of("JPY"), context.getWarnings().get("UNSUPPORTED_CURRENCY"));
+        assertFalse(context.hasErrors());
+        List<String> trail = context.getAuditTrail();
+        assertTrue(trail.contains("Unsupported currency JPY for tx TX-K3"));
+        assertTrue(trail.contains("Route selected for tx TX-K3: " + RtpRoutingTableManager.FALLBACK_ROUTE));
+        assertEquals("Completed RTP flow: validateAndRoutePayment for tx TX-K3", trail.get(trail.size() - 1));
+    }
+
+    @Test
+    @DisplayName("A downstream call that keeps failing should be retried, then reported as DOWNSTREAM_FAILURE")
+    void downstreamFailure_afterRetries() {
+        AtomicInteger calls = new AtomicInteger();
+        RtpFlowKernel kernel = new RtpFlowKernel(new RtpFlowHooks() {
+            @Override
+            public String route(int currencyId, long amount, String participant) {
+                return "RTP_KERNEL_TEST_ROUTE";
+            }
+
+            @Override
+            public String alternateRoute(String route) {
+                return null;
+            }
+
+            @Override
+            public boolean downstreamCall(String route, String idempotencyKey, long amount,
+                                          List<String> auditTrail) {
+                calls.incrementAndGet();
+                return false;
+            }
+        });
+        PaymentContext context = context("TX-K4", "125.00", "USD");
+
+        kernel.run(RtpFlow.EXECUTE_DOWNSTREAM_POSTING, context);
+
+        int attempts = RetryPolicy.downstreamDefault().getMaxAttempts();
+        assertEquals(attempts, calls.get());
+        assertEquals(List.of("RTP_KERNEL_TEST_ROUTE"), context.getErrors().get("DOWNSTREAM_FAILURE"));
+        List<String> trail = context.getAuditTrail();
+        assertTrue(trail.contains("Attempt " + (attempts - 1) + " on route RTP_KERNEL_TEST_ROUTE for tx TX-K4"));
+        assertTrue(trail.contains("Downstream failure after retries for tx TX-K4 on route RTP_KERNEL_TEST_ROUTE"));
+        assertEquals("Completed RTP flow: executeDownstreamPosting for tx TX-K4", trail.get(trail.size() - 1));
+    }
+
+    @Test
+    @DisplayName("Both legs of a hedged post should reach downstream with the same idempotency key")
+    void hedgedPost_sharesIdempotencyKey() throws Exception {
+        String primary = "RTP_KERNEL_HEDGE_PRIMARY";
+        String alternate = "RTP_KERNEL_HEDGE_ALTERNATE";
+        for (int i = 0; i < 64; i++) {
+            HedgingPolicy.downstreamDefault().recordLatency(primary, 1_000_000L);
+        }
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch bothLegs = new CountDownLatch(2);
+        RtpFlowKernel kernel = new RtpFlowKernel(new RtpFlowHooks() {
+            @Override
+            public String route(int currencyId, long amount, String participant) {
+                return primary;
+            }
+
+            @Override
+            public String alternateRoute(String route) {
+                return alternate;
+            }
+
+            @Override
+            public boolean downstreamCall(String route, String idempotencyKey, long amount,
+                                          List<String> auditTrail) {
+                calls.add(route + "=" + idempotencyKey);
+                bothLegs.countDown();
+                if (primary.equals(route)) {
+                    try {
+                        Thread.sleep(300L);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return true;
+            }
+        });
+        PaymentContext context = context("TX-K5", "125.00", "USD");
+
+        kernel.run(RtpFlow.EXECUTE_DOWNSTREAM_POSTING, context);
+
+        assertTrue(bothLegs.await(5, TimeUnit.SECONDS));
+        assertFalse(context.hasErrors());
+        assertTrue(calls.contains(primary + "=TX-K5:executeDownstreamPosting"));
+        assertTrue(calls.contains(alternate + "=TX-K5:executeDownstreamPosting"));
+        assertEquals(2, calls.size());
+    }
+}
@@ -0,0 +1,55 @@
+package realtimepaymentarchitectureorchestration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import rtp.RtpAmount;
+import rtp.RtpCurrencyRegistry;
+import rtp.RtpRoutingDecisionEngine;
+import rtp.RtpRoutingTableManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RtpRoutingTableManagerTest {
+
+    @Test
+    @DisplayName("Standard routes should match currency and amount band")
+    void standardRoutes() {
+        RtpRoutingTableManager manager = new RtpRoutingTableManager();
+        RtpCurrencyRegistry currencies = manager.getCurrencies();
+        RtpRoutingDecisionEngine engine = new RtpRoutingDecisionEngine(manager);
+        int usd = currencies.idOf("USD");
+
+        assertEquals("RTP_DOMESTIC_STANDARD", engine.decideRoute(usd, RtpAmount.parse("10000.00"), null));
+        assertEquals("RTP_DOMESTIC_HIGH_VALUE", engine.decideRoute(usd, RtpAmount.parse("10000.01"), null));
+        assertEquals("RTP_EURO_CLEARING", engine.decideRoute(currencies.idOf("EUR"), RtpAmount.parse("1"), null));
+        assertEquals("RTP_UK_FASTER_PAYMENTS", engine.decideRoute(currencies.idOf("GBP"), RtpAmount.parse("1"), null));
+        assertEquals(RtpRoutingTableManager.FALLBACK_ROUTE,
+                engine.decideRoute(currencies.idOf("INR"), RtpAmount.parse("1"), null));
+        assertEquals(RtpRoutingTableManager.FALLBACK_ROUTE,
+                engine.decideRoute(RtpCurrencyRegistry.UNKNOWN, RtpAmount.parse("1"), null));
+    }
+
+    @Test
+    @DisplayName("Updates should publish a new snapshot and leave earlier snapshots unchanged")
+    void updates_copyOnWrite() {
+        RtpRoutingTableManager manager = new RtpRoutingTableManager();
+        int usd = manager.getCurrencies().idOf("USD");
+        long amount = RtpAmount.parse("250000.00");
+        RtpRoutingTableManager.RoutingTable before = manager.snapshot();
+
+        manager.setBandRoute("USD", RtpAmount.of(100_000L, 0), "RTP_DOMESTIC_WHOLESALE")
+                .setParticipantRoute("USD", "BANKUS33", "RTP_DIRECT_BANKUS33");
+        RtpRoutingTableManager.RoutingTable after = manager.snapshot();
+
+        assertEquals("RTP_DOMESTIC_HIGH_VALUE", before.route(usd, amount, null));
+        assertEquals("RTP_DOMESTIC_WHOLESALE", after.route(usd, amount, null));
+        assertEquals("RTP_DOMESTIC_HIGH_VALUE", after.route(usd, RtpAmount.parse("50000"), null));
+        assertEquals("RTP_DIRECT_BANKUS33", after.route(usd, amount, "BANKUS33"));
+        assertEquals(before.getVersion() + 2, after.getVersion());
+
+        manager.setParticipantRoute("USD", "BANKUS33", null);
+        assertEquals("RTP_DOMESTIC_WHOLESALE", manager.snapshot().route(usd, amount, "BANKUS33"));
+        assertThrows(IllegalArgumentException.class, () -> manager.setRoute("XXX", "RTP_NOWHERE"));
+    }
+}
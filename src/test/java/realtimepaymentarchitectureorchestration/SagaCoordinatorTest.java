@@ -0,0 +1,129 @@
+package realtimepaymentarchitectureorchestration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import realtimepaymentarchitectureorchestration.observability.MetricsRegistry;
+import realtimepaymentarchitectureorchestration.orchestration.CompensationHandler;
+import realtimepaymentarchitectureorchestration.orchestration.FlowPlanRegistry;
+import realtimepaymentarchitectureorchestration.orchestration.OrchestrationPipeline;
+import realtimepaymentarchitectureorchestration.orchestration.OrchestrationResult;
+import realtimepaymentarchitectureorchestration.orchestration.OrchestrationSettings;
+import realtimepaymentarchitectureorchestration.orchestration.OrchestrationStep;
+import realtimepaymentarchitectureorchestration.orchestration.OrchestrationStepHandler;
+import realtimepaymentarchitectureorchestration.orchestration.OutcomeCode;
+import realtimepaymentarchitectureorchestration.orchestration.PaymentLifecycleManager;
+import realtimepaymentarchitectureorchestration.orchestration.PaymentOrchestrator;
+import realtimepaymentarchitectureorchestration.orchestration.SagaCoordinator;
+import realtimepaymentarchitectureorchestration.orchestration.StandardStepHandlers;
+import realtimepaymentarchitectureorchestration.repository.InMemoryPaymentRepository;
+import realtimepaymentarchitectureorchestration.repository.PaymentStatus;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SagaCoordinatorTest {
+
+    private static OrchestrationPipeline pipelineWithFailingNotify() {
+        Map<OrchestrationStep, OrchestrationStepHandler> registry = StandardStepHandlers.registry();
+        registry.put(OrchestrationStep.NOTIFY, (paymentData, context, messages) -> {
+            throw new IllegalStateException("Notification gateway unavailable");
+        });
+        return new OrchestrationPipeline("failing-notify", OrchestrationPipeline.standardOrder(), registry);
+    }
+
+    private static Map<String, Object> payment() {
+        Map<String, Object> payment = new HashMap<>();
+        payment.put("debtorAccount", "11111111");
+        payment.put("creditorAccount", "22222222");
+        payment.put("amount", "10.00");
+        payment.put("currency", "USD");
+        return payment;
+    }
+
+    @Test
+    @DisplayName("Failure after POST should reverse the posting")
+    void failureAfterPost_compensatesPosting() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        PaymentOrchestrator orchestrator = new PaymentOrchestrator(new OrchestrationSettings(),
+                FlowPlanRegistry.single(pipelineWithFailingNotify()), metrics);
+
+        OrchestrationResult result = orchestrator.orchestrateSimple(payment());
+
+        assertEquals(OrchestrationResult.Status.FAILURE, result.getStatus());
+        assertTrue(result.getMessages().contains("Compensated steps: [POST]"));
+        assertTrue(result.getMessages().stream().anyMatch(m -> m.contains("reversalId=REVERSAL-LEDGER-")));
+        assertEquals(1, metrics.get("saga.compensations.completed"));
+        assertEquals(0, orchestrator.getSagaCoordinator().getBacklog());
+    }
+
+    @Test
+    @DisplayName("A payment failed by its lifecycle deadline after POST should time out and reverse the posting")
+    void lifecycleExpiryAfterPost_compensatesPosting() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        InMemoryPaymentRepository repository = new InMemoryPaymentRepository();
+        AtomicLong clock = new AtomicLong(1_000L);
+        PaymentLifecycleManager lifecycle = new PaymentLifecycleManager(repository, metrics, 10L, clock::get);
+        lifecycle.setDeadline(PaymentStatus.IN_PROGRESS, Duration.ofMillis(500));
+        Map<OrchestrationStep, OrchestrationStepHandler> registry = StandardStepHandlers.registry();
+        registry.put(OrchestrationStep.NOTIFY, (paymentData, context, messages) -> {
+            clock.addAndGet(1_000L);
+            lifecycle.expireOverdue();
+        });
+        PaymentOrchestrator orchestrator = new PaymentOrchestrator(new OrchestrationSettings(),
+                FlowPlanRegistry.single(new OrchestrationPipeline("slow-notify",
+                        OrchestrationPipeline.standardOrder(), registry)), metrics);
+        orchestrator.setLifecycleManager(lifecycle);
+
+        OrchestrationResult result = orchestrator.orchestrateSimple(payment());
+
+        assertEquals(OrchestrationResult.Status.FAILURE, result.getStatus());
+        assertEquals(OutcomeCode.TIMEOUT, result.getOutcome());
+        assertEquals(List.of(OrchestrationStep.POST), result.getCompensatedSteps());
+        assertEquals(PaymentStatus.FAILED, repository.findById(result.getInternalId()).get().getStatus());
+        assertEquals(1, metrics.get("saga.compensations.completed"));
+    }
+
+    @Test
+    @DisplayName("Compensations run newest first and failed ones stay in the backlog")
+    void compensations_reverseOrderAndBacklog() {
+        StringBuilder order = new StringBuilder();
+        Map<OrchestrationStep, CompensationHandler> compensations = new EnumMap<>(OrchestrationStep.class);
+        compensations.put(OrchestrationStep.ROUTE, context -> order.append("ROUTE;"));
+        compensations.put(OrchestrationStep.POST, context -> {
+            order.append("POST;");
+            throw new IllegalStateException("ledger offline");
+        });
+        MetricsRegistry metrics = new MetricsRegistry();
+        SagaCoordinator sagas = new SagaCoordinator(compensations, metrics);
+        PaymentOrchestrator orchestrator = new PaymentOrchestrator(new OrchestrationSettings(),
+                FlowPlanRegistry.single(pipelineWithFailingNotify()), metrics, sagas);
+
+        OrchestrationResult result = orchestrator.orchestrateSimple(payment());
+
+        assertEquals("POST;ROUTE;", order.toString());
+        assertTrue(result.getMessages().contains("Compensated steps: [ROUTE]"));
+        assertEquals(1, sagas.getBacklog());
+        assertEquals(1, metrics.get("saga.compensations.backlog"));
+        sagas.acknowledgeFailure();
+        assertEquals(0, sagas.getBacklog());
+    }
+
+    @Test
+    @DisplayName("Successful payments should not log steps without compensations")
+    void saga_onlyLogsCompensableSteps() {
+        SagaCoordinator sagas = SagaCoordinator.standard(new MetricsRegistry());
+        SagaCoordinator.Saga saga = sagas.begin();
+        for (OrchestrationStep step : List.of(OrchestrationStep.VALIDATE, OrchestrationStep.POST,
+                OrchestrationStep.NOTIFY)) {
+            saga.stepCompleted(step);
+        }
+        assertEquals(1, saga.size());
+    }
+}
@@ -0,0 +1,159 @@
+package realtimepaymentarchitectureorchestration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import realtimepaymentarchitectureorchestration.orchestration.OrchestrationPipeline;
+import realtimepaymentarchitectureorchestration.orchestration.OrchestrationResult;
+import realtimepaymentarchitectureorchestration.orchestration.OrchestrationSettings;
+import realtimepaymentarchitectureorchestration.orchestration.OrchestrationStep;
+import realtimepaymentarchitectureorchestration.orchestration.OrchestrationStepHandler;
+import realtimepaymentarchitectureorchestration.orchestration.OutcomeCode;
+import realtimepaymentarchitectureorchestration.orchestration.PaymentOrchestrator;
+import realtimepaymentarchitectureorchestration.orchestration.ShardedOrchestrator;
+import realtimepaymentarchitectureorchestration.orchestration.StandardStepHandlers;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedOrchestratorTest {
+
+    private static Map<String, Object> payment(String debtor, String creditor, String amount) {
+        Map<String, Object> payment = new HashMap<>();
+        payment.put("debtorAccount", debtor);
+        payment.put("creditorAccount", creditor);
+        payment.put("amount", amount);
+        payment.put("currency", "USD");
+        return payment;
+    }
+
+    @Test
+    @DisplayName("Payments from one debtor account should run in submission order")
+    void submit_preservesAccountOrder() {
+        List<String> posted = Collections.synchronizedList(new ArrayList<>());
+        Map<OrchestrationStep, OrchestrationStepHandler> registry = StandardStepHandlers.registry();
+        registry.put(OrchestrationStep.POST, (data, context, out) ->
+                posted.add(data.get("debtorAccount") + ":" + data.get("creditorAccount")));
+        OrchestrationPipeline pipeline = new OrchestrationPipeline("posting", List.of(
+                OrchestrationStep.VALIDATE, OrchestrationStep.POST), registry);
+
+        List<CompletableFuture<OrchestrationResult>> futures = new ArrayList<>();
+        try (PaymentOrchestrator orchestrator = new PaymentOrchestrator(new OrchestrationSettings(), pipeline);
+             ShardedOrchestrator sharded = new ShardedOrchestrator(orchestrator, 4)) {
+            for (int i = 0; i < 50; i++) {
+                for (int account = 0; account < 8; account++) {
+                    futures.add(sharded.submit(payment("D" + account, "C" + i, "1.00")));
+                }
+            }
+            for (CompletableFuture<OrchestrationResult> future : futures) {
+                assertEquals(OrchestrationResult.Status.SUCCESS, future.join().getStatus());
+            }
+        }
+
+        for (int account = 0; account < 8; account++) {
+            int expected = 0;
+            for (String entry : posted) {
+                if (entry.startsWith("D" + account + ":")) {
+                    assertEquals("D" + account + ":C" + expected, entry);
+                    expected++;
+                }
+            }
+            assertEquals(50, expected);
+        }
+    }
+
+    @Test
+    @DisplayName("Account velocity, amount and duplicate checks should refuse payments per debtor")
+    void submit_enforcesAccountLimits() {
+        OrchestrationSettings settings = new OrchestrationSettings();
+        settings.setAccountMaxPaymentsPerWindow(3);
+        settings.setAccountMaxAmountPerWindow(1000d);
+        try (PaymentOrchestrator orchestrator = new PaymentOrchestrator(settings);
+             ShardedOrchestrator sharded = new ShardedOrchestrator(orchestrator, 2)) {
+            Map<String, Object> original = payment("A1", "C1", "400.00");
+            original.put("endToEndId", "E2E-1");
+            CompletableFuture<OrchestrationResult> first = sharded.submit(original);
+            CompletableFuture<OrchestrationResult> duplicate = sharded.submit(original);
+            CompletableFuture<OrchestrationResult> second = sharded.submit(payment("A1", "C2", "400.00"));
+            CompletableFuture<OrchestrationResult> overLimit = sharded.submit(payment("A1", "C3", "400.00"));
+            CompletableFuture<OrchestrationResult> third = sharded.submit(payment("A1", "C4", "100.00"));
+            CompletableFuture<OrchestrationResult> tooMany = sharded.submit(payment("A1", "C5", "1.00"));
+            CompletableFuture<OrchestrationResult> otherAccount = sharded.submit(payment("B1", "C1", "400.00"));
+
+            assertEquals(OutcomeCode.OK, first.join().getOutcome());
+            assertEquals(OutcomeCode.DUPLICATE_PAYMENT, duplicate.join().getOutcome());
+            assertEquals(OutcomeCode.OK, second.join().getOutcome());
+            assertEquals(OutcomeCode.LIMIT_EXCEEDED, overLimit.join().getOutcome());
+            assertEquals(OutcomeCode.OK, third.join().getOutcome());
+            assertEquals(OutcomeCode.VELOCITY_EXCEEDED, tooMany.join().getOutcome());
+            assertEquals(OutcomeCode.OK, otherAccount.join().getOutcome());
+        }
+    }
+
+    @Test
+    @DisplayName("Duplicates should match amounts by value and tell end-to-end ids apart")
+    void submit_duplicateFingerprint() {
+        try (PaymentOrchestrator orchestrator = new PaymentOrchestrator(new OrchestrationSettings());
+             ShardedOrchestrator sharded = new ShardedOrchestrator(orchestrator, 2)) {
+            Map<String, Object> first = payment("A2", "C1", "10.00");
+            first.put("endToEndId", "E2E-1");
+            Map<String, Object> sameValue = payment("A2", "C1", "10.0");
+            sameValue.put("endToEndId", "E2E-1");
+            Map<String, Object> otherId = payment("A2", "C1", "10.00");
+            otherId.put("endToEndId", "E2E-2");
+            Map<String, Object> padded = payment("A2", "C1", " 010.000 ");
+            padded.put("endToEndId", "E2E-2");
+            Map<String, Object> otherValue = payment("A2", "C1", "10.001");
+            otherValue.put("endToEndId", "E2E-2");
+            Map<String, Object> tooPrecise = payment("A2", "C1", "0.123456789012345678");
+            tooPrecise.put("endToEndId", "E2E-3");
+
+            assertEquals(OutcomeCode.OK, sharded.submit(first).join().getOutcome());
+            assertEquals(OutcomeCode.DUPLICATE_PAYMENT, sharded.submit(sameValue).join().getOutcome());
+            assertEquals(OutcomeCode.OK, sharded.submit(otherId).join().getOutcome());
+            assertEquals(OutcomeCode.DUPLICATE_PAYMENT, sharded.submit(padded).join().getOutcome());
+            assertEquals(OutcomeCode.OK, sharded.submit(otherValue).join().getOutcome());
+            assertEquals(OutcomeCode.INVALID_AMOUNT, sharded.submit(tooPrecise).join().getOutcome());
+        }
+    }
+
+    @Test
+    @DisplayName("Payments without an end-to-end id should never be refused as duplicates")
+    void submit_noEndToEndId() {
+        try (PaymentOrchestrator orchestrator = new PaymentOrchestrator(new OrchestrationSettings());
+             ShardedOrchestrator sharded = new ShardedOrchestrator(orchestrator, 2)) {
+            assertEquals(OutcomeCode.OK, sharded.submit(payment("A4", "C1", "10.00")).join().getOutcome());
+            assertEquals(OutcomeCode.OK, sharded.submit(payment("A4", "C1", "10.00")).join().getOutcome());
+        }
+    }
+
+    @Test
+    @DisplayName("The account window should slide, so a burst cannot straddle a window boundary")
+    void submit_slidingWindow() {
+        OrchestrationSettings settings = new OrchestrationSettings();
+        settings.setAccountMaxPaymentsPerWindow(2);
+        settings.setAccountWindowMillis(400L);
+        AtomicLong clock = new AtomicLong(1_000L);
+        try (PaymentOrchestrator orchestrator = new PaymentOrchestrator(settings);
+             ShardedOrchestrator sharded = new ShardedOrchestrator(orchestrator, 1, clock::get)) {
+            assertEquals(OutcomeCode.OK, sharded.submit(payment("A3", "C1", "1.00")).join().getOutcome());
+            clock.addAndGet(250L);
+            assertEquals(OutcomeCode.OK, sharded.submit(payment("A3", "C2", "1.00")).join().getOutcome());
+            assertEquals(OutcomeCode.VELOCITY_EXCEEDED,
+                    sharded.submit(payment("A3", "C3", "1.00")).join().getOutcome());
+
+            // The first payment has left the window; the second is still in it.
+            clock.addAndGet(150L);
+            assertEquals(OutcomeCode.OK, sharded.submit(payment("A3", "C4", "1.00")).join().getOutcome());
+            assertEquals(OutcomeCode.VELOCITY_EXCEEDED,
+                    sharded.submit(payment("A3", "C5", "1.00")).join().getOutcome());
+        }
+    }
+}
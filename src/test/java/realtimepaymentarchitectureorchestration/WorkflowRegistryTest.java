@@ -0,0 +1,52 @@
+package realtimepaymentarchitectureorchestration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import realtimepaymentarchitectureorchestration.orchestration.WorkflowDefinition;
+import realtimepaymentarchitectureorchestration.orchestration.WorkflowRegistry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkflowRegistryTest {
+
+    @Test
+    @DisplayName("The most specific matching rule should win")
+    void resolve_prefersMostSpecificRule() {
+        WorkflowRegistry registry = new WorkflowRegistry(1000.0, 100000.0);
+        registry.register(WorkflowRegistry.ANY, WorkflowRegistry.ANY, WorkflowRegistry.ANY_BAND,
+                WorkflowRegistry.ANY, new WorkflowDefinition("default", "domestic-rtp"));
+        registry.register("SEPA_INST", "EUR", WorkflowRegistry.ANY_BAND, WorkflowRegistry.ANY,
+                new WorkflowDefinition("sepa", "sepa-inst"));
+        registry.register("SEPA_INST", "EUR", 2, "MOBILE",
+                new WorkflowDefinition("sepa-large-mobile", "high-value-review"));
+
+        assertEquals("sepa", registry.resolve("SEPA_INST", "EUR", 50.0, "MOBILE").getId());
+        assertEquals("sepa", registry.resolve("SEPA_INST", "EUR", 500000.0, "API").getId());
+        assertEquals("sepa-large-mobile", registry.resolve("SEPA_INST", "EUR", 500000.0, "MOBILE").getId());
+        assertEquals("default", registry.resolve("FEDNOW", "USD", 10.0, "API").getId());
+    }
+
+    @Test
+    @DisplayName("Standard workflows should match the built-in flow selection")
+    void standard_selectsBuiltInFlows() {
+        WorkflowRegistry registry = WorkflowRegistry.standard();
+        Map<String, Object> payment = new HashMap<>();
+        payment.put("currency", "USD");
+        payment.put("amount", "100.00");
+        assertEquals("domestic-rtp", registry.resolve(payment).getFlowId());
+
+        payment.put("amount", "75000.00");
+        assertEquals("high-value-review", registry.resolve(payment).getFlowId());
+
+        payment.put("currency", "GBP");
+        assertEquals("cross-border-sample", registry.resolve(payment).getFlowId());
+
+        payment.put("currency", "usd");
+        payment.put("amount", "not-a-number");
+        assertEquals("domestic-rtp", registry.resolve(payment).getFlowId());
+    }
+}
@@ -0,0 +1,98 @@
+package rtp;
+
+/**
+ * RtpFlowBenchmark
+ *
+ * Measures startup and JIT warm-up of the RTP flows. It loads every RTP
+ * component, then runs all eight flows on each of them pass after pass and
+ * reports the time of the first pass and the average pass time in successive
+ * ranges. Because every component shares RtpFlowKernel, later passes run one
+ * compiled code path instead of one per component. Hedging is disabled so
+ * that timings do not depend on background threads.
+ * <p>
+ * Lives with the tests so it is not shipped. Usage, with the main and test
+ * classes on the class path: {@code java rtp.RtpFlowBenchmark [passes]}
+ * (default 3000).
+ */
+public final class RtpFlowBenchmark {
+
+private static final String[] COMPONENTS = {
+    "RtpAccountEligibilityChecker", "RtpAlternatePathSelector", "RtpChannelAdapter",
+    "RtpComplianceVerifier", "RtpCutoverManager", "RtpDirectoryServiceAdapter",
+    "RtpDownstreamGateway", "RtpDuplicateChecker", "RtpExceptionHandler", "RtpFlowControlEngine",
+    "RtpFraudScreeningEngine", "RtpHighValuePaymentHandler", "RtpInboundMessageHandler",
+    "RtpIso20022Pacs002Parser", "RtpIso20022Pacs008Builder", "RtpLedgerPostingAdapter",
+    "RtpLimitCheckEngine", "RtpLiquidityMonitor", "RtpMessageArchiver", "RtpMessageBuilder",
+    "RtpMessageIntegrityValidator", "RtpMessageParser", "RtpNetworkAvailabilityChecker",
+    "RtpNetworkConnector", "RtpNotificationDispatcher", "RtpOperationalMetricsCollector",
+    "RtpOutboundMessageHandler", "RtpPaymentAuditLogger", "RtpPaymentCanonicalMapper",
+    "RtpPaymentEnricher", "RtpPaymentOrchestrator", "RtpPaymentProcessor",
+    "RtpPaymentStatusTracker", "RtpPostingEngine", "RtpRecallAndReturnHandler",
+    "RtpRegulatoryReportGenerator", "RtpRequestForPaymentProcessor", "RtpRiskEventPublisher",
+    "RtpRiskScoringEngine", "RtpRoutingDecisionEngine", "RtpRoutingTableManager",
+    "RtpSanctionsCheckEngine", "RtpSchemaValidator", "RtpSecurityControlEngine",
+    "RtpSettlementManager", "RtpTimeoutMonitor", "RtpTransactionIDGenerator",
+    "RtpTransactionNormalizer", "RtpTransactionReplayEngine", "RtpWorkflowManager"
+};
+
+private RtpFlowBenchmark() {}
+
+public static void main(String[] args) throws Throwable {
+    int passes = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+    if (passes < 2) {
+        throw new IllegalArgumentException("passes must be at least 2");
+    }
+    long startNanos = System.nanoTime();
+    realtimepaymentarchitectureorchestration.orchestration.HedgingPolicy.downstreamDefault().setEnabled(false);
+
+    java.lang.invoke.MethodHandles.Lookup lookup = java.lang.invoke.MethodHandles.lookup();
+    java.lang.invoke.MethodType flowType =
+            java.lang.invoke.MethodType.methodType(void.class, PaymentContext.class);
+    RtpFlow[] flows = RtpFlow.values();
+    java.lang.invoke.MethodHandle[] handles = new java.lang.invoke.MethodHandle[COMPONENTS.length * flows.length];
+    for (int c = 0; c < COMPONENTS.length; c++) {
+        Class<?> type = Class.forName("rtp." + COMPONENTS[c]);
+        Object component = type.getDeclaredConstructor().newInstance();
+        for (int f = 0; f < flows.length; f++) {
+            handles[c * flows.length + f] = lookup.findVirtual(type, flows[f].getFlowName(), flowType)
+                    .bindTo(component);
+        }
+    }
+    long loadNanos = System.nanoTime() - startNanos;
+
+    long[] passNanos = new long[passes];
+    for (int pass = 0; pass < passes; pass++) {
+        long passStart = System.nanoTime();
+        for (java.lang.invoke.MethodHandle handle : handles) {
+            handle.invokeExact(newContext(pass));
+        }
+        passNanos[pass] = System.nanoTime() - passStart;
+    }
+
+    System.out.printf("components=%d flows=%d calls/pass=%d%n", COMPONENTS.length, flows.length, handles.length);
+    System.out.printf("class loading: %.1f ms, first pass: %.1f ms%n", loadNanos / 1e6, passNanos[0] / 1e6);
+    int from = 1;
+    for (int to = 10; from < passes; to *= 10) {
+        int end = Math.min(to, passes);
+        long total = 0;
+        for (int pass = from; pass < end; pass++) {
+            total += passNanos[pass];
+        }
+        System.out.printf("passes %d-%d: %.1f us/pass, %.0f ns/call%n", from, end,
+                total / 1e3 / (end - from), (double) total / (end - from) / handles.length);
+        from = end;
+    }
+}
+
+private static PaymentContext newContext(int pass) {
+    PaymentContext context = new PaymentContext();
+    java.util.Map<String, Object> attributes = context.getAttributes();
+    attributes.put("debtorAccount", "D" + (pass & 7));
+    attributes.put("creditorAccount", "C1");
+    attributes.put("currency", "USD");
+    // RTP_DOMESTIC_STANDARD succeeds for this amount, so no retries are scheduled.
+    attributes.put("amount", "125.00");
+    return context;
+}
+
+}